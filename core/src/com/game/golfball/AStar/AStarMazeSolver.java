@@ -17,8 +17,9 @@ public class AStarMazeSolver {
      */
     public AStarMazeSolver(Vector3 start, Vector3 goal) {
         this.maze = MazeLayout.getMazeLayout();
-        this.start = new Node((int) start.x, (int) start.z);
-        this.goal = new Node((int) goal.x, (int) goal.z);
+        // the layout is indexed by row (z) and then column (x), and every cell is a wall centred on whole coordinates
+        this.start = new Node(Math.round(start.z), Math.round(start.x));
+        this.goal = new Node(Math.round(goal.z), Math.round(goal.x));
     }
 
     /**
@@ -0,0 +1,195 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.math.Vector3;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Gradient descent on the shot velocity with the Adam optimizer, the gradient
+ * being approximated by forward differences of simulated shots. The moments,
+ * learning rate and difference step carry over from one search to the next
+ * until {@link #reset()} is called
+ */
+public class AdamShotOptimizer implements ShotOptimizer {
+    private static final double EPSILON_ADAM = 1e-8; // Epsilon for Adam optimizer to ensure numerical stability
+    private static final double INITIAL_EPSILON_GRAD = 0.5; // Initial epsilon for gradient approximation
+    private static final double MIN_EPSILON_GRAD = 1e-4; // Minimum epsilon for gradient approximation
+    private static final int MAX_ITERATIONS = 500; // Max iterations for convergence
+    private static final double INITIAL_LEARNING_RATE = 1; // Initial learning rate for large steps
+    private static final double MIN_LEARNING_RATE = 0.005; // Minimum learning rate for fine adjustments
+    private static final double BETA1 = 0.9; // Decay rate for the first moment estimate
+    private static final double BETA2 = 0.999; // Decay rate for the second moment estimate
+
+    private final Vector3 m = new Vector3(); // First moment vector
+    private final Vector3 v = new Vector3(); // Second moment vector
+    private double learningRate = INITIAL_LEARNING_RATE; // Current learning rate
+    private double epsilonGrad = INITIAL_EPSILON_GRAD; // Current epsilon for gradient approximation
+    private int t; // Time step
+    // whether the rollouts of an iteration run at the same time, by default when there are cores to run them
+    private boolean parallelRollouts = ForkJoinPool.getCommonPoolParallelism() > 1;
+
+    /**
+     * Searches for the best shot, starting from the velocity (2, -6). At least one
+     * iteration is always run, and an iteration is not interrupted, so the search
+     * may overrun the budget by the time of one iteration (three simulated shots)
+     */
+    @Override
+    public ShotSearchResult search(PhysicsEngine physicsEngine, Vector3 start, Vector3 target, long budgetMillis,
+                                   BooleanSupplier cancelled) {
+        return search(physicsEngine, start, target, new Vector3(2f, 0f, -6f), budgetMillis, cancelled);
+    }
+
+    /**
+     * Searches for the best shot starting from the guess, with the same budget
+     * rules as the search without one
+     */
+    @Override
+    public ShotSearchResult search(PhysicsEngine physicsEngine, Vector3 start, Vector3 target,
+                                   Vector3 initialVelocity, long budgetMillis, BooleanSupplier cancelled) {
+        long startTime = System.nanoTime();
+        long deadline = startTime + budgetMillis * 1_000_000;
+        Vector3 currentVelocity = new Vector3(initialVelocity);
+        Vector3 bestVelocity = new Vector3(currentVelocity);
+        float lowestDeviation = Float.MAX_VALUE;
+        boolean converged = false;
+        int iteration;
+
+        // every rollout has its own engine, so the three rollouts of an iteration can run at the same time
+        ShotRollout baseline = new ShotRollout(physicsEngine, start, target);
+        ShotRollout perturbedX = new ShotRollout(physicsEngine, start, target);
+        ShotRollout perturbedZ = new ShotRollout(physicsEngine, start, target);
+
+        for (iteration = 0; iteration < MAX_ITERATIONS && !cancelled.getAsBoolean(); iteration++) {
+            if (iteration > 0 && budgetMillis > 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+            Vector3 perturbedVelocityX = new Vector3(currentVelocity);
+            perturbedVelocityX.x += epsilonGrad;
+            Vector3 perturbedVelocityZ = new Vector3(currentVelocity);
+            perturbedVelocityZ.z += epsilonGrad;
+
+            CompletableFuture<Vector3> deviationX = null;
+            CompletableFuture<Vector3> deviationZ = null;
+            if (parallelRollouts) {
+                // started before the baseline is known, their results are dropped if it converged
+                deviationX = CompletableFuture.supplyAsync(() -> perturbedX.deviation(perturbedVelocityX),
+                        ForkJoinPool.commonPool());
+                deviationZ = CompletableFuture.supplyAsync(() -> perturbedZ.deviation(perturbedVelocityZ),
+                        ForkJoinPool.commonPool());
+            }
+            Vector3 deviation = baseline.deviation(currentVelocity);
+
+            if (deviation.len() < lowestDeviation) {
+                lowestDeviation = deviation.len();
+                bestVelocity.set(currentVelocity);
+            }
+
+            if (deviation.len() < TOLERANCE) {
+                if (parallelRollouts) {
+                    deviationX.join();
+                    deviationZ.join();
+                }
+                converged = true;
+                iteration++;
+                break;
+            }
+
+            Vector3 gradient = parallelRollouts
+                    ? approximateGradient(deviation, deviationX.join(), deviationZ.join())
+                    : approximateGradient(deviation, perturbedX.deviation(perturbedVelocityX),
+                            perturbedZ.deviation(perturbedVelocityZ));
+
+            t++;
+
+            m.x = (float) (BETA1 * m.x + (1 - BETA1) * gradient.x);
+            m.z = (float) (BETA1 * m.z + (1 - BETA1) * gradient.z);
+
+            v.x = (float) (BETA2 * v.x + (1 - BETA2) * gradient.x * gradient.x);
+            v.z = (float) (BETA2 * v.z + (1 - BETA2) * gradient.z * gradient.z);
+
+            float mHatX = (float) (m.x / (1 - Math.pow(BETA1, t)));
+            float mHatZ = (float) (m.z / (1 - Math.pow(BETA1, t)));
+
+            float vHatX = (float) (v.x / (1 - Math.pow(BETA2, t)));
+            float vHatZ = (float) (v.z / (1 - Math.pow(BETA2, t)));
+
+            // Update velocity with momentum
+            currentVelocity.x -= learningRate * mHatX / (Math.sqrt(vHatX) + EPSILON_ADAM);
+            currentVelocity.z -= learningRate * mHatZ / (Math.sqrt(vHatZ) + EPSILON_ADAM);
+
+            // Gradient and velocity clipping to prevent overshooting
+            gradientClip(gradient);
+            clipVelocity(currentVelocity);
+
+            // Update learning rate and epsilon for gradient approximation
+            learningRate = Math.max(MIN_LEARNING_RATE, learningRate * 0.98);
+            epsilonGrad = Math.max(MIN_EPSILON_GRAD, epsilonGrad * 0.99);
+        }
+
+        return new ShotSearchResult(bestVelocity, lowestDeviation, iteration,
+                baseline.simulations + perturbedX.simulations + perturbedZ.simulations,
+                (System.nanoTime() - startTime) / 1e6, converged);
+    }
+
+    /**
+     * Approximates the gradient of the deviation function with respect to the
+     * velocity by forward differences
+     *
+     * @param originalDeviation The deviation of the current shot from the target position
+     * @param deviationX        The deviation of the shot with the x velocity perturbed
+     * @param deviationZ        The deviation of the shot with the z velocity perturbed
+     * @return The gradient vector approximating the rate of change of deviation with respect to velocity
+     */
+    private Vector3 approximateGradient(Vector3 originalDeviation, Vector3 deviationX, Vector3 deviationZ) {
+        Vector3 gradient = new Vector3();
+        gradient.x = (float) ((deviationX.len() - originalDeviation.len()) / epsilonGrad);
+        gradient.z = (float) ((deviationZ.len() - originalDeviation.len()) / epsilonGrad);
+        return gradient;
+    }
+
+    /**
+     * Clips the gradient vector to prevent overshooting during optimization
+     *
+     * @param gradient gradient vector to be clipped
+     */
+    private void gradientClip(Vector3 gradient) {
+        // Clipping the gradient to ensure it doesn't overshoot
+        double maxGradient = 2.0; // Example value, adjust as needed
+        if (gradient.len() > maxGradient) {
+            gradient.scl((float) (maxGradient / gradient.len()));
+        }
+    }
+
+    /**
+     * Clips the velocity vector to prevent overshooting during optimization
+     *
+     * @param velocity The velocity vector to be clipped
+     */
+    private static void clipVelocity(Vector3 velocity) {
+        double maxVelocity = 70.0;
+        if (velocity.len() > maxVelocity) {
+            velocity.scl((float) (maxVelocity / velocity.len()));
+        }
+    }
+
+    /**
+     * Sets whether the rollouts of an iteration run at the same time on the
+     * common fork-join pool. Both ways give identical shots
+     *
+     * @param parallelRollouts true to run the rollouts in parallel, false to run them one after another
+     */
+    public void setParallelRollouts(boolean parallelRollouts) {
+        this.parallelRollouts = parallelRollouts;
+    }
+
+    @Override
+    public void reset() {
+        this.m.set(0, 0, 0);
+        this.v.set(0, 0, 0);
+        this.learningRate = INITIAL_LEARNING_RATE;
+        this.epsilonGrad = INITIAL_EPSILON_GRAD;
+        this.t = 0;
+    }
+}
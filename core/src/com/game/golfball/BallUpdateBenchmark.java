@@ -0,0 +1,89 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Vector3;
+import com.game.terrain.GameRules;
+import com.game.terrain.Target;
+
+import java.util.Random;
+
+/**
+ * Measures the physics steps per second of a match with a growing number of
+ * balls on the hilly terrain, updated one after another and by a
+ * {@link BallUpdatePool} with a worker per core, or as many as the first
+ * argument asks for. Every ball is played by its
+ * own {@link GolfBallMovement} and game rules on one shared engine. Also
+ * checks that the pool ends every ball at the same position as the
+ * sequential update
+ *
+ * @see BallUpdatePool
+ */
+public class BallUpdateBenchmark {
+    private static final String HILLY_FUNCTION =
+            " sqrt ( ( sin ( 0.1 * x ) + cos ( 0.1 * y ) ) ^ 2 ) + 0.5 * sin ( 0.3 * x ) * cos ( 0.3 * y ) ";
+    private static final int[] BALL_COUNTS = {4, 16, 64};
+    private static final int STEPS = 2000; // steps timed for every match size, 8 seconds of game time
+
+    public static void main(String[] args) {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() - 1;
+        PhysicsEngine physicsEngine = new PhysicsEngine(HILLY_FUNCTION, 5, 2, 4, 1, 0.15, 1, 0.5, 0.3, 0.4, 0, 0,
+                null);
+        System.out.println("Workers besides the stepping thread: " + workers);
+        System.out.println("Balls\tSequential steps per second\tPool steps per second\tSpeedup\tMismatching balls");
+        for (int balls : BALL_COUNTS) {
+            GolfBall[] sequentialBalls = new GolfBall[balls];
+            GolfBall[] pooledBalls = new GolfBall[balls];
+            BallUpdatePool sequential = new BallUpdatePool(0, match(physicsEngine, sequentialBalls));
+            BallUpdatePool pooled = new BallUpdatePool(workers, match(physicsEngine, pooledBalls));
+
+            run(sequential, STEPS); // warm up
+            run(pooled, STEPS);
+            shootAll(sequentialBalls);
+            shootAll(pooledBalls);
+            double sequentialSeconds = run(sequential, STEPS);
+            double pooledSeconds = run(pooled, STEPS);
+
+            int mismatches = 0;
+            for (int i = 0; i < balls; i++) {
+                if (!sequentialBalls[i].getPosition().equals(pooledBalls[i].getPosition())) {
+                    mismatches++;
+                }
+            }
+            System.out.printf("%d\t%.0f\t%.0f\t%.2f\t%d%n", balls, STEPS / sequentialSeconds, STEPS / pooledSeconds,
+                    sequentialSeconds / pooledSeconds, mismatches);
+            pooled.close();
+        }
+    }
+
+    // builds the updates of a match, filling in its balls
+    private static Runnable[] match(PhysicsEngine physicsEngine, GolfBall[] balls) {
+        Target target = new Target(4, 1, 0.15f, HILLY_FUNCTION);
+        Runnable[] updates = new Runnable[balls.length];
+        for (int i = 0; i < balls.length; i++) {
+            balls[i] = new GolfBall(new Vector3(5, 0, 2), Color.WHITE);
+            GameRules gameRules = new GameRules(target, balls[i], HILLY_FUNCTION, 100, 100, 0.9f);
+            gameRules.setAnnounceEvents(false);
+            GolfBallMovement movement = new GolfBallMovement(balls[i], physicsEngine, gameRules, null);
+            updates[i] = movement::update;
+        }
+        shootAll(balls);
+        return updates;
+    }
+
+    // puts every ball back to the start with the same shot as in the other match
+    private static void shootAll(GolfBall[] balls) {
+        Random random = new Random(42);
+        for (GolfBall ball : balls) {
+            ball.setPosition(new Vector3(5, 0, 2));
+            ball.setVelocity(new Vector3(random.nextFloat() * 10 - 5, 0, random.nextFloat() * 10 - 5));
+        }
+    }
+
+    private static double run(BallUpdatePool pool, int steps) {
+        long start = System.nanoTime();
+        for (int step = 0; step < steps; step++) {
+            pool.update();
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
@@ -0,0 +1,156 @@
+package com.game.golfball;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Updates all the balls of a match on a small pool of worker threads, one
+ * physics step at a time. The thread calling {@link #update()} works along
+ * with the pool, the balls are handed out one by one to whichever thread is
+ * free, and update returns only once every ball has been updated, so the game
+ * rules and the rendering that follow see all balls after the same step.
+ *
+ * The updates of different balls must not touch each other's state. They may
+ * share a {@link PhysicsEngine}, whose step only reads the engine. Waiting is
+ * done by parking the threads, so a step allocates nothing
+ */
+public class BallUpdatePool {
+    /**
+     * The fewest balls {@link #defaultWorkers(int)} updates in parallel. A ball
+     * update takes a few microseconds, less than waking the workers costs, and
+     * {@link BallUpdateBenchmark} has shown no speedup for the few balls of a
+     * game, so smaller matches are updated one ball after another
+     */
+    public static final int MIN_PARALLEL_BALLS = 64;
+
+    private final Runnable[] updates;
+    private final Thread[] workers;
+    private final AtomicInteger next = new AtomicInteger(); // index of the next ball to update
+    private final AtomicInteger remaining = new AtomicInteger(); // threads still working on the step
+    private volatile int generation; // counts the steps, a worker starts when it changes
+    private volatile Thread caller;
+    private volatile Throwable failure;
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a BallUpdatePool and starts its worker threads
+     *
+     * @param workers The number of threads besides the calling one, 0 to update the balls one after another
+     * @param updates The update of every ball
+     */
+    public BallUpdatePool(int workers, Runnable... updates) {
+        if (workers < 0) {
+            throw new IllegalArgumentException("Number of workers cannot be negative");
+        }
+        this.updates = updates.clone();
+        this.workers = new Thread[Math.min(workers, Math.max(0, updates.length - 1))];
+        for (int w = 0; w < this.workers.length; w++) {
+            Thread worker = new Thread(this::work, "ball-update-" + w);
+            worker.setDaemon(true);
+            this.workers[w] = worker;
+            worker.start();
+        }
+    }
+
+    /**
+     * Gets the number of workers for a match: one per core beyond the render
+     * and simulation threads, but none below {@link #MIN_PARALLEL_BALLS} balls
+     *
+     * @param balls The number of balls updated every step
+     * @return The number of threads besides the calling one
+     */
+    public static int defaultWorkers(int balls) {
+        if (balls < MIN_PARALLEL_BALLS) {
+            return 0;
+        }
+        return Math.max(0, Runtime.getRuntime().availableProcessors() - 2);
+    }
+
+    /**
+     * Updates every ball once and waits until all are done. An exception or
+     * error of a ball update is thrown once every other ball has been updated
+     */
+    public void update() {
+        if (workers.length == 0) {
+            for (Runnable update : updates) {
+                update.run();
+            }
+            return;
+        }
+        caller = Thread.currentThread();
+        next.set(0);
+        remaining.set(workers.length + 1);
+        generation++; // only the calling thread writes it
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        try {
+            updateBalls();
+        } finally {
+            if (remaining.decrementAndGet() != 0) {
+                while (remaining.get() != 0) {
+                    LockSupport.park(this);
+                }
+            }
+        }
+        Throwable error = failure;
+        if (error != null) {
+            failure = null;
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw (RuntimeException) error;
+        }
+    }
+
+    // updates balls until none is left for this step
+    private void updateBalls() {
+        int ball;
+        while ((ball = next.getAndIncrement()) < updates.length) {
+            try {
+                updates[ball].run();
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            }
+        }
+    }
+
+    private void work() {
+        int seen = 0;
+        while (running) {
+            int current = generation;
+            if (current == seen) {
+                LockSupport.park(this);
+                continue;
+            }
+            seen = current;
+            try {
+                updateBalls();
+            } finally {
+                // counted even if an update escapes, or the calling thread would wait forever
+                if (remaining.decrementAndGet() == 0) {
+                    LockSupport.unpark(caller);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of threads besides the calling one
+     *
+     * @return The number of worker threads
+     */
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    public void close() {
+        running = false;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.game.golfball;
+
+import com.game.terrain.Maze.Maze;
+import com.game.terrain.Maze.Wall;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the throughput of {@link BatchPhysicsEngine} with one call of
+ * {@link PhysicsEngine#runSimulation(double, double)} per shot, for growing
+ * batch sizes, on the hilly terrain and on the maze. Also checks that both
+ * engines end every shot at exactly the same position
+ */
+public class BatchPhysicsBenchmark {
+    private static final String HILLY_FUNCTION =
+            " sqrt ( ( sin ( 0.1 * x ) + cos ( 0.1 * y ) ) ^ 2 ) + 0.5 * sin ( 0.3 * x ) * cos ( 0.3 * y ) ";
+    private static final int[] BATCH_SIZES = {1, 4, 16, 64, 256, 1024, 4096};
+    private static final int SHOTS_PER_RUN = 8192; // shots timed for every batch size
+
+    public static void main(String[] args) {
+        run("hilly", new PhysicsEngine(HILLY_FUNCTION, 5, 2, 4, 1, 0.15, 1, 0.5, 0.3, 0.4, 0, 0, null), 5, 2);
+        List<Wall> walls = new Maze().getWalls();
+        run("maze", new PhysicsEngine(" 1 ", 1, 1, 8, 8, 0.5, 1, 0.5, 0.3, 0.4, 0, 0, walls), 1, 1);
+    }
+
+    private static void run(String name, PhysicsEngine physicsEngine, double startX, double startZ) {
+        Random random = new Random(42);
+        double[] velocityX = new double[SHOTS_PER_RUN];
+        double[] velocityZ = new double[SHOTS_PER_RUN];
+        for (int i = 0; i < SHOTS_PER_RUN; i++) {
+            velocityX[i] = random.nextDouble() * 10 - 5;
+            velocityZ[i] = random.nextDouble() * 10 - 5;
+        }
+
+        // warm up both paths, then check they agree
+        sequential(physicsEngine, startX, startZ, velocityX, velocityZ);
+        BatchPhysicsEngine batch = new BatchPhysicsEngine(physicsEngine, BATCH_SIZES[BATCH_SIZES.length - 1]);
+        for (int batchSize : BATCH_SIZES) {
+            batched(batch, batchSize, startX, startZ, velocityX, velocityZ);
+        }
+        System.out.println("Course: " + name + ", mismatching shots: "
+                + countMismatches(physicsEngine, batch, startX, startZ, velocityX, velocityZ));
+
+        long start = System.nanoTime();
+        sequential(physicsEngine, startX, startZ, velocityX, velocityZ);
+        double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("Batch size\tShots per second\tSpeedup");
+        System.out.printf("sequential\t%.0f\t1.00%n", SHOTS_PER_RUN / sequentialSeconds);
+        for (int batchSize : BATCH_SIZES) {
+            start = System.nanoTime();
+            batched(batch, batchSize, startX, startZ, velocityX, velocityZ);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d\t%.0f\t%.2f%n", batchSize, SHOTS_PER_RUN / seconds, sequentialSeconds / seconds);
+        }
+    }
+
+    private static void sequential(PhysicsEngine physicsEngine, double startX, double startZ, double[] velocityX,
+                                   double[] velocityZ) {
+        for (int i = 0; i < velocityX.length; i++) {
+            physicsEngine.setState(startX, startZ, velocityX[i], velocityZ[i]);
+            physicsEngine.runSimulation(velocityX[i], velocityZ[i]);
+        }
+    }
+
+    private static void batched(BatchPhysicsEngine batch, int batchSize, double startX, double startZ,
+                                double[] velocityX, double[] velocityZ) {
+        double[] batchX = new double[batchSize];
+        double[] batchZ = new double[batchSize];
+        for (int first = 0; first < velocityX.length; first += batchSize) {
+            System.arraycopy(velocityX, first, batchX, 0, batchSize);
+            System.arraycopy(velocityZ, first, batchZ, 0, batchSize);
+            batch.setShots(startX, startZ, batchX, batchZ, batchSize);
+            batch.runSimulation();
+        }
+    }
+
+    private static int countMismatches(PhysicsEngine physicsEngine, BatchPhysicsEngine batch, double startX,
+                                       double startZ, double[] velocityX, double[] velocityZ) {
+        batch.setShots(startX, startZ, velocityX, velocityZ, BATCH_SIZES[BATCH_SIZES.length - 1]);
+        batch.runSimulation();
+        int mismatches = 0;
+        for (int i = 0; i < BATCH_SIZES[BATCH_SIZES.length - 1]; i++) {
+            physicsEngine.setState(startX, startZ, velocityX[i], velocityZ[i]);
+            double[] state = physicsEngine.runSimulation(velocityX[i], velocityZ[i]);
+            if (state[0] != batch.getX()[i] || state[1] != batch.getZ()[i]
+                    || state[2] != batch.getVx()[i] || state[3] != batch.getVz()[i]) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+}
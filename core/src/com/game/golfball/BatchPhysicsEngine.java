@@ -0,0 +1,283 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.math.Vector3;
+import com.game.terrain.SandHeightCalculator;
+import com.game.terrain.TerrainSurface;
+
+/**
+ * Simulates many shots at once with the same rules as
+ * {@link PhysicsEngine#runSimulation(double, double)}, and with bit for bit the
+ * same results. The balls are kept as a structure of arrays: positions and
+ * velocities live in the primitive arrays x, z, vx and vz, and a ball that has
+ * stopped is dropped from the active list and masked out of the update.
+ *
+ * Every step has two passes. The first is a plain loop over the arrays that
+ * applies gravity and friction and moves the balls, without calls or branches,
+ * so the JIT compiler can vectorize it. The second visits the active balls one
+ * by one to query the terrain and the walls, which cannot be vectorized, and
+ * prepares the slopes and friction for the next step. The terrain is queried
+ * once per ball and step, where the single ball loop queries it twice.
+ *
+ * The second pass takes most of a step, so the throughput does not grow with
+ * the batch size: {@link BatchPhysicsBenchmark} measures it about a fifth
+ * above single shots on open terrain, and below them among the maze walls
+ */
+public class BatchPhysicsEngine {
+    private static final double POSITION_THRESHOLD = 0.0001;
+    private static final double VELOCITY_THRESHOLD = 0.0001;
+    private static final double STOP_VELOCITY = 0.01;
+
+    private final TerrainSurface terrainSurface;
+    private final double grassKinetic;
+    private final double sandKinetic;
+    private final double g;
+    private final double h;
+    private final double ballMass;
+    private final int maxIterations;
+
+    // the grid finding the walls a ball runs into, and the float vectors the bounce works on
+    private final WallGrid wallGrid;
+    private final Vector3 bouncePosition = new Vector3();
+    private final Vector3 bounceVelocity = new Vector3();
+
+    private final double[] x;
+    private final double[] z;
+    private final double[] vx;
+    private final double[] vz;
+    private final double[] accelerationX; // gravity and friction per unit of mass, from the last terrain query
+    private final double[] accelerationZ;
+    private final double[] mask; // 1 for active balls, 0 for stopped ones
+    private final double[] previousX;
+    private final double[] previousZ;
+    private final double[] previousVx;
+    private final double[] previousVz;
+    private final int[] iterations;
+    private final int[] active; // indices of the active balls
+    private final double[] surface = new double[3];
+    private int count;
+    private int activeCount;
+    private long steps;
+
+    /**
+     * Constructs a BatchPhysicsEngine on the course of a single ball engine
+     *
+     * @param physicsEngine The engine whose terrain, friction and walls are used
+     * @param capacity      The largest number of balls simulated at once
+     */
+    public BatchPhysicsEngine(PhysicsEngine physicsEngine, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.terrainSurface = physicsEngine.getTerrainSurface();
+        this.grassKinetic = physicsEngine.GRASS_K;
+        this.sandKinetic = physicsEngine.SAND_K;
+        this.g = physicsEngine.g;
+        this.h = physicsEngine.h;
+        this.ballMass = physicsEngine.ballMass;
+        this.maxIterations = PhysicsEngine.MAX_ITERATIONS;
+
+        this.wallGrid = physicsEngine.getWallGrid();
+
+        x = new double[capacity];
+        z = new double[capacity];
+        vx = new double[capacity];
+        vz = new double[capacity];
+        accelerationX = new double[capacity];
+        accelerationZ = new double[capacity];
+        mask = new double[capacity];
+        previousX = new double[capacity];
+        previousZ = new double[capacity];
+        previousVx = new double[capacity];
+        previousVz = new double[capacity];
+        iterations = new int[capacity];
+        active = new int[capacity];
+    }
+
+    /**
+     * Sets up a batch of shots, replacing the previous batch
+     *
+     * @param startX    The x-coordinate every shot is played from
+     * @param startZ    The z-coordinate every shot is played from
+     * @param velocityX The initial velocities in the x-direction
+     * @param velocityZ The initial velocities in the z-direction
+     * @param count     The number of shots, at most the capacity
+     */
+    public void setShots(double startX, double startZ, double[] velocityX, double[] velocityZ, int count) {
+        if (count < 0 || count > x.length) {
+            throw new IllegalArgumentException("Batch size must be between 0 and " + x.length);
+        }
+        this.count = count;
+        this.activeCount = count;
+        for (int i = 0; i < count; i++) {
+            x[i] = startX;
+            z[i] = startZ;
+            vx[i] = velocityX[i];
+            vz[i] = velocityZ[i];
+            previousX[i] = startX;
+            previousZ[i] = startZ;
+            previousVx[i] = vx[i];
+            previousVz[i] = vz[i];
+            iterations[i] = 0;
+            mask[i] = 1;
+            active[i] = i;
+            terrainSurface.heightAndGradient(startX, startZ, surface);
+            prepareStep(i);
+        }
+    }
+
+    /**
+     * Advances every active ball until all of them have stopped
+     */
+    public void runSimulation() {
+        while (activeCount > 0) {
+            step();
+        }
+    }
+
+    /**
+     * Advances every active ball by one step
+     *
+     * @return The number of balls still active afterwards
+     */
+    public int step() {
+        int n = count;
+        double dt = h;
+        // Euler update of all balls, stopped ones have a zero mask and zero acceleration
+        for (int i = 0; i < n; i++) {
+            vx[i] += accelerationX[i] * dt * mask[i];
+            vz[i] += accelerationZ[i] * dt * mask[i];
+            x[i] += vx[i] * dt * mask[i];
+            z[i] += vz[i] * dt * mask[i];
+        }
+
+        int stillActive = 0;
+        for (int a = 0; a < activeCount; a++) {
+            int i = active[a];
+            if (Math.sqrt(vx[i] * vx[i] + vz[i] * vz[i]) < PhysicsEngine.LIMIT_ZERO) {
+                vx[i] = 0;
+                vz[i] = 0;
+            }
+            terrainSurface.heightAndGradient(x[i], z[i], surface);
+            if (surface[0] < 0) {
+                vx[i] = 0;
+                vz[i] = 0;
+                stop(i);
+                continue;
+            }
+            // the single ball loop passes the position and velocity through float vectors for the bounce
+            Vector3 position = bouncePosition.set((float) x[i], 0, (float) z[i]);
+            Vector3 velocity = bounceVelocity.set((float) vx[i], 0, (float) vz[i]);
+            if (Bouncing.sweepAndBounce((float) previousX[i], (float) previousZ[i], position,
+                    velocity, wallGrid)) {
+                x[i] = position.x;
+                z[i] = position.z;
+                terrainSurface.heightAndGradient(x[i], z[i], surface); // the next step starts where the bounce left the ball
+            }
+            vx[i] = velocity.x;
+            vz[i] = velocity.z;
+
+            double dx = x[i] - previousX[i];
+            double dz = z[i] - previousZ[i];
+            double dvx = vx[i] - previousVx[i];
+            double dvz = vz[i] - previousVz[i];
+            if ((Math.sqrt(dx * dx + dz * dz) < POSITION_THRESHOLD
+                    && Math.sqrt(dvx * dvx + dvz * dvz) < VELOCITY_THRESHOLD)
+                    || (Math.abs(vx[i]) < STOP_VELOCITY && Math.abs(vz[i]) < STOP_VELOCITY)
+                    || ++iterations[i] >= maxIterations) {
+                stop(i);
+                continue;
+            }
+            previousX[i] = x[i];
+            previousZ[i] = z[i];
+            previousVx[i] = vx[i];
+            previousVz[i] = vz[i];
+            prepareStep(i);
+            active[stillActive++] = i;
+        }
+        steps += activeCount;
+        activeCount = stillActive;
+        return activeCount;
+    }
+
+    /**
+     * Computes the acceleration of a ball from the terrain just queried at its
+     * position, the same way as {@link PhysicsEngine#updateStateVectorEuler}
+     *
+     * @param i The index of the ball
+     */
+    private void prepareStep(int i) {
+        double slopeX = surface[1];
+        double slopeZ = surface[2];
+        double kineticCoefficient = SandHeightCalculator.getSandHeight((float) x[i] + 50, (float) z[i] + 50) > 0.5
+                ? sandKinetic : grassKinetic;
+        double normVelocity = Math.sqrt(vx[i] * vx[i] + vz[i] * vz[i]);
+        double frictionX = normVelocity > PhysicsEngine.LIMIT_ZERO
+                ? kineticCoefficient * g * (vx[i] / normVelocity)
+                : kineticCoefficient * g * (slopeX / Math.sqrt(slopeX * slopeX + slopeZ * slopeZ));
+        double frictionZ = normVelocity > PhysicsEngine.LIMIT_ZERO
+                ? kineticCoefficient * g * (vz[i] / normVelocity)
+                : kineticCoefficient * g * (slopeZ / Math.sqrt(slopeX * slopeX + slopeZ * slopeZ));
+        accelerationX[i] = (-g * slopeX - frictionX) / ballMass;
+        accelerationZ[i] = (-g * slopeZ - frictionZ) / ballMass;
+    }
+
+    private void stop(int i) {
+        mask[i] = 0;
+        accelerationX[i] = 0;
+        accelerationZ[i] = 0;
+    }
+
+    /**
+     * Gets the x-coordinates of the balls, valid for the current batch size
+     *
+     * @return The x-coordinates
+     */
+    public double[] getX() {
+        return x;
+    }
+
+    /**
+     * Gets the z-coordinates of the balls, valid for the current batch size
+     *
+     * @return The z-coordinates
+     */
+    public double[] getZ() {
+        return z;
+    }
+
+    /**
+     * Gets the velocities of the balls in the x-direction
+     *
+     * @return The x velocities
+     */
+    public double[] getVx() {
+        return vx;
+    }
+
+    /**
+     * Gets the velocities of the balls in the z-direction
+     *
+     * @return The z velocities
+     */
+    public double[] getVz() {
+        return vz;
+    }
+
+    /**
+     * Gets the number of balls that are still moving
+     *
+     * @return The number of active balls
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * Gets the number of ball steps simulated since the engine was created
+     *
+     * @return The number of steps, counting every ball separately
+     */
+    public long getStepCount() {
+        return steps;
+    }
+}
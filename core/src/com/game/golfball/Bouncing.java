@@ -6,19 +6,23 @@ import com.game.terrain.Maze.Wall;
 import java.util.List;
 
 public class Bouncing {
-    private static final float BUFFER_ZONE = 0.06f; // Buffer zone around the walls
+    static final float BUFFER_ZONE = 0.06f; // Buffer zone around the walls
+    private static final int MAX_BOUNCES = 4; // most walls a ball bounces off in one step
 
     /**
      * Detects collision with a wall and calculates the new velocity after the bounce.
+     * The velocity is reflected in place, without allocating. Every wall is
+     * looked at; keep a {@link WallGrid} of the walls to look only at the near ones
      * 
      * @param position The current position of the ball.
-     * @param velocity The current velocity of the ball.
+     * @param velocity The current velocity of the ball, changed by the bounce.
      * @param walls The list of walls in the maze.
-     * @return The new velocity vector after the bounce.
+     * @return The velocity vector after the bounce, the same object as velocity.
      */
     public static Vector3 detectCollisionAndBounce(Vector3 position, Vector3 velocity, List<Wall> walls) {
         if(walls == null) return velocity;
-        for (Wall wall : walls) {
+        for (int w = 0; w < walls.size(); w++) {
+            Wall wall = walls.get(w);
             if (isColliding(position, wall)) {
                 return calculateBounce(position, velocity, wall);
             }
@@ -26,6 +30,109 @@ public class Bouncing {
         return velocity;
     }
 
+    /**
+     * Detects collision with a wall of a grid and calculates the new velocity
+     * after the bounce, looking only at the walls near the position
+     *
+     * @param position The current position of the ball.
+     * @param velocity The current velocity of the ball, changed by the bounce.
+     * @param wallGrid The grid of the walls in the maze.
+     * @return The velocity vector after the bounce, the same object as velocity.
+     */
+    public static Vector3 detectCollisionAndBounce(Vector3 position, Vector3 velocity, WallGrid wallGrid) {
+        int wall = wallGrid.collidingWall(position.x, position.z);
+        if (wall >= 0) {
+            return calculateBounce(position, velocity, wallGrid.getWall(wall));
+        }
+        return velocity;
+    }
+
+    /**
+     * Moves the ball along its last step and bounces it off every wall the
+     * step runs into, at the time of impact, so a fast ball cannot pass through
+     * a wall between two positions. The velocity and the rest of the step are
+     * reflected on the normal of the wall where the ball touches it. A ball
+     * that started the step inside a wall is bounced as by
+     * {@link #detectCollisionAndBounce}, by the position it ends at. The walls
+     * are looked up in a grid, see {@link #gridOf(List)}
+     *
+     * @param fromX    The x-coordinate of the ball before the step.
+     * @param fromZ    The z-coordinate of the ball before the step.
+     * @param position The position of the ball after the step, moved to where the bounces leave it.
+     * @param velocity The current velocity of the ball, changed by the bounces.
+     * @param wallGrid The grid of the walls in the maze, or null without a maze.
+     * @return True if the ball bounced.
+     */
+    public static boolean sweepAndBounce(float fromX, float fromZ, Vector3 position, Vector3 velocity,
+                                         WallGrid wallGrid) {
+        if (wallGrid == null) return false;
+        float x = fromX;
+        float z = fromZ;
+        float dx = position.x - fromX;
+        float dz = position.z - fromZ;
+        int bounces = 0;
+        int wall;
+        while ((wall = wallGrid.sweptWall(x, z, dx, dz)) >= 0) {
+            if (bounces == MAX_BOUNCES) {
+                // wedged between walls, the ball stays where it touched the last one
+                dx = 0;
+                dz = 0;
+                break;
+            }
+            float time = wallGrid.timeOfImpact(wall, x, z, dx, dz);
+            x += dx * time;
+            z += dz * time;
+            dx *= 1 - time;
+            dz *= 1 - time;
+
+            // the normal points from the closest point of the wall to the ball
+            Wall hit = wallGrid.getWall(wall);
+            Vector3 wallPosition = hit.getPosition();
+            float normalX = x - Math.max(wallPosition.x - hit.getWidth() / 2, Math.min(x, wallPosition.x + hit.getWidth() / 2));
+            float normalZ = z - Math.max(wallPosition.z - hit.getDepth() / 2, Math.min(z, wallPosition.z + hit.getDepth() / 2));
+            if (normalZ == 0 && normalX != 0) {
+                velocity.x = -velocity.x;
+                dx = -dx;
+            } else if (normalX == 0 && normalZ != 0) {
+                velocity.z = -velocity.z;
+                dz = -dz;
+            } else if (normalX != 0) {
+                // a corner, the normal is not an axis
+                float scale = 2 / (normalX * normalX + normalZ * normalZ);
+                float along = (velocity.x * normalX + velocity.z * normalZ) * scale;
+                velocity.x -= along * normalX;
+                velocity.z -= along * normalZ;
+                along = (dx * normalX + dz * normalZ) * scale;
+                dx -= along * normalX;
+                dz -= along * normalZ;
+            }
+            bounces++;
+        }
+        if (bounces > 0) {
+            position.x = x + dx;
+            position.z = z + dz;
+            return true;
+        }
+
+        wall = wallGrid.collidingWall(position.x, position.z);
+        if (wall >= 0 && wallGrid.contains(wall, fromX, fromZ)) {
+            calculateBounce(position, velocity, wallGrid.getWall(wall));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Builds the grid of a list of walls for {@link #sweepAndBounce}. Whoever
+     * keeps the walls builds their grid once and keeps it with them
+     *
+     * @param walls The list of walls, or null without a maze
+     * @return The grid of the walls, or null if there are none
+     */
+    public static WallGrid gridOf(List<Wall> walls) {
+        return walls == null || walls.isEmpty() ? null : new WallGrid(walls);
+    }
+
     /**
      * Checks if the ball is colliding with the given wall.
      * 
@@ -33,7 +140,7 @@ public class Bouncing {
      * @param wall The wall to check for collision.
      * @return True if the ball is colliding with the wall, false otherwise.
      */
-    private static boolean isColliding(Vector3 position, Wall wall) {
+    static boolean isColliding(Vector3 position, Wall wall) {
         float wallHalfWidth = wall.getWidth() / 2 + BUFFER_ZONE;
         float wallHalfDepth = wall.getDepth() / 2 + BUFFER_ZONE;
         Vector3 wallPosition = wall.getPosition();
@@ -44,28 +151,16 @@ public class Bouncing {
     }
 
     /**
-     * Calculates the new velocity vector after bouncing off the wall.
+     * Calculates the new velocity vector after bouncing off the wall, by
+     * reflecting it on the normal of the wall side the ball hit. The normal is
+     * an axis, so the reflection flips one component
      * 
      * @param position The current position of the ball.
-     * @param velocity The current velocity of the ball.
+     * @param velocity The current velocity of the ball, reflected in place.
      * @param wall The wall the ball collided with.
      * @return The new velocity vector after the bounce.
      */
     private static Vector3 calculateBounce(Vector3 position, Vector3 velocity, Wall wall) {
-        Vector3 normal = calculateNormal(position, wall);
-        return velocity.sub(normal.scl(2 * velocity.dot(normal)));
-    }
-
-    /**
-     * Calculates the normal vector of the wall surface.
-     * 
-     * @param position The current position of the ball.
-     * @param wall The wall to calculate the normal for.
-     * @return The normal vector of the wall surface.
-     */
-    private static Vector3 calculateNormal(Vector3 position, Wall wall) {
-        float wallHalfWidth = wall.getWidth() / 2;
-        float wallHalfDepth = wall.getDepth() / 2;
         Vector3 wallPosition = wall.getPosition();
 
         // Check which side of the wall the ball is colliding with
@@ -73,11 +168,12 @@ public class Bouncing {
         float deltaZ = position.z - wallPosition.z;
 
         if (Math.abs(deltaX) > Math.abs(deltaZ)) {
-            // Colliding with vertical sides (left or right)
-            return new Vector3(Math.signum(deltaX), 0, 0);
-        } else {
-            // Colliding with horizontal sides (top or bottom)
-            return new Vector3(0, 0, Math.signum(deltaZ));
+            // Colliding with vertical sides (left or right), the normal is (±1, 0, 0)
+            velocity.x = -velocity.x;
+        } else if (deltaZ != 0) {
+            // Colliding with horizontal sides (top or bottom), the normal is (0, 0, ±1)
+            velocity.z = -velocity.z;
         }
+        return velocity;
     }
 }
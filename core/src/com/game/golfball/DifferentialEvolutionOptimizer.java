@@ -0,0 +1,185 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.math.Vector3;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Differential evolution (DE/rand/1/bin) on the shot velocity. Every generation
+ * mutates and crosses over the whole population, then simulates all the trial
+ * shots at once on the common fork-join pool, one engine per thread. Unlike the
+ * gradient the search needs no smooth deviation, so it is not stuck behind a
+ * wall of the maze the way {@link AdamShotOptimizer} can be.
+ *
+ * The random numbers come from a fixed seed and are drawn before the shots are
+ * simulated, so a search gives the same shot whether it runs in parallel or not
+ */
+public class DifferentialEvolutionOptimizer implements ShotOptimizer {
+    private static final int POPULATION_SIZE = 24;
+    private static final int MAX_GENERATIONS = 60;
+    private static final double DIFFERENTIAL_WEIGHT = 0.6; // F, the scale of the difference vector
+    private static final double CROSSOVER_RATE = 0.9; // CR, the chance of taking a component of the mutant
+    private static final double MAX_VELOCITY = 70.0; // same bound as the Adam search
+    private static final long SEED = 42;
+
+    // whether the shots of a generation are simulated at the same time, by default when there are cores to run them
+    private boolean parallelEvaluation = ForkJoinPool.getCommonPoolParallelism() > 1;
+
+    /**
+     * Searches for the best shot. The budget is checked between generations and
+     * at least the first generation is always run, so the search may overrun the
+     * budget by the time of one generation
+     */
+    @Override
+    public ShotSearchResult search(PhysicsEngine physicsEngine, Vector3 start, Vector3 target, long budgetMillis,
+                                   BooleanSupplier cancelled) {
+        return search(physicsEngine, start, target, null, budgetMillis, cancelled);
+    }
+
+    /**
+     * Searches for the best shot with the guess as one member of the initial
+     * population
+     */
+    @Override
+    public ShotSearchResult search(PhysicsEngine physicsEngine, Vector3 start, Vector3 target,
+                                   Vector3 initialVelocity, long budgetMillis, BooleanSupplier cancelled) {
+        long startTime = System.nanoTime();
+        long deadline = startTime + budgetMillis * 1_000_000;
+        Random random = new Random(SEED);
+        ThreadLocal<ShotRollout> rollouts = ThreadLocal.withInitial(() -> new ShotRollout(physicsEngine, start, target));
+
+        // the initial velocities are spread over a disk a bit larger than the speed needed to roll to the target
+        double distance = Math.hypot(target.x - start.x, target.z - start.z);
+        double rollingSpeed = Math.sqrt(2 * physicsEngine.GRASS_K * physicsEngine.g / physicsEngine.ballMass * distance);
+        double initialRadius = Math.min(MAX_VELOCITY, 2 * rollingSpeed + 1);
+
+        Vector3[] population = new Vector3[POPULATION_SIZE];
+        for (int i = 0; i < POPULATION_SIZE; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double radius = initialRadius * Math.sqrt(random.nextDouble());
+            population[i] = new Vector3((float) (radius * Math.cos(angle)), 0, (float) (radius * Math.sin(angle)));
+        }
+        if (initialVelocity != null) {
+            population[0].set(initialVelocity.x, 0, initialVelocity.z);
+        }
+        float[] deviations = evaluate(population, rollouts);
+        int simulations = POPULATION_SIZE;
+        int best = indexOfBest(deviations);
+        int generation = 1;
+
+        Vector3[] trials = new Vector3[POPULATION_SIZE];
+        while (deviations[best] >= TOLERANCE && generation < MAX_GENERATIONS && !cancelled.getAsBoolean()) {
+            if (budgetMillis > 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+            for (int i = 0; i < POPULATION_SIZE; i++) {
+                trials[i] = trial(population, i, random);
+            }
+            float[] trialDeviations = evaluate(trials, rollouts);
+            simulations += POPULATION_SIZE;
+            for (int i = 0; i < POPULATION_SIZE; i++) {
+                if (trialDeviations[i] <= deviations[i]) {
+                    population[i] = trials[i];
+                    deviations[i] = trialDeviations[i];
+                }
+            }
+            best = indexOfBest(deviations);
+            generation++;
+        }
+
+        return new ShotSearchResult(new Vector3(population[best]), deviations[best], generation, simulations,
+                (System.nanoTime() - startTime) / 1e6, deviations[best] < TOLERANCE);
+    }
+
+    /**
+     * Builds the trial velocity of one member of the population: the mutant
+     * a + F * (b - c) of three other random members, crossed over with the member
+     *
+     * @param population The current population
+     * @param i          The index of the member
+     * @param random     The source of random numbers
+     * @return The trial velocity, within the velocity bound
+     */
+    private Vector3 trial(Vector3[] population, int i, Random random) {
+        int a, b, c;
+        do {
+            a = random.nextInt(POPULATION_SIZE);
+        } while (a == i);
+        do {
+            b = random.nextInt(POPULATION_SIZE);
+        } while (b == i || b == a);
+        do {
+            c = random.nextInt(POPULATION_SIZE);
+        } while (c == i || c == a || c == b);
+
+        Vector3 member = population[i];
+        Vector3 trial = new Vector3(member);
+        boolean crossX = random.nextDouble() < CROSSOVER_RATE;
+        boolean crossZ = random.nextDouble() < CROSSOVER_RATE;
+        // at least one component comes from the mutant, otherwise the trial is the member itself
+        if (!crossX && !crossZ) {
+            if (random.nextBoolean()) {
+                crossX = true;
+            } else {
+                crossZ = true;
+            }
+        }
+        if (crossX) {
+            trial.x = (float) (population[a].x + DIFFERENTIAL_WEIGHT * (population[b].x - population[c].x));
+        }
+        if (crossZ) {
+            trial.z = (float) (population[a].z + DIFFERENTIAL_WEIGHT * (population[b].z - population[c].z));
+        }
+        if (trial.len() > MAX_VELOCITY) {
+            trial.scl((float) (MAX_VELOCITY / trial.len()));
+        }
+        return trial;
+    }
+
+    /**
+     * Simulates every velocity, in parallel if enabled
+     *
+     * @param velocities The velocities to simulate
+     * @param rollouts   The rollout of every thread
+     * @return The distance between where every shot stops and the target
+     */
+    private float[] evaluate(Vector3[] velocities, ThreadLocal<ShotRollout> rollouts) {
+        float[] deviations = new float[velocities.length];
+        IntStream indices = IntStream.range(0, velocities.length);
+        if (parallelEvaluation) {
+            indices = indices.parallel();
+        }
+        indices.forEach(i -> deviations[i] = rollouts.get().deviation(velocities[i]).len());
+        return deviations;
+    }
+
+    private static int indexOfBest(float[] deviations) {
+        int best = 0;
+        for (int i = 1; i < deviations.length; i++) {
+            if (deviations[i] < deviations[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Sets whether the shots of a generation are simulated at the same time on
+     * the common fork-join pool. Both ways give identical shots
+     *
+     * @param parallelEvaluation true to simulate the shots in parallel, false to simulate them one after another
+     */
+    public void setParallelEvaluation(boolean parallelEvaluation) {
+        this.parallelEvaluation = parallelEvaluation;
+    }
+
+    /**
+     * Does nothing, every search starts from a new population
+     */
+    @Override
+    public void reset() {
+    }
+}
@@ -0,0 +1,265 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.math.Vector3;
+import com.game.terrain.SandHeightCalculator;
+import com.game.terrain.TerrainSurface;
+
+/**
+ * Simulates whole shots with the adaptive Dormand-Prince 5(4) method instead of
+ * the fixed step of {@link PhysicsEngine#runSimulation(double, double)}. Every
+ * step is computed to fifth order together with an embedded fourth order
+ * solution, and their difference estimates the error of the step: a step whose
+ * error is above the tolerance is rejected and retried shorter, and the next
+ * step is chosen as long as the error allows. On smooth terrain the steps grow
+ * far beyond 0.004, and they shrink on steep slopes, at the sand borders and
+ * when the ball comes to rest, where friction changes abruptly.
+ *
+ * The equations, the stop rules and the simulated time limit are the same as
+ * in runSimulation. Bounces are applied between steps by sweeping the ball
+ * along the step against the walls, so a long step cannot carry the ball
+ * through a wall and the step size is left to the error estimate
+ */
+public class DormandPrinceIntegrator {
+    // Dormand-Prince tableau
+    private static final double A21 = 1.0 / 5;
+    private static final double A31 = 3.0 / 40, A32 = 9.0 / 40;
+    private static final double A41 = 44.0 / 45, A42 = -56.0 / 15, A43 = 32.0 / 9;
+    private static final double A51 = 19372.0 / 6561, A52 = -25360.0 / 2187, A53 = 64448.0 / 6561,
+            A54 = -212.0 / 729;
+    private static final double A61 = 9017.0 / 3168, A62 = -355.0 / 33, A63 = 46732.0 / 5247, A64 = 49.0 / 176,
+            A65 = -5103.0 / 18656;
+    private static final double B1 = 35.0 / 384, B3 = 500.0 / 1113, B4 = 125.0 / 192, B5 = -2187.0 / 6784,
+            B6 = 11.0 / 84;
+    // difference between the fifth and the fourth order weights, the error estimate
+    private static final double E1 = 71.0 / 57600, E3 = -71.0 / 16695, E4 = 71.0 / 1920, E5 = -17253.0 / 339200,
+            E6 = 22.0 / 525, E7 = -1.0 / 40;
+
+    private static final double SAFETY = 0.9;
+    private static final double MIN_SCALE = 0.2; // the most a step shrinks after a rejection
+    private static final double MAX_SCALE = 5.0; // the most a step grows after an acceptance
+    private static final double MIN_STEP = 1e-6;
+    private static final double MAX_STEP = 0.25;
+    private static final double STOP_VELOCITY = 0.01;
+    private static final int MAX_STEPS = 100000;
+
+    private final TerrainSurface terrainSurface;
+    private final WallGrid wallGrid;
+    private final double grassKinetic;
+    private final double sandKinetic;
+    private final double g;
+    private final double ballMass;
+    private final double tolerance;
+    private double maxTime;
+
+    private final double[] state = new double[4];
+    private final double[] k1 = new double[4];
+    private final double[] k2 = new double[4];
+    private final double[] k3 = new double[4];
+    private final double[] k4 = new double[4];
+    private final double[] k5 = new double[4];
+    private final double[] k6 = new double[4];
+    private final double[] k7 = new double[4];
+    private final double[] stage = new double[4];
+    private final double[] next = new double[4];
+    private final double[] surface = new double[3];
+    private final Vector3 bouncePosition = new Vector3(); // scratch vectors of the wall bounce
+    private final Vector3 bounceVelocity = new Vector3();
+
+    private int acceptedSteps;
+    private int rejectedSteps;
+    private int evaluations;
+
+    /**
+     * Constructs a DormandPrinceIntegrator on the course of an engine
+     *
+     * @param physicsEngine The engine whose terrain, friction and walls are used
+     * @param tolerance     The error allowed per step, relative to the state and
+     *                      absolute near zero
+     */
+    public DormandPrinceIntegrator(PhysicsEngine physicsEngine, double tolerance) {
+        if (tolerance <= 0) {
+            throw new IllegalArgumentException("Tolerance must be positive");
+        }
+        this.terrainSurface = physicsEngine.getTerrainSurface();
+        this.wallGrid = physicsEngine.getWallGrid();
+        this.grassKinetic = physicsEngine.GRASS_K;
+        this.sandKinetic = physicsEngine.SAND_K;
+        this.g = physicsEngine.g;
+        this.ballMass = physicsEngine.ballMass;
+        this.tolerance = tolerance;
+        this.maxTime = PhysicsEngine.MAX_ITERATIONS * physicsEngine.h;
+    }
+
+    /**
+     * Sets the longest simulated time of a shot. It is the time runSimulation
+     * covers in its 1000 steps by default
+     *
+     * @param maxTime The time limit in seconds
+     */
+    public void setMaxTime(double maxTime) {
+        if (maxTime <= 0) {
+            throw new IllegalArgumentException("Time limit must be positive");
+        }
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * Simulates a shot until the ball stops, drops into the water or the time
+     * runs out
+     *
+     * @param x0 The start x-coordinate
+     * @param z0 The start z-coordinate
+     * @param vx The initial velocity in the x-direction
+     * @param vz The initial velocity in the z-direction
+     * @return The final position and velocity, valid until the next shot
+     */
+    public double[] simulate(double x0, double z0, double vx, double vz) {
+        state[0] = x0;
+        state[1] = z0;
+        state[2] = vx;
+        state[3] = vz;
+        acceptedSteps = 0;
+        rejectedSteps = 0;
+        evaluations = 0;
+
+        double time = 0;
+        double step = 0.01;
+        derivative(state, k1);
+        while (time < maxTime && acceptedSteps + rejectedSteps < MAX_STEPS) {
+            step = Math.min(step, maxTime - time);
+            double error = attempt(step);
+            if (error > 1 && step > MIN_STEP) {
+                rejectedSteps++;
+                step = Math.max(MIN_STEP, step * Math.max(MIN_SCALE, SAFETY * Math.pow(error, -0.2)));
+                continue;
+            }
+            acceptedSteps++;
+            time += step;
+            float fromX = (float) state[0];
+            float fromZ = (float) state[1];
+            System.arraycopy(next, 0, state, 0, 4);
+            double scale = error == 0 ? MAX_SCALE : Math.min(MAX_SCALE, SAFETY * Math.pow(error, -0.2));
+            step = Math.min(MAX_STEP, Math.max(MIN_STEP, step * scale));
+
+            if (terrainSurface.getHeight(state[0], state[1]) < 0) {
+                state[2] = 0;
+                state[3] = 0;
+                break;
+            }
+            if (Math.abs(state[2]) < STOP_VELOCITY && Math.abs(state[3]) < STOP_VELOCITY) {
+                break;
+            }
+            if (wallGrid != null) {
+                Vector3 position = bouncePosition.set((float) state[0], 0, (float) state[1]);
+                Vector3 velocity = bounceVelocity.set((float) state[2], 0, (float) state[3]);
+                if (Bouncing.sweepAndBounce(fromX, fromZ, position, velocity, wallGrid)) {
+                    state[0] = position.x;
+                    state[1] = position.z;
+                    state[2] = velocity.x;
+                    state[3] = velocity.z;
+                    derivative(state, k1);
+                    continue;
+                }
+            }
+            // first same as last: the last stage of this step is the first of the next
+            System.arraycopy(k7, 0, k1, 0, 4);
+        }
+        return state;
+    }
+
+    /**
+     * Computes one step from the current state into next, with k1 already
+     * evaluated at the current state
+     *
+     * @param step The step size
+     * @return The error estimate relative to the tolerance, at most 1 for an acceptable step
+     */
+    private double attempt(double step) {
+        for (int i = 0; i < 4; i++) {
+            stage[i] = state[i] + step * A21 * k1[i];
+        }
+        derivative(stage, k2);
+        for (int i = 0; i < 4; i++) {
+            stage[i] = state[i] + step * (A31 * k1[i] + A32 * k2[i]);
+        }
+        derivative(stage, k3);
+        for (int i = 0; i < 4; i++) {
+            stage[i] = state[i] + step * (A41 * k1[i] + A42 * k2[i] + A43 * k3[i]);
+        }
+        derivative(stage, k4);
+        for (int i = 0; i < 4; i++) {
+            stage[i] = state[i] + step * (A51 * k1[i] + A52 * k2[i] + A53 * k3[i] + A54 * k4[i]);
+        }
+        derivative(stage, k5);
+        for (int i = 0; i < 4; i++) {
+            stage[i] = state[i] + step * (A61 * k1[i] + A62 * k2[i] + A63 * k3[i] + A64 * k4[i] + A65 * k5[i]);
+        }
+        derivative(stage, k6);
+        for (int i = 0; i < 4; i++) {
+            next[i] = state[i] + step * (B1 * k1[i] + B3 * k3[i] + B4 * k4[i] + B5 * k5[i] + B6 * k6[i]);
+        }
+        derivative(next, k7);
+
+        double error = 0;
+        for (int i = 0; i < 4; i++) {
+            double estimate = step * (E1 * k1[i] + E3 * k3[i] + E4 * k4[i] + E5 * k5[i] + E6 * k6[i] + E7 * k7[i]);
+            double allowed = tolerance * (1 + Math.max(Math.abs(state[i]), Math.abs(next[i])));
+            error = Math.max(error, Math.abs(estimate) / allowed);
+        }
+        return error;
+    }
+
+    /**
+     * Evaluates the equations of motion of {@link PhysicsEngine#updateStateVectorEuler}
+     *
+     * @param y    The position and velocity
+     * @param dydt Receives the velocity and acceleration
+     */
+    private void derivative(double[] y, double[] dydt) {
+        evaluations++;
+        terrainSurface.heightAndGradient(y[0], y[1], surface);
+        double slopeX = surface[1];
+        double slopeZ = surface[2];
+        double kineticCoefficient = SandHeightCalculator.getSandHeight((float) y[0] + 50, (float) y[1] + 50) > 0.5
+                ? sandKinetic : grassKinetic;
+        double normVelocity = Math.sqrt(y[2] * y[2] + y[3] * y[3]);
+        double frictionX = normVelocity > PhysicsEngine.LIMIT_ZERO
+                ? kineticCoefficient * g * (y[2] / normVelocity)
+                : kineticCoefficient * g * (slopeX / Math.sqrt(slopeX * slopeX + slopeZ * slopeZ));
+        double frictionZ = normVelocity > PhysicsEngine.LIMIT_ZERO
+                ? kineticCoefficient * g * (y[3] / normVelocity)
+                : kineticCoefficient * g * (slopeZ / Math.sqrt(slopeX * slopeX + slopeZ * slopeZ));
+        dydt[0] = y[2];
+        dydt[1] = y[3];
+        dydt[2] = (-g * slopeX - frictionX) / ballMass;
+        dydt[3] = (-g * slopeZ - frictionZ) / ballMass;
+    }
+
+    /**
+     * Gets the number of steps accepted in the last shot
+     *
+     * @return The accepted steps
+     */
+    public int getAcceptedSteps() {
+        return acceptedSteps;
+    }
+
+    /**
+     * Gets the number of steps rejected and retried shorter in the last shot
+     *
+     * @return The rejected steps
+     */
+    public int getRejectedSteps() {
+        return rejectedSteps;
+    }
+
+    /**
+     * Gets the number of evaluations of the equations of motion in the last
+     * shot, six or seven per attempted step
+     *
+     * @return The derivative evaluations
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+}
@@ -2,35 +2,41 @@ package com.game.golfball;
 
 import com.badlogic.gdx.math.Vector3;
 import com.game.terrain.GameRules;
-import com.game.terrain.GetHeight;
 import com.game.terrain.Maze.Wall;
 
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 public class GolfAI {
     private Vector3 targetPosition;
     private PhysicsEngine physicsEngine;
     private GolfBall AIball;
-    private static final double EPSILON_ADAM = 1e-8; // Epsilon for Adam optimizer to ensure numerical stability
-    private static final double INITIAL_EPSILON_GRAD = 0.5; // Initial epsilon for gradient approximation
-    private static final double MIN_EPSILON_GRAD = 1e-4; // Minimum epsilon for gradient approximation
-    private static final int MAX_ITERATIONS = 500; // Max iterations for convergence
-    private static final double INITIAL_LEARNING_RATE = 1; // Initial learning rate for large steps
-    private static final double MIN_LEARNING_RATE = 0.005; // Minimum learning rate for fine adjustments
-    private static final double TOLERANCE = 0.05; // Tolerance for stopping condition
-    private static final double BETA1 = 0.9; // Decay rate for the first moment estimate
-    private static final double BETA2 = 0.999; // Decay rate for the second moment estimate
-
-    private Vector3 m; // First moment vector
-    private Vector3 v; // Second moment vector
-    private double learningRate; // Current learning rate
-    private double epsilonGrad; // Current epsilon for gradient approximation
-    private int t; // Time step
+    // plans shots off the render thread, the searches of different AIs side by side
+    private static final AtomicInteger PLANNER_THREADS = new AtomicInteger();
+    private static final ExecutorService PLANNERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shot-planner-" + PLANNER_THREADS.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ShotOptimizer optimizer = new AdamShotOptimizer(); // the search strategy
+    private volatile ShotTable shotTable; // precomputed shots of the course, null if there is none
     private GameRules gameRules; // Game rules
-    private List<Wall> walls; // List of walls
+    private WallGrid wallGrid; // grid of the maze walls, null without a maze
     private Queue<Vector3> pathSegments; // Queue to hold the path segments
+    private CompletableFuture<Vector3> plannedShot; // the shot being planned, null when not thinking
+    // the last search started, the next one runs after it since the searches share this AI's optimizer
+    private CompletableFuture<Void> planning = CompletableFuture.completedFuture(null);
+    private volatile long timeBudgetMillis; // time budget of planned shots, 0 for no limit
+    private volatile ShotSearchResult lastSearch;
+    private volatile boolean announceSearches;
+    private boolean searchInterrupted; // whether a cancelled search left the optimizer half way, planned searches only
 
     /**
      * Constructs a GolfAI object with the specified parameters
@@ -45,16 +51,11 @@ public class GolfAI {
         this.AIball = AIball;
         this.targetPosition = targetPosition;
         this.physicsEngine = physicsEngine;
-        this.m = new Vector3(0, 0, 0);
-        this.v = new Vector3(0, 0, 0);
-        this.learningRate = INITIAL_LEARNING_RATE;
-        this.epsilonGrad = INITIAL_EPSILON_GRAD;
-        this.t = 0;
         if (gameRules == null) {
             throw new IllegalArgumentException("gameRules cannot be null");
         }
         this.gameRules = gameRules;
-        this.walls = walls;
+        this.wallGrid = Bouncing.gridOf(walls);
         this.pathSegments = new LinkedList<>();
     }
 
@@ -64,108 +65,179 @@ public class GolfAI {
      * @return The velocity vector representing the best shot
      */
     public Vector3 findBestShot() {
-        Vector3 currentVelocity = new Vector3(2f, 0f, -6f);
-        Vector3 bestVelocity = new Vector3(currentVelocity);
-        float lowestDeviation = Float.MAX_VALUE;
+        return search(new Vector3(AIball.getPosition()), () -> false, 0).getVelocity();
+    }
 
-        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
-            Vector3 deviation = calculateFunction(currentVelocity);
+    /**
+     * Calculates the best shot within a time budget. The search is an anytime
+     * search: when the budget runs out it returns the best shot found so far.
+     * The search may overrun the budget by the time of one iteration of the
+     * optimizer
+     *
+     * @param budgetMillis The wall-clock time budget in milliseconds, 0 for no limit
+     * @return The best shot with the number of iterations and simulations run and its deviation
+     */
+    public ShotSearchResult findBestShot(long budgetMillis) {
+        return search(new Vector3(AIball.getPosition()), () -> false, budgetMillis);
+    }
 
-            if (deviation.len() < lowestDeviation) {
-                lowestDeviation = deviation.len();
-                bestVelocity.set(currentVelocity);
+    /**
+     * Calculates the best shot from the given position, stopping early with the
+     * best shot so far when the search is cancelled or out of time
+     *
+     * @param start        The position the shot is played from
+     * @param cancelled    Tells whether the search has been cancelled
+     * @param budgetMillis The wall-clock time budget in milliseconds, 0 for no limit
+     * @return The best shot and the statistics of the search
+     */
+    private ShotSearchResult search(Vector3 start, BooleanSupplier cancelled, long budgetMillis) {
+        Vector3 target = new Vector3(targetPosition);
+        ShotTable table = shotTable;
+        Vector3 tableShot = new Vector3();
+        ShotSearchResult result;
+        if (table != null && table.isFor(target) && table.lookup(start.x, start.z, tableShot)) {
+            // the looked up shot is the answer if it stops in the hole, otherwise the search starts from it
+            long startTime = System.nanoTime();
+            float deviation = new ShotRollout(physicsEngine, start, target).deviation(tableShot).len();
+            if (deviation < physicsEngine.Rt) {
+                result = new ShotSearchResult(tableShot, deviation, 0, 1, (System.nanoTime() - startTime) / 1e6,
+                        deviation < ShotOptimizer.TOLERANCE);
+            } else {
+                result = optimizer.search(physicsEngine, start, target, tableShot, budgetMillis, cancelled);
             }
-
-            if (deviation.len() < TOLERANCE) {
-                System.out.println("Convergence achieved.");
-                break;
+        } else {
+            result = optimizer.search(physicsEngine, start, target, budgetMillis, cancelled);
+        }
+        lastSearch = result;
+        if (announceSearches) {
+            System.out.println("Shot search: " + result);
+            if (physicsEngine.getTrajectoryCache() != null) {
+                System.out.println("Trajectory cache: " + physicsEngine.getTrajectoryCache());
             }
+        }
+        return result;
+    }
 
-            Vector3 gradient = approximateGradient(currentVelocity, deviation);
-
-            t++;
-
-            m.x = (float) (BETA1 * m.x + (1 - BETA1) * gradient.x);
-            m.z = (float) (BETA1 * m.z + (1 - BETA1) * gradient.z);
-
-            v.x = (float) (BETA2 * v.x + (1 - BETA2) * gradient.x * gradient.x);
-            v.z = (float) (BETA2 * v.z + (1 - BETA2) * gradient.z * gradient.z);
-
-            float mHatX = (float) (m.x / (1 - Math.pow(BETA1, t)));
-            float mHatZ = (float) (m.z / (1 - Math.pow(BETA1, t)));
-
-            float vHatX = (float) (v.x / (1 - Math.pow(BETA2, t)));
-            float vHatZ = (float) (v.z / (1 - Math.pow(BETA2, t)));
-
-            // Update velocity with momentum
-            currentVelocity.x -= learningRate * mHatX / (Math.sqrt(vHatX) + EPSILON_ADAM);
-            currentVelocity.z -= learningRate * mHatZ / (Math.sqrt(vHatZ) + EPSILON_ADAM);
+    /**
+     * Gets the statistics of the last finished search
+     *
+     * @return The result of the last search, or null before the first one
+     */
+    public ShotSearchResult getLastSearch() {
+        return lastSearch;
+    }
 
-            // Gradient and velocity clipping to prevent overshooting
-            gradientClip(gradient);
-            clipVelocity(currentVelocity);
+    /**
+     * Sets whether the statistics of every search and of the trajectory cache
+     * are printed. They are not by default, so the game stays silent; the
+     * statistics of the last search are also kept, see {@link #getLastSearch()}
+     *
+     * @param announceSearches true to print the searches, false to stay silent
+     */
+    public void setAnnounceSearches(boolean announceSearches) {
+        this.announceSearches = announceSearches;
+    }
 
-            // Update learning rate and epsilon for gradient approximation
-            learningRate = Math.max(MIN_LEARNING_RATE, learningRate * 0.98);
-            epsilonGrad = Math.max(MIN_EPSILON_GRAD, epsilonGrad * 0.99);
+    /**
+     * Sets the time budget of the shots planned with {@link #planShot()}
+     *
+     * @param budgetMillis The wall-clock time budget in milliseconds, 0 for no limit
+     */
+    public void setTimeBudget(long budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("Time budget cannot be negative");
         }
-
-        return bestVelocity;
+        this.timeBudgetMillis = budgetMillis;
     }
 
     /**
-     * Calculates the function representing the deviation between the current shot
-     * and the target position.
+     * Sets the strategy used to search for shots
      *
-     * @param velocity The velocity vector representing the current shot
-     * @return The deviation vector between the current shot and the target position.
+     * @param optimizer The shot optimizer
      */
-    private Vector3 calculateFunction(Vector3 velocity) {
-        physicsEngine.setState(AIball.getPosition().x, AIball.getPosition().z, velocity.x, velocity.z);
-        double[] afterShot = physicsEngine.runSimulation(velocity.x, velocity.z);
-        Vector3 finalPosition = new Vector3((float) afterShot[0], 0, (float) afterShot[1]);
-        return new Vector3(finalPosition.x - targetPosition.x, 0, finalPosition.z - targetPosition.z);
+    public void setOptimizer(ShotOptimizer optimizer) {
+        if (optimizer == null) {
+            throw new IllegalArgumentException("optimizer cannot be null");
+        }
+        this.optimizer = optimizer;
     }
 
     /**
-     * Approximates the gradient of the deviation function with respect to the velocity
+     * Sets the precomputed shots the search looks up before searching, see
+     * {@link ShotTable}. The table is only used while the target is the one it
+     * was built for
      *
-     * @param velocity The velocity vector representing the current shot
-     * @param originalDeviation The original deviation between the current shot and the target position
-     * @return The gradient vector approximating the rate of change of deviation with respect to velocity
+     * @param shotTable The shot table of the course, or null to always search
      */
-    private Vector3 approximateGradient(Vector3 velocity, Vector3 originalDeviation) {
-        Vector3 gradient = new Vector3();
+    public void setShotTable(ShotTable shotTable) {
+        this.shotTable = shotTable;
+    }
 
-        // Perturbation for x velocity
-        Vector3 perturbedVelocityX = new Vector3(velocity);
-        perturbedVelocityX.x += epsilonGrad;
-        Vector3 deviationX = calculateFunction(perturbedVelocityX);
-        gradient.x = (float) ((deviationX.len() - originalDeviation.len()) / epsilonGrad);
+    /**
+     * Starts planning a shot from the ball's current position on a planner
+     * thread, cancelling a shot that is still being planned. The planned velocity
+     * is given to the ball by {@link #update(GolfBall)} once it is ready. The
+     * shots of one AI are planned one after another, and those of different
+     * AIs at the same time
+     *
+     * @return The planned shot, which completes with the velocity of the shot
+     */
+    public CompletableFuture<Vector3> planShot() {
+        return planShot(false);
+    }
 
-        // Perturbation for z velocity
-        Vector3 perturbedVelocityZ = new Vector3(velocity);
-        perturbedVelocityZ.z += epsilonGrad;
-        Vector3 deviationZ = calculateFunction(perturbedVelocityZ);
-        gradient.z = (float) ((deviationZ.len() - originalDeviation.len()) / epsilonGrad);
+    /**
+     * Starts planning a shot on a planner thread, after the search planned last
+     *
+     * @param restart Whether to reset the optimizer before the search, as for a new target
+     * @return The planned shot
+     */
+    private CompletableFuture<Vector3> planShot(boolean restart) {
+        cancelPlanning();
+        Vector3 start = new Vector3(AIball.getPosition());
+        CompletableFuture<Vector3> shot = new CompletableFuture<>();
+        planning = planning.exceptionally(e -> null).thenRunAsync(() -> {
+            if (shot.isCancelled()) {
+                return;
+            }
+            try {
+                if (restart || searchInterrupted) {
+                    reset();
+                }
+                ShotSearchResult result = search(start, shot::isCancelled, timeBudgetMillis);
+                searchInterrupted = shot.isCancelled();
+                shot.complete(result.getVelocity());
+            } catch (RuntimeException e) {
+                shot.completeExceptionally(e);
+            }
+        }, PLANNERS);
+        plannedShot = shot;
+        return shot;
+    }
 
-        return gradient;
+    /**
+     * Cancels the shot being planned, if any. The search stops after its current
+     * iteration and its result is dropped, and the next search starts from a
+     * reset optimizer
+     */
+    public void cancelPlanning() {
+        if (plannedShot != null) {
+            plannedShot.cancel(false);
+            plannedShot = null;
+        }
     }
 
     /**
-     * Clips the gradient vector to prevent overshooting during optimization
+     * Checks if a shot is being planned
      *
-     * @param gradient gradient vector to be clipped
+     * @return true while the AI is thinking
      */
-    private void gradientClip(Vector3 gradient) {
-        // Clipping the gradient to ensure it doesn't overshoot
-        double maxGradient = 2.0; // Example value, adjust as needed
-        if (gradient.len() > maxGradient) {
-            gradient.scl((float) (maxGradient / gradient.len()));
-        }
+    public boolean isThinking() {
+        return plannedShot != null;
     }
 
     public void updateTarget(Vector3 newTarget) {
+        cancelPlanning();
         targetPosition.x = newTarget.z;
         targetPosition.z = newTarget.x;
     }
@@ -180,40 +252,37 @@ public class GolfAI {
     }
 
     /**
-     * Clips the velocity vector to prevent overshooting during optimization
-     *
-     * @param velocity The velocity vector to be clipped
+     * Updates the position and velocity of the golf ball according to the calculated shot,
+     * giving the ball the planned shot once it is ready
      */
-    private void clipVelocity(Vector3 velocity) {
-        double maxVelocity = 70.0;
-        if (velocity.len() > maxVelocity) {
-            velocity.scl((float) (maxVelocity / velocity.len()));
+    public void update(GolfBall ball) {
+        if (plannedShot != null) {
+            if (!plannedShot.isDone()) {
+                return; // still thinking
+            }
+            CompletableFuture<Vector3> shot = plannedShot;
+            plannedShot = null;
+            try {
+                ball.setVelocity(shot.join());
+            } catch (RuntimeException e) {
+                System.out.println("Shot planning failed: " + e.getMessage());
+            }
+            return;
         }
-    }
 
-    /**
-     * Updates the position and velocity of the golf ball according to the calculated shot
-     */
-    public void update(GolfBall ball) {
         Vector3 currentPosition = ball.getPosition();
         Vector3 currentVelocity = ball.getVelocity();
     
         if (!isVelocityEffectivelyZero(currentVelocity)) {
-            physicsEngine.setState(currentPosition.x, currentPosition.z, currentVelocity.x, currentVelocity.z);
-            double[] newState = physicsEngine.runSingleStep(currentPosition, currentVelocity);
-    
-            // Update ball position and velocity
-            Vector3 newPosition = new Vector3((float) newState[0], ball.getPosition().y, (float) newState[1]);
-            Vector3 newVelocity = new Vector3((float) newState[2], 0, (float) newState[3]);
+            // Update ball position and velocity in place, so a step allocates nothing
+            float fromX = currentPosition.x;
+            float fromZ = currentPosition.z;
+            physicsEngine.step(currentPosition, currentVelocity);
     
-            // Check for collisions and apply bounce logic
-            if (walls != null) {
-                newVelocity = Bouncing.detectCollisionAndBounce(newPosition, newVelocity, walls);
-            }
+            // Check for collisions along the step and apply bounce logic
+            Bouncing.sweepAndBounce(fromX, fromZ, currentPosition, currentVelocity, wallGrid);
     
-            ball.setPosition(newPosition);
-            ball.setVelocity(newVelocity);
-            ball.getPosition().y = (float) GetHeight.getHeight(PhysicsEngine.heightFunction, ball.getPosition().x, ball.getPosition().z);
+            ball.getPosition().y = (float) physicsEngine.getHeight(ball.getPosition().x, ball.getPosition().z);
     
             // Log the ball state after each update
             // System.out.println("Updated Ball State - Position: " + ball.getPosition() + ", Velocity: " + ball.getVelocity());
@@ -222,9 +291,7 @@ public class GolfAI {
             System.out.println("Next Target: " + nextTarget);
             System.err.println(" ball position: "+ball.getPosition()+" expected segment postion : "+ nextTarget);
             updateTarget(nextTarget);
-            reset(); // Reset parameters before finding the best shot
-            Vector3 aiShot = findBestShot();
-            ball.setVelocity(aiShot);
+            planShot(true); // Reset parameters before finding the best shot
         }
     }
     
@@ -256,10 +323,6 @@ public class GolfAI {
     }
 
     public void reset() {
-        this.m.set(0, 0, 0);
-        this.v.set(0, 0, 0);
-        this.learningRate = INITIAL_LEARNING_RATE;
-        this.epsilonGrad = INITIAL_EPSILON_GRAD;
-        this.t = 0;
+        optimizer.reset();
     }
 }
@@ -13,7 +13,9 @@ import com.badlogic.gdx.math.Vector3;
 
 public class GolfBall {
     private ModelInstance modelInstance;
+    private Color color;
     private Vector3 position;
+    private final Vector3 previousPosition; // position before the last physics step, for interpolation
     private Vector3 velocity;
     private Vector3 lastValidPosition; 
     private double mass;
@@ -21,24 +23,32 @@ public class GolfBall {
     private static final float MOVEMENT_THRESHOLD = 0.05f; // Adjusted threshold to determine if the ball is moving
 
     /**
-     * Constructs a GolfBall object with the specified start position and color
+     * Constructs a GolfBall object with the specified start position and color.
+     * The model is only built when the ball is first rendered, so balls can be
+     * simulated without an OpenGL context
      *
      * @param startPosition The initial position of the golf ball
      * @param color          The color of the golf ball
      */
     public GolfBall(Vector3 startPosition, Color color) {
         this.position = new Vector3(startPosition);
+        this.previousPosition = new Vector3(startPosition);
         this.velocity = new Vector3(0, 0, 0);
         this.lastValidPosition = new Vector3(startPosition); 
         this.mass = 0.05;
+        this.color = color;
+    }
 
-        // Create the ball model
+    /**
+     * Creates the ball model on first use
+     */
+    private void createModel() {
         ModelBuilder modelBuilder = new ModelBuilder();
         Model ballModel = modelBuilder.createSphere(0.4f, 0.4f, 0.4f, 24, 24,
                 new Material(ColorAttribute.createDiffuse(color)),
                 Usage.Position | Usage.Normal);
 
-        this.modelInstance = new ModelInstance(ballModel); 
+        this.modelInstance = new ModelInstance(ballModel);
     }
 
     /**
@@ -48,10 +58,41 @@ public class GolfBall {
      * @param environment  The Environment used for rendering
      */
     public void render(ModelBatch modelBatch, Environment environment) {
+        render(modelBatch, environment, position);
+    }
+
+    /**
+     * Renders the golf ball at a given position, such as one interpolated
+     * between two physics steps or published by the simulation thread
+     *
+     * @param modelBatch   The ModelBatch used for rendering
+     * @param environment  The Environment used for rendering
+     * @param position     The position to draw the ball at
+     */
+    public void render(ModelBatch modelBatch, Environment environment, Vector3 position) {
+        if (modelInstance == null) {
+            createModel();
+        }
         modelInstance.transform.setToTranslation(position);
         modelBatch.render(modelInstance, environment);
     }
 
+    /**
+     * Returns the position of the golf ball before the last physics step
+     *
+     * @return The previous position vector of the golf ball
+     */
+    public Vector3 getPreviousPosition() {
+        return previousPosition;
+    }
+
+    /**
+     * Remembers the current position as the one before the next physics step
+     */
+    public void savePreviousPosition() {
+        previousPosition.set(position);
+    }
+
     /**
      * Returns the current position of the golf ball
      *
@@ -80,21 +121,25 @@ public class GolfBall {
     }
 
     /**
-     * Sets the position of the golf ball to the specified position
+     * Sets the position of the golf ball to the specified position. The ball
+     * keeps its own vector and copies the position into it, and is not
+     * interpolated from where it was
      *
      * @param position The new position vector of the golf ball
      */
     public void setPosition(Vector3 position) {
-        this.position = position;
+        this.position.set(position);
+        this.previousPosition.set(position);
     }
 
     /**
-     * sets the velocity of the golf ball to the specified velocity
+     * sets the velocity of the golf ball to the specified velocity. The ball
+     * keeps its own vector and copies the velocity into it
      *
      * @param velocity The new velocity vector of the golf ball
      */
     public void setVelocity(Vector3 velocity) {
-        this.velocity = velocity;
+        this.velocity.set(velocity);
     }
 
     /**
@@ -103,6 +148,9 @@ public class GolfBall {
      * @return The model instance representing the golf ball
      */
     public ModelInstance getModelInstance() {
+        if (modelInstance == null) {
+            createModel();
+        }
         return modelInstance;
     }
 
@@ -136,6 +184,8 @@ public class GolfBall {
      * Disposes of resources associated with the golf ball.
      */
     public void dispose() {
-        modelInstance.model.dispose();
+        if (modelInstance != null) {
+            modelInstance.model.dispose();
+        }
     }
 }
@@ -2,7 +2,6 @@ package com.game.golfball;
 
 import com.badlogic.gdx.math.Vector3;
 import com.game.terrain.GameRules;
-import com.game.terrain.GetHeight;
 import com.game.golfball.Bouncing;
 import com.game.terrain.Maze.Wall;
 
@@ -12,7 +11,7 @@ public class GolfBallMovement {
     private GolfBall ball;
     private PhysicsEngine physicsEngine;
     private GameRules gameRules;
-    private List<Wall> walls;
+    private WallGrid wallGrid; // grid of the maze walls, null without a maze
 
     /**
      * Constructs a GolfBallMovement object with the specified ball, physics engine, and game rules.
@@ -29,7 +28,7 @@ public class GolfBallMovement {
             throw new IllegalArgumentException("gameRules cannot be null");
         }
         this.gameRules = gameRules;
-        this.walls = walls;
+        this.wallGrid = Bouncing.gridOf(walls);
     }
 
     /**
@@ -48,14 +47,23 @@ public class GolfBallMovement {
             return;
         }
 
+        // Calculate the velocity given the force and mass of the ball
+        shoot(new Vector3(force).scl((float) (1 / ball.getMass())));
+    }
+
+    /**
+     * Plays a shot with the given initial velocity, counting it and remembering the
+     * position it was played from. The caller must check that a shot is allowed
+     *
+     * @param velocity The initial velocity of the ball.
+     */
+    public void shoot(Vector3 velocity) {
         // Increment the shot counter
         gameRules.incrementShotCounter();
 
         // Update the last valid position before applying force
         ball.updateLastValidPosition();
 
-        // Calculate the velocity given the force and mass of the ball
-        Vector3 velocity = new Vector3(force).scl((float) (1 / ball.getMass()));
         ball.setVelocity(velocity);
     }
 
@@ -71,26 +79,20 @@ public class GolfBallMovement {
         Vector3 currentPosition = ball.getPosition();
         Vector3 currentVelocity = ball.getVelocity();
 
-        physicsEngine.setState(currentPosition.x, currentPosition.z, currentVelocity.x, currentVelocity.z);
-
-        double[] newState = physicsEngine.runSingleStep(currentPosition, currentVelocity);
-
-        // Update ball position and velocity
-        Vector3 newPosition = new Vector3((float) newState[0], ball.getPosition().y, (float) newState[1]);
-        Vector3 newVelocity = new Vector3((float) newState[2], 0, (float) newState[3]);
-
-        // Check for collisions and apply bounce logic
-        newVelocity = Bouncing.detectCollisionAndBounce(newPosition, newVelocity, walls);
+        float fromX = currentPosition.x;
+        float fromZ = currentPosition.z;
+        // Update ball position and velocity in place, so a step allocates nothing
+        physicsEngine.step(currentPosition, currentVelocity);
 
-        ball.setPosition(newPosition);
-        ball.setVelocity(newVelocity);
+        // Check for collisions along the step and apply bounce logic
+        Bouncing.sweepAndBounce(fromX, fromZ, currentPosition, currentVelocity, wallGrid);
 
         // Adjust the ball's vertical position based on the terrain height
-        ball.getPosition().y = (float) GetHeight.getHeight(PhysicsEngine.heightFunction, ball.getPosition().x, ball.getPosition().z);
+        ball.getPosition().y = (float) physicsEngine.getHeight(ball.getPosition().x, ball.getPosition().z);
 
         // Check if the ball has effectively stopped moving and set velocity to zero
         if (!ball.isMoving()) {
-            ball.setVelocity(new Vector3(0, 0, 0));
+            ball.setVelocity(Vector3.Zero);
         }
 
         // Check the game status after updating the ball position
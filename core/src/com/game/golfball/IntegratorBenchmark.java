@@ -0,0 +1,93 @@
+package com.game.golfball;
+
+import com.game.terrain.Maze.Maze;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the adaptive {@link DormandPrinceIntegrator} with the fixed step of
+ * {@link PhysicsEngine#runSimulation(double, double)} on the flat default
+ * course, the hilly terrain and the maze. For random shots it reports the
+ * steps and time per shot, and the distance between where each method stops
+ * the ball and where a Dormand-Prince run with a very tight tolerance does
+ */
+public class IntegratorBenchmark {
+    private static final String HILLY_FUNCTION =
+            " sqrt ( ( sin ( 0.1 * x ) + cos ( 0.1 * y ) ) ^ 2 ) + 0.5 * sin ( 0.3 * x ) * cos ( 0.3 * y ) ";
+    private static final int SHOTS = 500;
+    private static final double REFERENCE_TOLERANCE = 1e-11;
+    private static final double[] TOLERANCES = {1e-4, 1e-6, 1e-8};
+
+    public static void main(String[] args) {
+        run("default", new PhysicsEngine(" 1 ", 8, 8, 1, 1, 0.5, 1, 0.5, 0.3, 0.4, 0, 0, null), 8, 8);
+        run("hilly", new PhysicsEngine(HILLY_FUNCTION, 5, 2, 4, 1, 0.15, 1, 0.5, 0.3, 0.4, 0, 0, null), 5, 2);
+        run("maze", new PhysicsEngine(" 1 ", 1, 1, 8, 8, 0.5, 1, 0.5, 0.3, 0.4, 0, 0, new Maze().getWalls()), 1, 1);
+    }
+
+    private static void run(String name, PhysicsEngine physicsEngine, double startX, double startZ) {
+        Random random = new Random(42);
+        double[] velocityX = new double[SHOTS];
+        double[] velocityZ = new double[SHOTS];
+        for (int i = 0; i < SHOTS; i++) {
+            velocityX[i] = random.nextDouble() * 20 - 10;
+            velocityZ[i] = random.nextDouble() * 20 - 10;
+        }
+
+        DormandPrinceIntegrator reference = new DormandPrinceIntegrator(physicsEngine, REFERENCE_TOLERANCE);
+        double[] referenceX = new double[SHOTS];
+        double[] referenceZ = new double[SHOTS];
+        for (int i = 0; i < SHOTS; i++) {
+            double[] state = reference.simulate(startX, startZ, velocityX[i], velocityZ[i]);
+            referenceX[i] = state[0];
+            referenceZ[i] = state[1];
+        }
+
+        System.out.println("Course: " + name + ", " + SHOTS + " shots");
+        System.out.println("Integrator\tSteps per shot\tEvaluations per shot\tMicroseconds per shot\t"
+                + "Median error\tMax error");
+        // run twice and report the second run, after the compiler has warmed up
+        for (int pass = 0; pass < 2; pass++) {
+            double[] errors = new double[SHOTS];
+            long steps = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < SHOTS; i++) {
+                physicsEngine.setState(startX, startZ, velocityX[i], velocityZ[i]);
+                double[] state = physicsEngine.runSimulation(velocityX[i], velocityZ[i]);
+                steps += physicsEngine.getLastStepCount();
+                errors[i] = Math.hypot(state[0] - referenceX[i], state[1] - referenceZ[i]);
+            }
+            double micros = (System.nanoTime() - start) / 1e3 / SHOTS;
+            if (pass == 1) {
+                // the fixed step method evaluates the terrain once per step
+                report("fixed h=0.004", (double) steps / SHOTS, (double) steps / SHOTS, micros, errors);
+            }
+        }
+        for (double tolerance : TOLERANCES) {
+            DormandPrinceIntegrator integrator = new DormandPrinceIntegrator(physicsEngine, tolerance);
+            for (int pass = 0; pass < 2; pass++) {
+                double[] errors = new double[SHOTS];
+                long steps = 0;
+                long evaluations = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < SHOTS; i++) {
+                    double[] state = integrator.simulate(startX, startZ, velocityX[i], velocityZ[i]);
+                    steps += integrator.getAcceptedSteps() + integrator.getRejectedSteps();
+                    evaluations += integrator.getEvaluations();
+                    errors[i] = Math.hypot(state[0] - referenceX[i], state[1] - referenceZ[i]);
+                }
+                double micros = (System.nanoTime() - start) / 1e3 / SHOTS;
+                if (pass == 1) {
+                    report("dormand-prince tol=" + tolerance, (double) steps / SHOTS, (double) evaluations / SHOTS,
+                            micros, errors);
+                }
+            }
+        }
+    }
+
+    private static void report(String name, double steps, double evaluations, double micros, double[] errors) {
+        Arrays.sort(errors);
+        System.out.printf("%s\t%.1f\t%.1f\t%.1f\t%.2e\t%.2e%n", name, steps, evaluations, micros,
+                errors[errors.length / 2], errors[errors.length - 1]);
+    }
+}
@@ -1,8 +1,10 @@
 package com.game.golfball;
 
 import com.badlogic.gdx.math.Vector3;
-import com.game.terrain.GetHeight;
+import com.game.terrain.CompiledHeightFunction;
+import com.game.terrain.HeightField;
 import com.game.terrain.SandHeightCalculator;
+import com.game.terrain.TerrainSurface;
 import com.game.terrain.TerrainV2;
 import com.game.terrain.Maze.Wall;
 
@@ -14,21 +16,32 @@ public class PhysicsEngine {
     double Xt, Yt, Rt; // position of the target and its radius
     double GRASS_K, GRASS_S; // kinetic and static coefficients on the grass
     double SAND_K, SAND_S; // kinetic and static coefficients on the sand
-    public static String heightFunction; // h(x,y) function of the height profile
+    private String heightFunction; // h(x,y) function of the height profile
+    private CompiledHeightFunction compiledHeightFunction; // heightFunction parsed once
+    private TerrainSurface terrainSurface; // analytic heightFunction or a precomputed HeightField
     double xMapStart = 0, xMapEnd = 50, yMapStart = 0, yMapEnd = 50; // x and y map limits
     public static double maxVelocity = 5;
     double xInitialVelocity = 0, zInitialVelocity = 0;
-    public double terrainHeight = 0;
     private List<Wall> walls;
+    private WallGrid wallGrid; // grid of the walls, built once and shared with the copies, null without a maze
+    private TrajectoryCache trajectoryCache; // end states of earlier shots, shared with the copies, null if unused
+    private TrajectoryCache.CourseKey trajectoryCourse; // the course the cache is asked about, shared with the copies
 
     final double g = 9.80665;
     final static double LIMIT_ZERO = 0.0000001;
+    final static int MAX_ITERATIONS = 1000; // step limit of runSimulation
     final double h = 0.004; // Reduced step size for better precision
     final double ballMass = 0.5;
-    private double currentTime = 0.0;
+    private int lastStepCount; // steps of the last simulated shot
+    // scratch arrays of step, one per thread so any number of balls can be stepped at once
+    private static final ThreadLocal<double[]> STEP_STATE = ThreadLocal.withInitial(() -> new double[4]);
+    private static final ThreadLocal<double[]> STEP_SURFACE = ThreadLocal.withInitial(() -> new double[3]);
 
     double[] stateVector = new double[4];
-    double[] systemFunction = new double[4];
+    private final double[] surface = new double[3]; // height and slopes at the evaluated position
+    private final double[] previousState = new double[4]; // state before the last step of runSimulation
+    private final Vector3 bouncePosition = new Vector3(); // scratch vectors of the wall bounce
+    private final Vector3 bounceVelocity = new Vector3();
 
     /**
      * Constructs a PhysicsEngine object with the specified parameters
@@ -50,7 +63,9 @@ public class PhysicsEngine {
      */
     public PhysicsEngine(String heightFunction, double X0, double Y0, double Xt, double Yt, double Rt, double GRASS_K,
                          double GRASS_S, double SAND_K, double SAND_S, double xInitialVelocity, double zInitialVelocity, List<Wall> walls) {
-        PhysicsEngine.heightFunction = heightFunction;
+        this.heightFunction = heightFunction;
+        this.compiledHeightFunction = CompiledHeightFunction.compile(heightFunction);
+        this.terrainSurface = compiledHeightFunction;
         this.X0 = X0;
         this.Y0 = Y0;
         this.Xt = Xt;
@@ -63,6 +78,147 @@ public class PhysicsEngine {
         this.xInitialVelocity = xInitialVelocity;
         this.zInitialVelocity = zInitialVelocity;
         this.walls = walls;
+        this.wallGrid = Bouncing.gridOf(walls);
+    }
+
+    /**
+     * Constructs a copy of a PhysicsEngine with the same course and its own
+     * simulation state, so the copy can run simulations on another thread
+     *
+     * @param other The engine to copy
+     */
+    public PhysicsEngine(PhysicsEngine other) {
+        this.heightFunction = other.heightFunction;
+        this.compiledHeightFunction = other.compiledHeightFunction;
+        this.terrainSurface = other.terrainSurface;
+        this.X0 = other.X0;
+        this.Y0 = other.Y0;
+        this.Xt = other.Xt;
+        this.Yt = other.Yt;
+        this.Rt = other.Rt;
+        this.GRASS_K = other.GRASS_K;
+        this.GRASS_S = other.GRASS_S;
+        this.SAND_K = other.SAND_K;
+        this.SAND_S = other.SAND_S;
+        this.xInitialVelocity = other.xInitialVelocity;
+        this.zInitialVelocity = other.zInitialVelocity;
+        this.walls = other.walls;
+        this.wallGrid = other.wallGrid;
+        this.trajectoryCache = other.trajectoryCache;
+        this.trajectoryCourse = other.trajectoryCourse;
+    }
+
+    /**
+     * Switches the physics to a precomputed height field, which answers height
+     * and slope queries by interpolation instead of evaluating the height
+     * function. See {@link HeightField} for the error this introduces. Copies
+     * made afterwards use the height field as well
+     *
+     * @param heightField The height field sampled from the height function of
+     *                    the engine, or null to evaluate the function directly
+     */
+    public void useHeightField(HeightField heightField) {
+        terrainSurface = heightField != null ? heightField : compiledHeightFunction;
+        if (trajectoryCache != null) {
+            trajectoryCourse = new TrajectoryCache.CourseKey(this);
+        }
+    }
+
+    /**
+     * Checks if the physics uses a precomputed height field
+     *
+     * @return True in grid mode, false in analytic mode
+     */
+    public boolean isUsingHeightField() {
+        return terrainSurface instanceof HeightField;
+    }
+
+    /**
+     * Gets the terrain the physics is computed on
+     *
+     * @return The analytic height function or the height field in use
+     */
+    TerrainSurface getTerrainSurface() {
+        return terrainSurface;
+    }
+
+    /**
+     * Gets the height function of the course
+     *
+     * @return The h(x,y) function of the height profile
+     */
+    public String getHeightFunction() {
+        return heightFunction;
+    }
+
+    /**
+     * Gets the height of the terrain from the height function, where the ball
+     * is drawn, also when the physics uses a height field
+     *
+     * @param x The x-coordinate position
+     * @param z The z-coordinate position
+     * @return The height of the terrain
+     */
+    public double getHeight(double x, double z) {
+        return compiledHeightFunction.getHeight(x, z);
+    }
+
+    /**
+     * Gets the time step of a single step of the ball
+     *
+     * @return The step size in seconds
+     */
+    public double getStepSize() {
+        return h;
+    }
+
+    /**
+     * Gets the walls the ball bounces off
+     *
+     * @return The list of walls, or null without a maze
+     */
+    List<Wall> getWalls() {
+        return walls;
+    }
+
+    /**
+     * Gets the grid of the walls the ball bounces off
+     *
+     * @return The grid of the walls, or null without a maze
+     */
+    WallGrid getWallGrid() {
+        return wallGrid;
+    }
+
+    /**
+     * Sets the cache that {@link #runSimulation(double, double)} looks shots up
+     * in before simulating them. Copies made afterwards share the cache
+     *
+     * @param trajectoryCache The cache, or null to always simulate
+     */
+    public void setTrajectoryCache(TrajectoryCache trajectoryCache) {
+        this.trajectoryCache = trajectoryCache;
+        this.trajectoryCourse = trajectoryCache != null ? new TrajectoryCache.CourseKey(this) : null;
+    }
+
+    /**
+     * Gets the cache of simulated shots
+     *
+     * @return The cache, or null if none is used
+     */
+    public TrajectoryCache getTrajectoryCache() {
+        return trajectoryCache;
+    }
+
+    /**
+     * Gets the number of steps of the last shot simulated by
+     * {@link #runSimulation(double, double)}, not counting shots answered by the
+     * trajectory cache
+     *
+     * @return The number of steps
+     */
+    public int getLastStepCount() {
+        return lastStepCount;
     }
 
     public static void main(String[] args) {
@@ -106,16 +262,27 @@ public class PhysicsEngine {
      *         ball after simulation
      */
     public double[] runSimulation(double xInitialVelocity, double yInitialVelocity) {
+        TrajectoryCache cache = trajectoryCache;
+        if (cache == null) {
+            return simulate(xInitialVelocity, yInitialVelocity);
+        }
+        if (!cache.lookup(trajectoryCourse, X0, Y0, xInitialVelocity, yInitialVelocity, stateVector)) {
+            simulate(xInitialVelocity, yInitialVelocity);
+            cache.store(trajectoryCourse, X0, Y0, xInitialVelocity, yInitialVelocity, stateVector);
+        }
+        return stateVector;
+    }
+
+    private double[] simulate(double xInitialVelocity, double yInitialVelocity) {
         // Initialize the state vector for position and velocity
         stateVector[0] = X0;
         stateVector[1] = Y0;
         stateVector[2] = xInitialVelocity;
         stateVector[3] = yInitialVelocity;
 
-        int maxIterations = 1000; // Set a reasonable limit for iterations
+        int maxIterations = MAX_ITERATIONS; // Set a reasonable limit for iterations
         int iteration = 0;
 
-        double[] previousState = new double[4];
         System.arraycopy(stateVector, 0, previousState, 0, stateVector.length);
 
         double positionThreshold = 0.0001; // Increased precision
@@ -124,17 +291,19 @@ public class PhysicsEngine {
         while (true) {
             updateStateVectorEuler(false);
 
-            if (GetHeight.getHeight(heightFunction, stateVector[0], stateVector[1]) < 0) {
+            if (terrainSurface.getHeight(stateVector[0], stateVector[1]) < 0) {
                 stateVector[2] = 0;
                 stateVector[3] = 0;
                 break;
             }
 
-            // Check for collisions and apply bounce logic
-            Vector3 position = new Vector3((float) stateVector[0], 0, (float) stateVector[1]);
-            Vector3 velocity = new Vector3((float) stateVector[2], 0, (float) stateVector[3]);
-            if (walls != null) {
-                velocity = Bouncing.detectCollisionAndBounce(position, velocity, walls);
+            // Check for collisions along the step and apply bounce logic
+            Vector3 position = bouncePosition.set((float) stateVector[0], 0, (float) stateVector[1]);
+            Vector3 velocity = bounceVelocity.set((float) stateVector[2], 0, (float) stateVector[3]);
+            if (Bouncing.sweepAndBounce((float) previousState[0], (float) previousState[1], position, velocity,
+                    wallGrid)) {
+                stateVector[0] = position.x;
+                stateVector[1] = position.z;
             }
             stateVector[2] = velocity.x;
             stateVector[3] = velocity.z;
@@ -165,93 +334,10 @@ public class PhysicsEngine {
             }
         }
 
+        lastStepCount = Math.min(iteration + 1, maxIterations); // the steps that broke out did not count themselves
         return stateVector;
     }
 
-    /**
-     * Updates the state vector using the Euler method for numerical integration
-     *
-     * @param isImmobile A flag indicating if the ball is immobile
-     */
-    public void updateStateVectorRungeKutta(double time, boolean isImmobile) {
-        double x = stateVector[0];
-        double z = stateVector[1];
-
-        double kineticCoefficient = isWithinSandArea(x, z) ? SAND_K : GRASS_K;
-        // Calculate the next state vector using the Runge-Kutta method
-
-        double[] stateVector1 = returnUpdatedVector(time, isImmobile, x, z, kineticCoefficient);
-        double[] stateVector2 = returnUpdatedVector(time + 0.5 * h, isImmobile, x + 0.5 * h, z + 0.5 * h,
-                kineticCoefficient);
-        double[] stateVector3 = returnUpdatedVector(time + 0.5 * h, isImmobile, x + 0.5 * h, z + 0.5 * h,
-                kineticCoefficient);
-        double[] stateVector4 = returnUpdatedVector(time + h, isImmobile, x + h, z + h, kineticCoefficient);
-
-        for (int i = 0; i < stateVector.length; i++) {
-            stateVector[i] += (1.0 / 6.0) * h
-                    * (stateVector1[i] + 2 * stateVector2[i] + 2 * stateVector3[i] + stateVector4[i]);
-        }
-
-        // Check if the velocity is low enough to consider the ball stopped
-        if (Math.sqrt(stateVector[2] * stateVector[2] + stateVector[3] * stateVector[3]) < LIMIT_ZERO) {
-            stateVector[2] = 0;
-            stateVector[3] = 0;
-        }
-    }
-
-    /**
-     * Returns the updated vector using the system's equations
-     *
-     * @param t                  The current time step
-     * @param isImmobile         A flag indicating if the ball is immobile
-     * @param x                  The x-coordinate position
-     * @param z                  The z-coordinate position
-     * @param kineticCoefficient The kinetic friction coefficient
-     * @return The updated system function array
-     */
-    public double[] returnUpdatedVector(double t, boolean isImmobile, double x, double z, double kineticCoefficient) {
-        double xVelocity = stateVector[2];
-        double zVelocity = stateVector[3];
-
-        double slopeX = calculateDerivativeX(x, z);
-        double slopeZ = calculateDerivativeZ(x, z);
-
-        double xFirstTerm = -g * slopeX;
-        double zFirstTerm = -g * slopeZ;
-
-        double xSecondTerm;
-        double zSecondTerm;
-
-        double normVelocity = Math.sqrt(xVelocity * xVelocity + zVelocity * zVelocity);
-        // Determine friction components based on motion state
-        if (normVelocity <= LIMIT_ZERO) {
-            // Friction acts against the slope
-            xSecondTerm = -kineticCoefficient * g * (slopeX / Math.sqrt(slopeX * slopeX + slopeZ * slopeZ));
-            zSecondTerm = -kineticCoefficient * g * (slopeZ / Math.sqrt(slopeX * slopeX + slopeZ * slopeZ));
-        } else {
-            // Friction acts against velocity
-            xSecondTerm = -kineticCoefficient * g
-                    * (xVelocity / normVelocity);
-            zSecondTerm = -kineticCoefficient * g
-                    * (zVelocity / normVelocity);
-        }
-
-        // Calculate total acceleration
-        double xAcceleration = (xFirstTerm + xSecondTerm) / ballMass;
-        double zAcceleration = (zFirstTerm + zSecondTerm) / ballMass;
-
-        // double windForceX = 0.1 * Math.sin(t);
-        // double windForceZ = 0.1 * Math.cos(t);
-
-        // Update system function array
-        systemFunction[0] = stateVector[2]; // xVelocity
-        systemFunction[1] = stateVector[3]; // zVelocity
-        systemFunction[2] = xAcceleration;
-        systemFunction[3] = zAcceleration;
-
-        return systemFunction;
-    }
-
     /**
      * Updates the state vector using the Euler method for numerical integration
      *
@@ -267,8 +353,9 @@ public class PhysicsEngine {
         double normVelocity = Math.sqrt(xVelocity * xVelocity + zVelocity * zVelocity);
 
         // Calculate the slope of the height field at the current position
-        double slopeX = calculateDerivativeX(x, z);
-        double slopeZ = calculateDerivativeZ(x, z);
+        terrainSurface.heightAndGradient(x, z, surface);
+        double slopeX = surface[1];
+        double slopeZ = surface[2];
 
         // Determine the coefficient of kinetic friction based on the terrain
         double kineticCoefficient = isWithinSandArea(x, z) ? SAND_K : GRASS_K;
@@ -323,74 +410,106 @@ public class PhysicsEngine {
 
     /**
      * Calculates the derivative of the height function with respect to the
-     * z-coordinate.
+     * x-coordinate, using the symbolic derivative of the height function.
      *
      * @param x The x-coordinate position.
      * @param y The y-coordinate position.
-     * @return The derivative of the height function with respect to z.
+     * @return The derivative of the height function with respect to x.
      */
-    public static double calculateDerivativeX(double x, double y) {
-        double forwardHeight = GetHeight.getHeight(heightFunction, x + LIMIT_ZERO, y);
-        double backwardHeight = GetHeight.getHeight(heightFunction, x - LIMIT_ZERO, y);
-        return (forwardHeight - backwardHeight) / (2 * LIMIT_ZERO);
+    public double calculateDerivativeX(double x, double y) {
+        return terrainSurface.getSlopeX(x, y);
     }
 
     /**
      * Calculates the derivative of the height function with respect to the
-     * z-coordinate
+     * z-coordinate, using the symbolic derivative of the height function
      *
      * @param x The x-coordinate position
      * @param z The z-coordinate position
      * @return The derivative of the height function with respect to z
      */
-    public static double calculateDerivativeZ(double x, double z) {
-        double forwardHeight = GetHeight.getHeight(heightFunction, x, z + LIMIT_ZERO);
-        double backwardHeight = GetHeight.getHeight(heightFunction, x, z - LIMIT_ZERO);
-        return (forwardHeight - backwardHeight) / (2 * LIMIT_ZERO);
+    public double calculateDerivativeZ(double x, double z) {
+        return terrainSurface.getSlopeY(x, z);
     }
 
     /**
-     * Runs a single step of the simulation given the ball's current position and
-     * velocity (so updates state vectors only once)
+     * Advances a ball by one step of the game, from its position and velocity.
+     * The engine is only read, so one engine steps any number of balls, from
+     * any number of threads at once, and a step is a function of the course
+     * and the state alone. The step is the Euler step of
+     * {@link #updateStateVectorEuler(boolean)}, so a ball follows the trajectory
+     * {@link #runSimulation(double, double)} predicts for it. A step that would
+     * give NaN leaves the state as it is
      *
-     * @param ballPosition The current position of the ball
-     * @param ballVelocity The current velocity of the ball
-     * @return The updated state vector after the simulation step
+     * @param state The position and velocity x, z, vx and vz, updated in place
      */
-    public double[] runSingleStep(Vector3 ballPosition, Vector3 ballVelocity) {
-        // filling state vectors with values
-        stateVector[0] = ballPosition.x;
-        stateVector[1] = ballPosition.z;
-        stateVector[2] = ballVelocity.x;
-        stateVector[3] = ballVelocity.z;
-
-        double time = 0.0;
-
-        // updating state vectors
-        updateStateVectorRungeKutta(currentTime, false);
-
-        // checking if any of the states in NaN
-        boolean hasNaN = false;
-        for (double value : stateVector) {
-            if (Double.isNaN(value)) {
-                hasNaN = true;
-                break;
-            }
+    public void step(double[] state) {
+        double x = state[0];
+        double z = state[1];
+        double xVelocity = state[2];
+        double zVelocity = state[3];
+
+        double[] surface = STEP_SURFACE.get();
+        terrainSurface.heightAndGradient(x, z, surface);
+        double slopeX = surface[1];
+        double slopeZ = surface[2];
+        double kineticCoefficient = isWithinSandArea(x, z) ? SAND_K : GRASS_K;
+
+        double xSecondTerm;
+        double zSecondTerm;
+        double normVelocity = Math.sqrt(xVelocity * xVelocity + zVelocity * zVelocity);
+        if (normVelocity <= LIMIT_ZERO) {
+            // Friction acts against the slope
+            xSecondTerm = -kineticCoefficient * g * (slopeX / Math.sqrt(slopeX * slopeX + slopeZ * slopeZ));
+            zSecondTerm = -kineticCoefficient * g * (slopeZ / Math.sqrt(slopeX * slopeX + slopeZ * slopeZ));
+        } else {
+            // Friction acts against velocity
+            xSecondTerm = -kineticCoefficient * g * (xVelocity / normVelocity);
+            zSecondTerm = -kineticCoefficient * g * (zVelocity / normVelocity);
         }
+        double xAcceleration = (-g * slopeX + xSecondTerm) / ballMass;
+        double zAcceleration = (-g * slopeZ + zSecondTerm) / ballMass;
 
-        // If any value is NaN, revert to the previous valid state
-        if (hasNaN) {
-            stateVector[0] = ballPosition.x;
-            stateVector[1] = ballPosition.z;
-            stateVector[2] = ballVelocity.x;
-            stateVector[3] = ballVelocity.z;
+        // the velocities first, then the positions move with the new velocities
+        double nextXVelocity = xVelocity + xAcceleration * h;
+        double nextZVelocity = zVelocity + zAcceleration * h;
+        double nextX = x + nextXVelocity * h;
+        double nextZ = z + nextZVelocity * h;
+
+        // Check if the velocity is low enough to consider the ball stopped
+        if (Math.sqrt(nextXVelocity * nextXVelocity + nextZVelocity * nextZVelocity) < LIMIT_ZERO) {
+            nextXVelocity = 0;
+            nextZVelocity = 0;
         }
 
-        // Update height to keep the ball on the terrain
-        terrainHeight = (float) GetHeight.getHeight(heightFunction, ballPosition.x, ballPosition.z);
+        // If any value is NaN, keep the previous valid state
+        if (Double.isNaN(nextX) || Double.isNaN(nextZ) || Double.isNaN(nextXVelocity) || Double.isNaN(nextZVelocity)) {
+            return;
+        }
+        state[0] = nextX;
+        state[1] = nextZ;
+        state[2] = nextXVelocity;
+        state[3] = nextZVelocity;
+    }
 
-        currentTime += h;
-        return stateVector;
+    /**
+     * Advances a ball by one step of the game, like {@link #step(double[])},
+     * on the position and velocity vectors of the ball. The height of the
+     * position is not changed
+     *
+     * @param position The position of the ball, updated in place
+     * @param velocity The velocity of the ball, updated in place
+     */
+    public void step(Vector3 position, Vector3 velocity) {
+        double[] state = STEP_STATE.get();
+        state[0] = position.x;
+        state[1] = position.z;
+        state[2] = velocity.x;
+        state[3] = velocity.z;
+        step(state);
+        position.x = (float) state[0];
+        position.z = (float) state[1];
+        velocity.set((float) state[2], 0, (float) state[3]);
     }
 
     /**
@@ -3,19 +3,18 @@ package com.game.golfball;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.game.terrain.GameRules;
-import com.game.terrain.GetHeight;
 import com.game.terrain.Maze.Wall;
 import java.util.List;
 
 public class RuleBasedBot {
 
-    private static Vector3 targetPosition;
+    private Vector3 targetPosition;
     private Vector3 ballPosition;
     private float targetRadius;
     private PhysicsEngine physicsEngine;
-    private static GolfBall RBball;
-    private static GameRules gameRules;
-    private List<Wall> walls;
+    private GolfBall RBball;
+    private GameRules gameRules;
+    private WallGrid wallGrid; // grid of the maze walls, null without a maze
 
     /**
      * Constructs a RuleBasedBot object with the specified parameters
@@ -36,7 +35,7 @@ public class RuleBasedBot {
             throw new IllegalArgumentException("gameRules cannot be null");
         }
         this.gameRules = gameRules;
-        this.walls = walls;
+        this.wallGrid = Bouncing.gridOf(walls);
     }
 
     /**
@@ -52,8 +51,8 @@ public class RuleBasedBot {
         //Normalizing vectorBT to get direction vector of the ball
         Vector2 direction = new Vector2((float)(-vectorBT.x / magnitude), (float)(-vectorBT.y / magnitude));
 
-        double slopeX = PhysicsEngine.calculateDerivativeX(ballPosition.x, ballPosition.z);
-        double slopeZ = PhysicsEngine.calculateDerivativeZ(ballPosition.x, ballPosition.z);
+        double slopeX = physicsEngine.calculateDerivativeX(ballPosition.x, ballPosition.z);
+        double slopeZ = physicsEngine.calculateDerivativeZ(ballPosition.x, ballPosition.z);
         double slopeForceX = 1;
         double slopeForceZ = 1;
         if (slopeX > 0.2){ 
@@ -78,25 +77,16 @@ public class RuleBasedBot {
         Vector3 currentPosition = RBball.getPosition();
         Vector3 currentVelocity = RBball.getVelocity();
 
-        // Set the current state in the physics engine
-        physicsEngine.setState(currentPosition.x, currentPosition.z, currentVelocity.x, currentVelocity.z);
+        float fromX = currentPosition.x;
+        float fromZ = currentPosition.z;
+        // Run the physics simulation for one timestep, updating the ball in place so a step allocates nothing
+        physicsEngine.step(currentPosition, currentVelocity);
 
-        // Run the physics simulation for one timestep
-        double[] newState = physicsEngine.runSingleStep(currentPosition, currentVelocity);
-
-        // Update ball position and velocity based on physics engine output
-        Vector3 newPosition = new Vector3((float) newState[0], RBball.getPosition().y, (float) newState[1]);
-        Vector3 newVelocity = new Vector3((float) newState[2], 0, (float) newState[3]);
-
-        // Check for collisions and apply bounce logic
-        newVelocity = Bouncing.detectCollisionAndBounce(newPosition, newVelocity, walls);
-
-        // Update the ball's position and velocity
-        RBball.setPosition(newPosition);
-        RBball.setVelocity(newVelocity);
+        // Check for collisions along the step and apply bounce logic
+        Bouncing.sweepAndBounce(fromX, fromZ, currentPosition, currentVelocity, wallGrid);
 
         // Adjust the ball's vertical position based on the terrain height
-        RBball.getPosition().y = (float) GetHeight.getHeight(PhysicsEngine.heightFunction, RBball.getPosition().x, RBball.getPosition().z);
+        RBball.getPosition().y = (float) physicsEngine.getHeight(RBball.getPosition().x, RBball.getPosition().z);
     }
 
     /**
@@ -0,0 +1,50 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.math.Vector3;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A strategy searching for the velocity that stops the ball closest to a
+ * target. Implementations simulate the candidate shots with copies of the
+ * given engine, so a search never touches the engine the game is using
+ */
+public interface ShotOptimizer {
+    double TOLERANCE = 0.05; // deviation below which a search has converged
+
+    /**
+     * Searches for the best shot. The search is an anytime search: when it is
+     * cancelled or its budget runs out, it returns the best shot found so far
+     *
+     * @param physicsEngine The engine whose course the shots are simulated on
+     * @param start         The position the shot is played from
+     * @param target        The position the ball should stop at
+     * @param budgetMillis  The wall-clock time budget in milliseconds, 0 for no limit
+     * @param cancelled     Tells whether the search has been cancelled
+     * @return The best shot and the statistics of the search
+     */
+    ShotSearchResult search(PhysicsEngine physicsEngine, Vector3 start, Vector3 target, long budgetMillis,
+                            BooleanSupplier cancelled);
+
+    /**
+     * Searches for the best shot starting from a guess, for example a shot
+     * looked up in a {@link ShotTable}. By default the guess is ignored
+     *
+     * @param physicsEngine   The engine whose course the shots are simulated on
+     * @param start           The position the shot is played from
+     * @param target          The position the ball should stop at
+     * @param initialVelocity The velocity to start the search from
+     * @param budgetMillis    The wall-clock time budget in milliseconds, 0 for no limit
+     * @param cancelled       Tells whether the search has been cancelled
+     * @return The best shot and the statistics of the search
+     */
+    default ShotSearchResult search(PhysicsEngine physicsEngine, Vector3 start, Vector3 target,
+                                    Vector3 initialVelocity, long budgetMillis, BooleanSupplier cancelled) {
+        return search(physicsEngine, start, target, budgetMillis, cancelled);
+    }
+
+    /**
+     * Forgets any state carried over from earlier searches
+     */
+    void reset();
+}
@@ -0,0 +1,89 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.math.Vector3;
+import com.game.terrain.Maze.Maze;
+import com.game.terrain.Maze.Wall;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the shot optimizers on the default course and on the maze. Every
+ * optimizer searches a shot from the same start positions to the target, and
+ * the benchmark reports how many shots end in the hole per second of search,
+ * the median distance to the target and the simulations per search
+ */
+public class ShotOptimizerBenchmark {
+    private static final int STARTS = 12; // start positions per course
+    private static final double TARGET_RADIUS = 0.5; // radius of the hole on both courses
+
+    public static void main(String[] args) {
+        Random random = new Random(7);
+        List<Vector3> defaultStarts = new ArrayList<>();
+        while (defaultStarts.size() < STARTS) {
+            Vector3 start = new Vector3(random.nextFloat() * 20 - 10, 0, random.nextFloat() * 20 - 10);
+            if (start.dst(1, 0, 1) > 2) {
+                defaultStarts.add(start);
+            }
+        }
+        run("default", new PhysicsEngine(" 1 ", 8, 8, 1, 1, TARGET_RADIUS, 1, 0.5, 0.3, 0.4, 0, 0, null),
+                defaultStarts, new Vector3(1, 0, 1));
+
+        List<Wall> walls = new Maze().getWalls();
+        List<Vector3> mazeStarts = new ArrayList<>();
+        while (mazeStarts.size() < STARTS) {
+            Vector3 start = new Vector3(random.nextInt(10), 0, random.nextInt(10));
+            if (isOpen(walls, start) && start.dst(8, 0, 8) > 2) {
+                mazeStarts.add(start);
+            }
+        }
+        run("maze", new PhysicsEngine(" 1 ", 1, 1, 8, 8, TARGET_RADIUS, 1, 0.5, 0.3, 0.4, 0, 0, walls),
+                mazeStarts, new Vector3(8, 0, 8));
+    }
+
+    private static boolean isOpen(List<Wall> walls, Vector3 position) {
+        for (Wall wall : walls) {
+            if (wall.getPosition().x == position.x && wall.getPosition().z == position.z) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void run(String name, PhysicsEngine physicsEngine, List<Vector3> starts, Vector3 target) {
+        System.out.println("Course: " + name + ", " + starts.size() + " starts");
+        System.out.println("Optimizer\tSolved\tSolved per second\tMedian deviation\tSimulations per search\tSeconds");
+        // the Adam state carries over between searches, so every search gets a fresh one
+        report("adam", physicsEngine, starts, target, AdamShotOptimizer::new);
+        report("differential evolution", physicsEngine, starts, target, DifferentialEvolutionOptimizer::new);
+    }
+
+    private static void report(String name, PhysicsEngine physicsEngine, List<Vector3> starts, Vector3 target,
+                               Supplier<ShotOptimizer> optimizers) {
+        // warm up the compiler on the first start
+        optimizers.get().search(physicsEngine, starts.get(0), target, 0, () -> false);
+
+        double[] deviations = new double[starts.size()];
+        long simulations = 0;
+        int solved = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < starts.size(); i++) {
+            ShotSearchResult result = optimizers.get().search(physicsEngine, starts.get(i), target, 0, () -> false);
+            deviations[i] = result.getDeviation();
+            simulations += result.getSimulations();
+            if (result.getDeviation() <= TARGET_RADIUS) {
+                solved++;
+            }
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        Arrays.sort(deviations);
+        int middle = deviations.length / 2;
+        double median = deviations.length % 2 == 1 ? deviations[middle]
+                : (deviations[middle - 1] + deviations[middle]) / 2;
+        System.out.printf("%s\t%d/%d\t%.2f\t%.4f\t%.0f\t%.2f%n", name, solved, starts.size(), solved / seconds,
+                median, (double) simulations / starts.size(), seconds);
+    }
+}
@@ -0,0 +1,45 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.math.Vector3;
+
+/**
+ * Simulates shots from a fixed start position with an engine of its own, so a
+ * rollout is confined to the thread running it
+ */
+class ShotRollout {
+    private final PhysicsEngine engine;
+    private final float startX;
+    private final float startZ;
+    private final float targetX;
+    private final float targetZ;
+    int simulations;
+
+    /**
+     * Constructs a ShotRollout
+     *
+     * @param physicsEngine The engine to copy the course from
+     * @param start         The position the shots are played from
+     * @param target        The position the ball should stop at
+     */
+    ShotRollout(PhysicsEngine physicsEngine, Vector3 start, Vector3 target) {
+        this.engine = new PhysicsEngine(physicsEngine);
+        this.startX = start.x;
+        this.startZ = start.z;
+        this.targetX = target.x;
+        this.targetZ = target.z;
+    }
+
+    /**
+     * Calculates the deviation between where a shot stops and the target position
+     *
+     * @param velocity The velocity vector representing the shot
+     * @return The deviation vector between the shot and the target position
+     */
+    Vector3 deviation(Vector3 velocity) {
+        simulations++;
+        engine.setState(startX, startZ, velocity.x, velocity.z);
+        double[] afterShot = engine.runSimulation(velocity.x, velocity.z);
+        Vector3 finalPosition = new Vector3((float) afterShot[0], 0, (float) afterShot[1]);
+        return new Vector3(finalPosition.x - targetX, 0, finalPosition.z - targetZ);
+    }
+}
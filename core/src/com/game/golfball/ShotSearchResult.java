@@ -0,0 +1,98 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.math.Vector3;
+
+/**
+ * The outcome of a shot search: the best velocity found and what it cost to
+ * find it
+ */
+public class ShotSearchResult {
+    private final Vector3 velocity;
+    private final double deviation;
+    private final int iterations;
+    private final int simulations;
+    private final double elapsedMillis;
+    private final boolean converged;
+
+    /**
+     * Constructs a ShotSearchResult
+     *
+     * @param velocity      The best velocity found
+     * @param deviation     The distance between where the best shot stops and the target
+     * @param iterations    The number of optimizer iterations run
+     * @param simulations   The number of shots simulated
+     * @param elapsedMillis The wall-clock time of the search in milliseconds
+     * @param converged     Whether the deviation got within the tolerance
+     */
+    public ShotSearchResult(Vector3 velocity, double deviation, int iterations, int simulations,
+                            double elapsedMillis, boolean converged) {
+        this.velocity = velocity;
+        this.deviation = deviation;
+        this.iterations = iterations;
+        this.simulations = simulations;
+        this.elapsedMillis = elapsedMillis;
+        this.converged = converged;
+    }
+
+    /**
+     * Gets the best velocity found
+     *
+     * @return The velocity of the best shot
+     */
+    public Vector3 getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * Gets the distance between where the best shot stops and the target
+     *
+     * @return The final deviation
+     */
+    public double getDeviation() {
+        return deviation;
+    }
+
+    /**
+     * Gets the number of optimizer iterations run
+     *
+     * @return The number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Gets the number of shots simulated, including the rollouts of the
+     * gradient
+     *
+     * @return The number of simulations
+     */
+    public int getSimulations() {
+        return simulations;
+    }
+
+    /**
+     * Gets the wall-clock time of the search
+     *
+     * @return The time in milliseconds
+     */
+    public double getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Checks if the search got within the tolerance, rather than running out of
+     * iterations, time or being cancelled
+     *
+     * @return true if the search converged
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d iterations, %d simulations, deviation %.4f, %.1f ms%s", iterations, simulations,
+                deviation, elapsedMillis, converged ? ", converged" : "");
+    }
+}
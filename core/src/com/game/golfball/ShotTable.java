@@ -0,0 +1,336 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.math.Vector3;
+import com.game.terrain.CompiledHeightFunction;
+import com.game.terrain.Maze.Wall;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The best shots to a fixed target from a grid of start positions, computed
+ * offline so the AI can look a shot up instead of searching for it. A shot
+ * from between the grid nodes is interpolated bilinearly from the surrounding
+ * nodes whose shots reached the target.
+ *
+ * A table belongs to a course: its key is the normalized height function, the
+ * friction coefficients, the walls and the target, and a table is only loaded
+ * for the same key. The file is gzip compressed and holds, after the header,
+ * the two velocity components and the deviation of every node as floats;
+ * nodes in the water or inside a wall have a NaN deviation
+ */
+public class ShotTable {
+    static final int MAGIC = 0x42545347; // "GSTB" in little endian
+    static final int VERSION = 2; // raised when the physics changes, so tables of the old physics are rebuilt
+    static final double USABLE_DEVIATION = 1.0; // nodes whose shot stopped farther from the target are not used
+    public static final Path DEFAULT_DIRECTORY = Paths.get("cache", "shots"); // relative to the assets directory
+
+    private final String key;
+    private final float targetX;
+    private final float targetZ;
+    private final float originX;
+    private final float originZ;
+    private final float spacing;
+    private final int columns;
+    private final int rows;
+    private final float[] velocityX;
+    private final float[] velocityZ;
+    private final float[] deviation;
+
+    private ShotTable(String key, float targetX, float targetZ, float originX, float originZ, float spacing,
+                      int columns, int rows) {
+        if (spacing <= 0 || columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("Shot table spacing and size must be positive");
+        }
+        this.key = key;
+        this.targetX = targetX;
+        this.targetZ = targetZ;
+        this.originX = originX;
+        this.originZ = originZ;
+        this.spacing = spacing;
+        this.columns = columns;
+        this.rows = rows;
+        this.velocityX = new float[columns * rows];
+        this.velocityZ = new float[columns * rows];
+        this.deviation = new float[columns * rows];
+    }
+
+    /**
+     * Builds the key identifying the course of a table
+     *
+     * @param physicsEngine The engine of the course
+     * @param target        The target the shots go to
+     * @return The key of the course and target
+     */
+    public static String key(PhysicsEngine physicsEngine, Vector3 target) {
+        StringBuilder key = new StringBuilder();
+        key.append(CompiledHeightFunction.compile(physicsEngine.getHeightFunction()).getExpression());
+        // as float, so coefficients read as float or as double give the same key
+        key.append("|friction ").append((float) physicsEngine.GRASS_K).append(' ').append((float) physicsEngine.GRASS_S)
+                .append(' ').append((float) physicsEngine.SAND_K).append(' ').append((float) physicsEngine.SAND_S);
+        List<Wall> walls = physicsEngine.getWalls();
+        if (walls != null && !walls.isEmpty()) {
+            float[] bounds = new float[walls.size() * 4];
+            for (int i = 0; i < walls.size(); i++) {
+                Wall wall = walls.get(i);
+                bounds[4 * i] = wall.getPosition().x;
+                bounds[4 * i + 1] = wall.getPosition().z;
+                bounds[4 * i + 2] = wall.getWidth();
+                bounds[4 * i + 3] = wall.getDepth();
+            }
+            key.append("|walls ").append(walls.size()).append(' ')
+                    .append(Integer.toHexString(Arrays.hashCode(bounds)));
+        }
+        key.append("|target ").append(target.x).append(' ').append(target.z);
+        return key.toString();
+    }
+
+    /**
+     * Computes the table of a course by searching the shot from every node of
+     * a grid, in parallel with one optimizer per node. Nodes in the water or
+     * inside a wall are skipped
+     *
+     * @param physicsEngine The engine of the course
+     * @param target        The target the shots go to
+     * @param originX       The x-coordinate of the first node
+     * @param originZ       The z-coordinate of the first node
+     * @param spacing       The distance between neighbouring nodes
+     * @param columns       The number of nodes along x
+     * @param rows          The number of nodes along z
+     * @param optimizers    Creates the optimizer of every search
+     * @param budgetMillis  The time budget of every search in milliseconds, 0 for no limit
+     * @return The table
+     */
+    public static ShotTable build(PhysicsEngine physicsEngine, Vector3 target, float originX, float originZ,
+                                  float spacing, int columns, int rows, Supplier<ShotOptimizer> optimizers,
+                                  long budgetMillis) {
+        ShotTable table = new ShotTable(key(physicsEngine, target), target.x, target.z, originX, originZ, spacing,
+                columns, rows);
+        Vector3 targetPosition = new Vector3(target);
+        AtomicInteger done = new AtomicInteger();
+        int progressStep = Math.max(1, columns * rows / 20);
+        IntStream.range(0, columns * rows).parallel().forEach(node -> {
+            Vector3 start = new Vector3(originX + node % columns * spacing, 0, originZ + node / columns * spacing);
+            if (isPlayable(physicsEngine, start)) {
+                ShotSearchResult result = optimizers.get().search(physicsEngine, start, targetPosition, budgetMillis,
+                        () -> false);
+                table.velocityX[node] = result.getVelocity().x;
+                table.velocityZ[node] = result.getVelocity().z;
+                table.deviation[node] = (float) result.getDeviation();
+            } else {
+                table.deviation[node] = Float.NaN;
+            }
+            int count = done.incrementAndGet();
+            if (count % progressStep == 0) {
+                System.out.printf("Shot table: %d of %d nodes%n", count, columns * rows);
+            }
+        });
+        return table;
+    }
+
+    // a ball can be played from the position: above the water and outside the walls
+    private static boolean isPlayable(PhysicsEngine physicsEngine, Vector3 position) {
+        if (physicsEngine.getTerrainSurface().getHeight(position.x, position.z) < 0) {
+            return false;
+        }
+        List<Wall> walls = physicsEngine.getWalls();
+        if (walls != null) {
+            for (Wall wall : walls) {
+                if (Math.abs(position.x - wall.getPosition().x) < wall.getWidth() / 2 + Bouncing.BUFFER_ZONE
+                        && Math.abs(position.z - wall.getPosition().z) < wall.getDepth() / 2 + Bouncing.BUFFER_ZONE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Interpolates the shot from a start position between the grid nodes. Only
+     * the surrounding nodes whose shots stopped near the target are used, with
+     * their bilinear weights renormalized
+     *
+     * @param x      The x-coordinate of the start position
+     * @param z      The z-coordinate of the start position
+     * @param result Receives the interpolated velocity
+     * @return True if the velocity was interpolated, false if the position is
+     *         outside the grid or no surrounding node has a usable shot
+     */
+    public boolean lookup(float x, float z, Vector3 result) {
+        float column = (x - originX) / spacing;
+        float row = (z - originZ) / spacing;
+        if (!(column >= 0 && row >= 0 && column <= columns - 1 && row <= rows - 1)) {
+            return false;
+        }
+        int column0 = Math.min((int) column, Math.max(0, columns - 2));
+        int row0 = Math.min((int) row, Math.max(0, rows - 2));
+        float fractionX = column - column0;
+        float fractionZ = row - row0;
+
+        float sumX = 0;
+        float sumZ = 0;
+        float sumWeight = 0;
+        for (int corner = 0; corner < 4; corner++) {
+            int dx = corner & 1;
+            int dz = corner >> 1;
+            if (column0 + dx >= columns || row0 + dz >= rows) {
+                continue;
+            }
+            int node = (row0 + dz) * columns + column0 + dx;
+            float weight = (dx == 1 ? fractionX : 1 - fractionX) * (dz == 1 ? fractionZ : 1 - fractionZ);
+            if (weight > 0 && deviation[node] <= USABLE_DEVIATION) {
+                sumX += weight * velocityX[node];
+                sumZ += weight * velocityZ[node];
+                sumWeight += weight;
+            }
+        }
+        if (sumWeight == 0) {
+            return false;
+        }
+        result.set(sumX / sumWeight, 0, sumZ / sumWeight);
+        return true;
+    }
+
+    /**
+     * Checks if the table holds shots to the given target
+     *
+     * @param target The target position
+     * @return True if the target is the one the table was built for
+     */
+    public boolean isFor(Vector3 target) {
+        return target.x == targetX && target.z == targetZ;
+    }
+
+    /**
+     * Counts the nodes whose shot is used by {@link #lookup}
+     *
+     * @return The number of nodes with a usable shot
+     */
+    public int getUsableNodeCount() {
+        int usable = 0;
+        for (float nodeDeviation : deviation) {
+            if (nodeDeviation <= USABLE_DEVIATION) {
+                usable++;
+            }
+        }
+        return usable;
+    }
+
+    /**
+     * Gets the number of nodes of the grid
+     *
+     * @return The number of nodes
+     */
+    public int getNodeCount() {
+        return columns * rows;
+    }
+
+    /**
+     * Writes the table into a directory, named after its key, replacing an
+     * older table of the same course
+     *
+     * @param directory The directory of the tables
+     * @return The file written
+     * @throws IOException if the file cannot be written
+     */
+    public Path save(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = fileFor(directory, key);
+        Path temporaryFile = Files.createTempFile(directory, "shots", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                    Files.newOutputStream(temporaryFile))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                out.writeFloat(targetX);
+                out.writeFloat(targetZ);
+                out.writeFloat(originX);
+                out.writeFloat(originZ);
+                out.writeFloat(spacing);
+                out.writeInt(columns);
+                out.writeInt(rows);
+                for (int node = 0; node < columns * rows; node++) {
+                    out.writeFloat(velocityX[node]);
+                    out.writeFloat(velocityZ[node]);
+                    out.writeFloat(deviation[node]);
+                }
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        return file;
+    }
+
+    /**
+     * Reads the table of a course from a directory. The table is only an
+     * optimization: a missing, outdated or unreadable file is reported and null
+     * is returned
+     *
+     * @param directory The directory of the tables
+     * @param key       The key of the course, see {@link #key}
+     * @return The table, or null if there is no valid table for the key
+     */
+    public static ShotTable load(Path directory, String key) {
+        Path file = fileFor(directory, key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+                Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key)) {
+                System.out.println("Shot table: ignoring outdated " + file);
+                return null;
+            }
+            float targetX = in.readFloat();
+            float targetZ = in.readFloat();
+            float originX = in.readFloat();
+            float originZ = in.readFloat();
+            float spacing = in.readFloat();
+            int columns = in.readInt();
+            int rows = in.readInt();
+            ShotTable table = new ShotTable(key, targetX, targetZ, originX, originZ, spacing, columns, rows);
+            for (int node = 0; node < columns * rows; node++) {
+                table.velocityX[node] = in.readFloat();
+                table.velocityZ[node] = in.readFloat();
+                table.deviation[node] = in.readFloat();
+            }
+            System.out.println("Shot table: loaded " + file);
+            return table;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Shot table: could not read " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Path fileFor(Path directory, String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder("shots-");
+            for (int i = 0; i < 8; i++) {
+                name.append(String.format("%02x", hash[i]));
+            }
+            return directory.resolve(name.append(".bin").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Vector3;
+import com.game.terrain.GameRules;
+import com.game.terrain.Target;
+import com.game.terrain.Maze.Maze;
+import com.game.terrain.Maze.Wall;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the physics step allocates nothing once the JIT compiler has
+ * warmed up: the frame update of {@link GolfBallMovement}, {@link GolfAI} and
+ * {@link RuleBasedBot}, and whole shots of
+ * {@link PhysicsEngine#runSimulation(double, double)}, on the flat default
+ * course, the hilly terrain and the maze. The bytes allocated by the thread
+ * are read from the JVM's ThreadMXBean; the check exits with status 1 if any
+ * path allocates, and is skipped on a JVM that does not count the bytes. It
+ * runs as part of the core project's check task
+ */
+public class StepAllocationCheck {
+    private static final String HILLY_FUNCTION =
+            " sqrt ( ( sin ( 0.1 * x ) + cos ( 0.1 * y ) ) ^ 2 ) + 0.5 * sin ( 0.3 * x ) * cos ( 0.3 * y ) ";
+    private static final int WARM_UP_ROUNDS = 20000;
+    private static final int MEASURED_ROUNDS = 2000;
+    private static final int STEPS_PER_SHOT = 200;
+    private static final int ATTEMPTS = 3;
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static boolean failed;
+
+    public static void main(String[] args) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            System.out.println("Allocated bytes are not measured by this JVM, skipping the check");
+            return;
+        }
+        threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        check("default", " 1 ", 8, 8, 1, 1, null);
+        check("hilly", HILLY_FUNCTION, 5, 2, 4, 1, null);
+        check("maze", " 1 ", 1, 1, 8, 8, new Maze().getWalls());
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static void check(String name, String heightFunction, float startX, float startZ, float targetX,
+                              float targetZ, List<Wall> walls) {
+        PhysicsEngine physicsEngine = new PhysicsEngine(heightFunction, startX, startZ, targetX, targetZ, 0.15, 1, 0.5,
+                0.3, 0.4, 0, 0, walls);
+        Target target = new Target(targetX, targetZ, 0.15f, heightFunction);
+        Vector3 start = new Vector3(startX, 0, startZ);
+        Vector3 targetPosition = new Vector3(targetX, 0, targetZ);
+
+        GolfBall ball = new GolfBall(start, Color.WHITE);
+        GameRules gameRules = new GameRules(target, ball, heightFunction, 100, 100, 0.9f);
+        gameRules.setAnnounceEvents(false);
+        GolfBallMovement movement = new GolfBallMovement(ball, physicsEngine, gameRules, walls);
+
+        GolfBall aiBall = new GolfBall(start, Color.WHITE);
+        GolfAI golfAI = new GolfAI(aiBall, targetPosition, physicsEngine,
+                new GameRules(target, aiBall, heightFunction, 100, 100, 0.9f), walls);
+
+        GolfBall botBall = new GolfBall(start, Color.WHITE);
+        RuleBasedBot bot = new RuleBasedBot(botBall, targetPosition, 0.15f, physicsEngine,
+                new GameRules(target, botBall, heightFunction, 100, 100, 0.9f), walls);
+
+        // the shots are drawn up front, the random numbers would be boxed otherwise
+        Random random = new Random(42);
+        float[] velocityX = new float[64];
+        float[] velocityZ = new float[64];
+        for (int i = 0; i < velocityX.length; i++) {
+            velocityX[i] = random.nextFloat() * 10 - 5;
+            velocityZ[i] = random.nextFloat() * 10 - 5;
+        }
+
+        Vector3 velocity = new Vector3();
+        Runnable movementStep = () -> {
+            for (int shot = 0; shot < velocityX.length; shot++) {
+                ball.setPosition(start);
+                movement.shoot(velocity.set(velocityX[shot], 0, velocityZ[shot]));
+                for (int step = 0; step < STEPS_PER_SHOT; step++) {
+                    movement.update();
+                }
+            }
+        };
+        Runnable aiStep = () -> {
+            for (int shot = 0; shot < velocityX.length; shot++) {
+                aiBall.setPosition(start);
+                aiBall.setVelocity(velocity.set(velocityX[shot], 0, velocityZ[shot]));
+                for (int step = 0; step < STEPS_PER_SHOT && aiBall.getVelocity().len() >= 0.04f; step++) {
+                    golfAI.update(aiBall);
+                }
+            }
+        };
+        Runnable botStep = () -> {
+            for (int shot = 0; shot < velocityX.length; shot++) {
+                botBall.setPosition(start);
+                botBall.setVelocity(velocity.set(velocityX[shot], 0, velocityZ[shot]));
+                for (int step = 0; step < STEPS_PER_SHOT; step++) {
+                    bot.update();
+                }
+            }
+        };
+        Runnable simulation = () -> {
+            for (int shot = 0; shot < velocityX.length; shot++) {
+                physicsEngine.setState(startX, startZ, velocityX[shot], velocityZ[shot]);
+                physicsEngine.runSimulation(velocityX[shot], velocityZ[shot]);
+            }
+        };
+
+        report(name, "GolfBallMovement.update", movementStep);
+        report(name, "GolfAI.update", aiStep);
+        report(name, "RuleBasedBot.update", botStep);
+        report(name, "runSimulation", simulation);
+    }
+
+    private static void report(String course, String path, Runnable rounds) {
+        for (int i = 0; i < WARM_UP_ROUNDS / 64; i++) {
+            rounds.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        // the bytes the measurement itself allocates, subtracted from the result
+        long overheadStart = threads.getThreadAllocatedBytes(threadId);
+        long overhead = threads.getThreadAllocatedBytes(threadId) - overheadStart;
+
+        // a late recompilation can allocate once, when the JVM deoptimizes a frame and rebuilds the objects its
+        // escape analysis had removed, so the path only fails if it allocates in every attempt
+        long allocated = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < ATTEMPTS && allocated > 0; attempt++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < MEASURED_ROUNDS / 64; i++) {
+                rounds.run();
+            }
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before - overhead);
+        }
+        System.out.printf("%s\t%s\t%d bytes allocated%s%n", course, path, allocated, allocated > 0 ? " FAILED" : "");
+        if (allocated > 0) {
+            failed = true;
+        }
+    }
+}
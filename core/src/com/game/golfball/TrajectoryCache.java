@@ -0,0 +1,267 @@
+package com.game.golfball;
+
+import com.game.terrain.TerrainSurface;
+import com.game.terrain.Maze.Wall;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the end states of simulated shots, so a shot that is simulated
+ * again is answered without running the simulation. The key is the start
+ * position and velocity, exactly by default or rounded to position and
+ * velocity quanta, and the least recently used shot is dropped once the cache
+ * is full.
+ *
+ * A cache is attached to a {@link PhysicsEngine} and answers its
+ * {@link PhysicsEngine#runSimulation(double, double)}; the copies of the engine
+ * share it, and it may be used from several threads. The cache remembers the
+ * course it was filled on, the terrain, the walls and the friction, and
+ * empties itself when it is asked about a different course. The engine
+ * describes its course once, as a {@link CourseKey}, when the cache is
+ * attached, so a lookup from the engine or its copies only compares references
+ */
+public class TrajectoryCache {
+    private final int capacity;
+    private final double positionQuantum;
+    private final double velocityQuantum;
+    private final LinkedHashMap<Key, double[]> endStates;
+
+    private CourseKey course; // the course the end states belong to
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    /**
+     * Constructs a TrajectoryCache rounding the shots to quanta. A lookup
+     * answers with the end state of any shot within half a quantum, so the
+     * velocity quantum must stay well below the smallest velocity difference
+     * the search takes a gradient over, 1e-4 for the Adam search: the error of
+     * the gradient grows as the quantum over that difference
+     *
+     * @param capacity        The largest number of shots remembered
+     * @param positionQuantum The step the start position is rounded to, 0 to use it exactly
+     * @param velocityQuantum The step the start velocity is rounded to, 0 to use it exactly
+     */
+    public TrajectoryCache(int capacity, double positionQuantum, double velocityQuantum) {
+        if (capacity < 1 || positionQuantum < 0 || velocityQuantum < 0) {
+            throw new IllegalArgumentException("Capacity must be positive and quanta cannot be negative");
+        }
+        this.capacity = capacity;
+        this.positionQuantum = positionQuantum;
+        this.velocityQuantum = velocityQuantum;
+        this.endStates = new LinkedHashMap<Key, double[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+                return size() > TrajectoryCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Constructs a TrajectoryCache keyed on the exact start position and
+     * velocity, so a cached shot ends exactly where its simulation would
+     *
+     * @param capacity The largest number of shots remembered
+     */
+    public TrajectoryCache(int capacity) {
+        this(capacity, 0, 0);
+    }
+
+    /**
+     * Looks up the end state of a shot
+     *
+     * @param course        The course of the engine simulating the shot
+     * @param x0            The start x-coordinate
+     * @param z0            The start z-coordinate
+     * @param vx            The initial velocity in the x-direction
+     * @param vz            The initial velocity in the z-direction
+     * @param endState      Receives the position and velocity the shot ends with
+     * @return True if the shot was found, false if it has to be simulated
+     */
+    synchronized boolean lookup(CourseKey course, double x0, double z0, double vx, double vz, double[] endState) {
+        checkCourse(course);
+        double[] cached = endStates.get(key(x0, z0, vx, vz));
+        if (cached == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        System.arraycopy(cached, 0, endState, 0, cached.length);
+        return true;
+    }
+
+    /**
+     * Remembers the end state of a simulated shot
+     *
+     * @param course        The course of the engine that simulated the shot
+     * @param x0            The start x-coordinate
+     * @param z0            The start z-coordinate
+     * @param vx            The initial velocity in the x-direction
+     * @param vz            The initial velocity in the z-direction
+     * @param endState      The position and velocity the shot ended with
+     */
+    synchronized void store(CourseKey course, double x0, double z0, double vx, double vz, double[] endState) {
+        checkCourse(course);
+        endStates.put(key(x0, z0, vx, vz), endState.clone());
+    }
+
+    // empties the cache if the engine plays on another course than the cached shots
+    private void checkCourse(CourseKey engineCourse) {
+        if (engineCourse != course && !engineCourse.equals(course)) {
+            if (!endStates.isEmpty()) {
+                invalidations++;
+                endStates.clear();
+            }
+            course = engineCourse;
+        }
+    }
+
+    // the walls are compared by their bounds, so moving a wall of the same list is noticed
+    private static int hashWalls(List<Wall> walls) {
+        if (walls == null) {
+            return 0;
+        }
+        int hash = 1;
+        for (Wall wall : walls) {
+            hash = 31 * hash + Float.floatToIntBits(wall.getPosition().x);
+            hash = 31 * hash + Float.floatToIntBits(wall.getPosition().z);
+            hash = 31 * hash + Float.floatToIntBits(wall.getWidth());
+            hash = 31 * hash + Float.floatToIntBits(wall.getDepth());
+        }
+        return hash;
+    }
+
+    private Key key(double x0, double z0, double vx, double vz) {
+        return new Key(quantize(x0, positionQuantum), quantize(z0, positionQuantum), quantize(vx, velocityQuantum),
+                quantize(vz, velocityQuantum));
+    }
+
+    private static long quantize(double value, double quantum) {
+        return quantum == 0 ? Double.doubleToLongBits(value) : Math.round(value / quantum);
+    }
+
+    /**
+     * Forgets every shot, keeping the counters
+     */
+    public synchronized void clear() {
+        endStates.clear();
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache
+     *
+     * @return The number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that had to be simulated
+     *
+     * @return The number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of times the cache was emptied because the course changed
+     *
+     * @return The number of invalidations
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Gets the number of shots remembered
+     *
+     * @return The number of cached shots
+     */
+    public synchronized int size() {
+        return endStates.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d of %d shots cached, %d invalidations", hits,
+                misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, endStates.size(), capacity, invalidations);
+    }
+
+    /**
+     * The course the shots of an engine are simulated on: the terrain, the
+     * walls with their bounds and the friction
+     */
+    static final class CourseKey {
+        private final TerrainSurface terrainSurface;
+        private final List<Wall> walls;
+        private final int wallsHash;
+        private final double grassKinetic;
+        private final double sandKinetic;
+
+        /**
+         * Describes the course of an engine, hashing its walls once
+         *
+         * @param physicsEngine The engine
+         */
+        CourseKey(PhysicsEngine physicsEngine) {
+            this.terrainSurface = physicsEngine.getTerrainSurface();
+            this.walls = physicsEngine.getWalls();
+            this.wallsHash = hashWalls(walls);
+            this.grassKinetic = physicsEngine.GRASS_K;
+            this.sandKinetic = physicsEngine.SAND_K;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof CourseKey)) {
+                return false;
+            }
+            CourseKey course = (CourseKey) other;
+            return terrainSurface == course.terrainSurface && walls == course.walls && wallsHash == course.wallsHash
+                    && grassKinetic == course.grassKinetic && sandKinetic == course.sandKinetic;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(terrainSurface) + wallsHash;
+        }
+    }
+
+    private static final class Key {
+        private final long x0;
+        private final long z0;
+        private final long vx;
+        private final long vz;
+
+        Key(long x0, long z0, long vx, long vz) {
+            this.x0 = x0;
+            this.z0 = z0;
+            this.vx = vx;
+            this.vz = vz;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return x0 == key.x0 && z0 == key.z0 && vx == key.vx && vz == key.vz;
+        }
+
+        @Override
+        public int hashCode() {
+            long hash = x0;
+            hash = 31 * hash + z0;
+            hash = 31 * hash + vx;
+            hash = 31 * hash + vz;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.game.golfball;
+
+import com.game.terrain.Maze.Wall;
+
+import java.util.List;
+
+/**
+ * A uniform grid over the walls of a course, answering which wall a ball
+ * position collides with by looking at a single cell instead of every wall.
+ * Every wall is entered into all the cells its bounds, grown by the
+ * {@link Bouncing#BUFFER_ZONE}, overlap, so the cell of a position holds every
+ * wall the position can collide with. The cells are stored compressed, as one
+ * array of wall indices with the start of every cell, and a query allocates
+ * nothing.
+ *
+ * The walls of a cell are kept in the order of the wall list, so a query
+ * finds the same wall as a scan of the list would: the first one colliding.
+ * The grid also sweeps the ball along a step, looking at the cells the step
+ * covers, to find the wall the ball hits first and when
+ */
+public class WallGrid {
+    private static final int MAX_CELLS = 1 << 22; // the cells grow when the walls are spread over a larger area
+
+    private final List<Wall> walls;
+    private final int wallCount;
+
+    // wall bounds including the buffer zone, computed as in Bouncing.isColliding
+    private final float[] minX;
+    private final float[] maxX;
+    private final float[] minZ;
+    private final float[] maxZ;
+
+    private final float originX;
+    private final float originZ;
+    private final float cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart; // index in cellWalls of the first wall of every cell, one more for the end
+    private final int[] cellWalls;
+
+    /**
+     * Builds the grid of a list of walls. The cell size is the average size of
+     * a wall with its buffer zone, so a wall covers about four cells
+     *
+     * @param walls The walls, which must not change while the grid is used
+     */
+    public WallGrid(List<Wall> walls) {
+        this.walls = walls;
+        this.wallCount = walls.size();
+        minX = new float[wallCount];
+        maxX = new float[wallCount];
+        minZ = new float[wallCount];
+        maxZ = new float[wallCount];
+
+        float boundsMinX = Float.MAX_VALUE, boundsMinZ = Float.MAX_VALUE;
+        float boundsMaxX = -Float.MAX_VALUE, boundsMaxZ = -Float.MAX_VALUE;
+        double totalSize = 0;
+        for (int w = 0; w < wallCount; w++) {
+            Wall wall = walls.get(w);
+            float halfWidth = wall.getWidth() / 2 + Bouncing.BUFFER_ZONE;
+            float halfDepth = wall.getDepth() / 2 + Bouncing.BUFFER_ZONE;
+            minX[w] = wall.getPosition().x - halfWidth;
+            maxX[w] = wall.getPosition().x + halfWidth;
+            minZ[w] = wall.getPosition().z - halfDepth;
+            maxZ[w] = wall.getPosition().z + halfDepth;
+            boundsMinX = Math.min(boundsMinX, minX[w]);
+            boundsMinZ = Math.min(boundsMinZ, minZ[w]);
+            boundsMaxX = Math.max(boundsMaxX, maxX[w]);
+            boundsMaxZ = Math.max(boundsMaxZ, maxZ[w]);
+            totalSize += Math.max(maxX[w] - minX[w], maxZ[w] - minZ[w]);
+        }
+        if (wallCount == 0) {
+            boundsMinX = boundsMinZ = 0;
+            boundsMaxX = boundsMaxZ = 1;
+            totalSize = 1;
+        }
+
+        float size = (float) Math.max(totalSize / Math.max(1, wallCount), 1e-3);
+        double width = boundsMaxX - boundsMinX;
+        double depth = boundsMaxZ - boundsMinZ;
+        while ((width / size + 1) * (depth / size + 1) > MAX_CELLS) {
+            size *= 2;
+        }
+        this.originX = boundsMinX;
+        this.originZ = boundsMinZ;
+        this.cellSize = size;
+        this.columns = (int) (width / size) + 1;
+        this.rows = (int) (depth / size) + 1;
+
+        // count the walls of every cell, then fill them in list order
+        cellStart = new int[columns * rows + 1];
+        for (int w = 0; w < wallCount; w++) {
+            for (int row = row(minZ[w]); row <= row(maxZ[w]); row++) {
+                for (int column = column(minX[w]); column <= column(maxX[w]); column++) {
+                    cellStart[row * columns + column + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellWalls = new int[cellStart[columns * rows]];
+        int[] filled = new int[columns * rows];
+        for (int w = 0; w < wallCount; w++) {
+            for (int row = row(minZ[w]); row <= row(maxZ[w]); row++) {
+                for (int column = column(minX[w]); column <= column(maxX[w]); column++) {
+                    int cell = row * columns + column;
+                    cellWalls[cellStart[cell] + filled[cell]++] = w;
+                }
+            }
+        }
+    }
+
+    private int column(float x) {
+        return Math.min(columns - 1, Math.max(0, (int) ((x - originX) / cellSize)));
+    }
+
+    private int row(float z) {
+        return Math.min(rows - 1, Math.max(0, (int) ((z - originZ) / cellSize)));
+    }
+
+    /**
+     * Finds the first wall, in the order of the wall list, whose bounds grown
+     * by the buffer zone contain a position
+     *
+     * @param x The x-coordinate of the position
+     * @param z The z-coordinate of the position
+     * @return The index of the wall in the list, or -1 if there is none
+     */
+    public int collidingWall(float x, float z) {
+        float cellX = (x - originX) / cellSize;
+        float cellZ = (z - originZ) / cellSize;
+        if (!(cellX >= 0 && cellZ >= 0 && cellX < columns && cellZ < rows)) {
+            return -1;
+        }
+        int cell = (int) cellZ * columns + (int) cellX;
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+            int w = cellWalls[i];
+            if (x > minX[w] && x < maxX[w] && z > minZ[w] && z < maxZ[w]) {
+                return w;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first wall a ball hits on its way from a position by a
+     * displacement. The ball is a circle with the radius of the buffer zone,
+     * so it hits a wall where its path enters the wall bounds grown by the
+     * buffer zone, with the corners rounded. Walls the ball starts inside of
+     * are not hit, nor are walls the ball only leaves
+     *
+     * @param x  The x-coordinate the ball starts from
+     * @param z  The z-coordinate the ball starts from
+     * @param dx The displacement in the x-direction
+     * @param dz The displacement in the z-direction
+     * @return The index of the wall hit first, the first in the list on a tie, or -1 if there is none
+     */
+    public int sweptWall(float x, float z, float dx, float dz) {
+        float endX = x + dx;
+        float endZ = z + dz;
+        if (Math.max(x, endX) < originX || Math.max(z, endZ) < originZ
+                || Math.min(x, endX) > originX + columns * cellSize || Math.min(z, endZ) > originZ + rows * cellSize) {
+            return -1;
+        }
+        int first = -1;
+        float firstTime = Float.MAX_VALUE;
+        // the walls of every cell the path could cross, a wall in several cells is timed again but found once
+        for (int row = row(Math.min(z, endZ)); row <= row(Math.max(z, endZ)); row++) {
+            for (int column = column(Math.min(x, endX)); column <= column(Math.max(x, endX)); column++) {
+                int cell = row * columns + column;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int w = cellWalls[i];
+                    float time = timeOfImpact(w, x, z, dx, dz);
+                    if (time < firstTime || (time == firstTime && w < first)) {
+                        firstTime = time;
+                        first = w;
+                    }
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Computes when a ball moving from a position by a displacement hits a
+     * wall, as the fraction of the displacement travelled. The path is clipped
+     * against the grown bounds of the wall first; where it enters them at a
+     * corner it is checked against the circle rounding that corner
+     *
+     * @param wall The index of the wall in the list
+     * @param x    The x-coordinate the ball starts from
+     * @param z    The z-coordinate the ball starts from
+     * @param dx   The displacement in the x-direction
+     * @param dz   The displacement in the z-direction
+     * @return The time of impact between 0 and 1, or {@link Float#MAX_VALUE} if the ball does not hit the wall
+     */
+    public float timeOfImpact(int wall, float x, float z, float dx, float dz) {
+        float enter = -Float.MAX_VALUE;
+        float exit = Float.MAX_VALUE;
+        if (dx != 0) {
+            float near = (minX[wall] - x) / dx;
+            float far = (maxX[wall] - x) / dx;
+            enter = Math.max(enter, Math.min(near, far));
+            exit = Math.min(exit, Math.max(near, far));
+        } else if (x <= minX[wall] || x >= maxX[wall]) {
+            return Float.MAX_VALUE;
+        }
+        if (dz != 0) {
+            float near = (minZ[wall] - z) / dz;
+            float far = (maxZ[wall] - z) / dz;
+            enter = Math.max(enter, Math.min(near, far));
+            exit = Math.min(exit, Math.max(near, far));
+        } else if (z <= minZ[wall] || z >= maxZ[wall]) {
+            return Float.MAX_VALUE;
+        }
+        if (enter > exit || exit <= 0 || enter > 1) {
+            return Float.MAX_VALUE;
+        }
+
+        // a path starting inside the grown bounds can only hit a rounded corner it starts next to
+        boolean startsInside = enter < 0;
+        float time = Math.max(enter, 0);
+        float contactX = x + dx * time;
+        float contactZ = z + dz * time;
+        float innerMinX = minX[wall] + Bouncing.BUFFER_ZONE, innerMaxX = maxX[wall] - Bouncing.BUFFER_ZONE;
+        float innerMinZ = minZ[wall] + Bouncing.BUFFER_ZONE, innerMaxZ = maxZ[wall] - Bouncing.BUFFER_ZONE;
+        boolean beside = contactX >= innerMinX && contactX <= innerMaxX;
+        boolean aboveOrBelow = contactZ >= innerMinZ && contactZ <= innerMaxZ;
+        if (beside || aboveOrBelow) {
+            return startsInside ? Float.MAX_VALUE : time;
+        }
+
+        // the path enters at a corner: it hits the circle around the corner point, or misses the wall
+        float cornerX = contactX < innerMinX ? innerMinX : innerMaxX;
+        float cornerZ = contactZ < innerMinZ ? innerMinZ : innerMaxZ;
+        float offsetX = x - cornerX;
+        float offsetZ = z - cornerZ;
+        float a = dx * dx + dz * dz;
+        float b = offsetX * dx + offsetZ * dz;
+        float c = offsetX * offsetX + offsetZ * offsetZ - Bouncing.BUFFER_ZONE * Bouncing.BUFFER_ZONE;
+        float discriminant = b * b - a * c;
+        if (c <= 0 || b >= 0 || discriminant < 0) {
+            return Float.MAX_VALUE; // inside the circle already, moving away from it, or passing it
+        }
+        float cornerTime = (-b - (float) Math.sqrt(discriminant)) / a;
+        return cornerTime <= 1 ? Math.max(cornerTime, 0) : Float.MAX_VALUE;
+    }
+
+    /**
+     * Checks if a position lies inside the bounds of a wall grown by the
+     * buffer zone with the corners rounded, the shape {@link #timeOfImpact}
+     * sweeps the ball against
+     *
+     * @param wall The index of the wall in the list
+     * @param x    The x-coordinate of the position
+     * @param z    The z-coordinate of the position
+     * @return True if the position is inside
+     */
+    public boolean contains(int wall, float x, float z) {
+        float outsideX = Math.max(0, Math.max(minX[wall] + Bouncing.BUFFER_ZONE - x, x - maxX[wall] + Bouncing.BUFFER_ZONE));
+        float outsideZ = Math.max(0, Math.max(minZ[wall] + Bouncing.BUFFER_ZONE - z, z - maxZ[wall] + Bouncing.BUFFER_ZONE));
+        return outsideX * outsideX + outsideZ * outsideZ < Bouncing.BUFFER_ZONE * Bouncing.BUFFER_ZONE;
+    }
+
+    /**
+     * Gets the wall at an index returned by {@link #collidingWall}
+     *
+     * @param index The index of the wall in the list
+     * @return The wall
+     */
+    public Wall getWall(int index) {
+        return walls.get(index);
+    }
+
+    /**
+     * Gets the number of walls in the grid
+     *
+     * @return The number of walls
+     */
+    public int getWallCount() {
+        return wallCount;
+    }
+}
@@ -0,0 +1,92 @@
+package com.game.golfball;
+
+import com.badlogic.gdx.math.Vector3;
+import com.game.terrain.Maze.Wall;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the collision query of {@link WallGrid} with a scan of the wall
+ * list, as {@link Bouncing} did before, on random mazes of unit walls growing
+ * to 100000 walls. Also checks that both find the same wall for every query
+ */
+public class WallGridBenchmark {
+    private static final int[] WALL_COUNTS = {100, 1000, 10000, 100000};
+    private static final int GRID_QUERIES = 2000000;
+    private static final long SCAN_WALL_CHECKS = 200000000L; // scan queries times walls, to bound the scan's time
+
+    public static void main(String[] args) {
+        System.out.println("Walls\tBuild ms\tScan ns per query\tGrid ns per query\tMismatches");
+        for (int wallCount : WALL_COUNTS) {
+            run(wallCount);
+        }
+    }
+
+    private static void run(int wallCount) {
+        Random random = new Random(42);
+        // a square maze with two cells in five taken by walls, like the 10x10 maze
+        int side = (int) Math.ceil(Math.sqrt(wallCount / 0.4));
+        List<Wall> walls = new ArrayList<>();
+        boolean[] taken = new boolean[side * side];
+        while (walls.size() < wallCount) {
+            int cell = random.nextInt(side * side);
+            if (!taken[cell]) {
+                taken[cell] = true;
+                walls.add(new Wall(cell % side, 0.75f, cell / side, 1, 1.5f, 1));
+            }
+        }
+        float[] queryX = new float[GRID_QUERIES];
+        float[] queryZ = new float[GRID_QUERIES];
+        for (int i = 0; i < GRID_QUERIES; i++) {
+            queryX[i] = random.nextFloat() * (side + 2) - 1.5f;
+            queryZ[i] = random.nextFloat() * (side + 2) - 1.5f;
+        }
+
+        long start = System.nanoTime();
+        WallGrid grid = new WallGrid(walls);
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+
+        int scanQueries = (int) Math.min(GRID_QUERIES, SCAN_WALL_CHECKS / wallCount);
+        int[] scanned = new int[scanQueries];
+        Vector3 position = new Vector3();
+        scan(walls, queryX, queryZ, scanned, position); // warm up
+        start = System.nanoTime();
+        scan(walls, queryX, queryZ, scanned, position);
+        double scanNanos = (double) (System.nanoTime() - start) / scanQueries;
+
+        int[] found = new int[GRID_QUERIES];
+        query(grid, queryX, queryZ, found); // warm up
+        start = System.nanoTime();
+        query(grid, queryX, queryZ, found);
+        double gridNanos = (double) (System.nanoTime() - start) / GRID_QUERIES;
+
+        int mismatches = 0;
+        for (int i = 0; i < scanQueries; i++) {
+            if (scanned[i] != found[i]) {
+                mismatches++;
+            }
+        }
+        System.out.printf("%d\t%.1f\t%.1f\t%.1f\t%d%n", wallCount, buildMillis, scanNanos, gridNanos, mismatches);
+    }
+
+    private static void scan(List<Wall> walls, float[] queryX, float[] queryZ, int[] result, Vector3 position) {
+        for (int i = 0; i < result.length; i++) {
+            position.set(queryX[i], 0, queryZ[i]);
+            result[i] = -1;
+            for (int w = 0; w < walls.size(); w++) {
+                if (Bouncing.isColliding(position, walls.get(w))) {
+                    result[i] = w;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void query(WallGrid grid, float[] queryX, float[] queryZ, int[] result) {
+        for (int i = 0; i < result.length; i++) {
+            result[i] = grid.collidingWall(queryX[i], queryZ[i]);
+        }
+    }
+}
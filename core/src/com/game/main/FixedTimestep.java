@@ -0,0 +1,86 @@
+package com.game.main;
+
+/**
+ * Turns the time between rendered frames into a whole number of physics steps
+ * of a fixed size, so the ball moves at the same speed at any frame rate. The
+ * elapsed time is collected in an accumulator and every frame runs the steps
+ * it holds. A frame runs at most a fixed number of steps: the time beyond that
+ * is dropped and the game slows down, instead of every slow frame making the
+ * next one run even more steps. The part of a step left in the accumulator is
+ * how far rendering interpolates between the last two physics states
+ */
+public class FixedTimestep {
+    private final double step;
+    private final int maxStepsPerFrame;
+    private double accumulator;
+    private long steps;
+    private double droppedTime;
+
+    /**
+     * Constructs a FixedTimestep
+     *
+     * @param step             The size of a physics step in seconds
+     * @param maxStepsPerFrame The most steps a single frame runs
+     */
+    public FixedTimestep(double step, int maxStepsPerFrame) {
+        if (step <= 0 || maxStepsPerFrame < 1) {
+            throw new IllegalArgumentException("Step size and steps per frame must be positive");
+        }
+        this.step = step;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    /**
+     * Adds the time of a frame and takes the whole steps out of the accumulator
+     *
+     * @param delta The time in seconds since the last frame
+     * @return The number of physics steps to run this frame
+     */
+    public int advance(float delta) {
+        accumulator += Math.max(0, delta);
+        double due = Math.floor(accumulator / step);
+        if (due > maxStepsPerFrame) {
+            droppedTime += (due - maxStepsPerFrame) * step;
+            due = maxStepsPerFrame;
+        }
+        accumulator = Math.max(0, accumulator - Math.floor(accumulator / step) * step);
+        steps += (long) due;
+        return (int) due;
+    }
+
+    /**
+     * Gets how far the time is between the last physics step and the next one
+     *
+     * @return The part of a step in the accumulator, from 0 to 1
+     */
+    public float getAlpha() {
+        return (float) Math.min(1, accumulator / step);
+    }
+
+    /**
+     * Gets the size of a physics step
+     *
+     * @return The step size in seconds
+     */
+    public double getStep() {
+        return step;
+    }
+
+    /**
+     * Gets the number of physics steps run so far
+     *
+     * @return The steps run
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Gets the time dropped because frames took longer than the steps they may run
+     *
+     * @return The dropped time in seconds
+     */
+    public double getDroppedTime() {
+        return droppedTime;
+    }
+}
@@ -0,0 +1,81 @@
+package com.game.main;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+
+/**
+ * Prints the average and worst frame time and the number of draw calls per
+ * frame every few seconds, to compare rendering changes. It also prints the
+ * physics steps per second, which run on the simulation thread apart from
+ * the frames
+ */
+public class FrameTimeReport {
+    private static final float REPORT_INTERVAL = 5; // seconds between reports
+
+    private final GLProfiler profiler;
+    private float elapsed;
+    private float worstFrame;
+    private int frames;
+    private long drawCalls;
+    private double stepSize;
+    private long physicsSteps;
+    private double droppedTime;
+    private long reportedSteps;
+    private double reportedDroppedTime;
+
+    /**
+     * Constructs a FrameTimeReport and starts counting draw calls
+     */
+    public FrameTimeReport() {
+        profiler = new GLProfiler(Gdx.graphics);
+        profiler.enable();
+    }
+
+    /**
+     * Records the progress of the physics, reported with the frames
+     *
+     * @param steps       The physics steps run so far
+     * @param droppedTime The time the physics dropped so far, in seconds
+     * @param stepSize    The size of a physics step in seconds
+     */
+    public void physics(long steps, double droppedTime, double stepSize) {
+        this.physicsSteps = steps;
+        this.droppedTime = droppedTime;
+        this.stepSize = stepSize;
+    }
+
+    /**
+     * Records one rendered frame, printing a report when the interval has passed
+     *
+     * @param delta The time in seconds since the last frame
+     */
+    public void frame(float delta) {
+        frames++;
+        elapsed += delta;
+        worstFrame = Math.max(worstFrame, delta);
+        drawCalls += profiler.getDrawCalls();
+        profiler.reset();
+
+        if (elapsed >= REPORT_INTERVAL) {
+            System.out.printf("Frame time: average %.2f ms, worst %.2f ms, %.0f fps, %d draw calls per frame%n",
+                    elapsed * 1000 / frames, worstFrame * 1000, frames / elapsed, drawCalls / frames);
+            if (stepSize > 0) {
+                System.out.printf("Physics: %.0f steps per second of %.0f in real time, %.2f s dropped%n",
+                        (physicsSteps - reportedSteps) / elapsed, 1 / stepSize, droppedTime - reportedDroppedTime);
+                reportedSteps = physicsSteps;
+                reportedDroppedTime = droppedTime;
+            }
+            elapsed = 0;
+            worstFrame = 0;
+            frames = 0;
+            drawCalls = 0;
+        }
+    }
+
+    /**
+     * Stops counting draw calls
+     */
+    public void dispose() {
+        profiler.disable();
+    }
+}
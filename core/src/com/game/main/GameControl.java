@@ -13,15 +13,20 @@ import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g3d.Environment;
 import com.badlogic.gdx.graphics.g3d.ModelBatch;
 import com.badlogic.gdx.math.Vector3;
+import com.game.golfball.BallUpdatePool;
 import com.game.golfball.GolfAI;
 import com.game.golfball.GolfBall;
 import com.game.golfball.GolfBallMovement;
 import com.game.golfball.PhysicsEngine;
 import com.game.golfball.RuleBasedBot;
+import com.game.golfball.ShotTable;
+import com.game.golfball.TrajectoryCache;
 import com.game.golfball.AStar.AStarMazeSolver;
 import com.game.golfball.AStar.Node;
 import com.game.golfball.AStar.PathSegmenter;
+import com.game.terrain.CompiledHeightFunction;
 import com.game.terrain.GameRules;
+import com.game.terrain.HeightField;
 import com.game.terrain.Target;
 import com.game.terrain.TerrainV2;
 import com.game.terrain.Maze.Maze;
@@ -70,6 +75,17 @@ public class GameControl implements Screen {
     static int width = 100;
     static int depth = 100;
     static float scale = 0.9f;
+    static double heightFieldSpacing = 0; // grid spacing of the physics terrain, 0 to evaluate the height function
+    static long aiTimeBudgetMillis = 0; // wall-clock budget of an AI shot search, 0 for no limit
+    static final int TRAJECTORY_CACHE_SIZE = 100000; // simulated shots remembered for the AI searches
+    static final int MAX_STEPS_PER_FRAME = 25; // physics steps run at once, 0.1 s at the step of 0.004 s
+    static final double FAST_FORWARD_SPEED = 4; // speed of the simulated time while fast-forwarding
+    // game state published by the simulation thread with the ball positions
+    private static final int GAME_OVER = 1;
+    private static final int ASTAR_GAME_OVER = 2;
+    private static final int FELL_IN_WATER = 4;
+    private static final int OUT_OF_BORDER = 8;
+    private static final int THINKING = 16;
     // target
     private Vector3 targetPosition = new Vector3(Tx, 0.0f, Tz);
     private float targetRadius = SettingsScreen.Radius.floatValue();
@@ -85,6 +101,14 @@ public class GameControl implements Screen {
 
     private SoundManager soundManager; // SoundManager instance
     private LightSetup lightSetup; // LightSetup instance
+    private FrameTimeReport frameTimeReport;
+    private FixedTimestep timestep;
+    private SimulationThread simulation;
+    private BallUpdatePool ballUpdates;
+    private boolean simulationStarted;
+    private GolfBall[] balls;
+    private final Vector3 renderPosition = new Vector3();
+    private long restartCommand; // the status is ignored until the simulation has run the last restart
 
     GameRules gameRulesAstar; 
 
@@ -106,10 +130,12 @@ public class GameControl implements Screen {
      */
     @Override
     public void show() {
+        long startupStart = System.nanoTime();
         ui = new UI(this);
         modelBatch = new ModelBatch();
         environment = new Environment();
         terrain = new TerrainV2(width, depth, scale);
+        frameTimeReport = new FrameTimeReport();
         soundManager.loadSounds(); // Load sounds
 
         backgroundTexture = new Texture("assets/clouds.jpg");
@@ -129,6 +155,12 @@ public class GameControl implements Screen {
 
         physicsEngine = new PhysicsEngine(functionTerrain, X0, Y0, targetPosition.x, targetPosition.z, targetRadius,
                 GRASS_K, GRASS_S, SAND_K, SAND_S, 0.0, 0.0, walls);
+        physicsEngine.setTrajectoryCache(new TrajectoryCache(TRAJECTORY_CACHE_SIZE));
+        timestep = new FixedTimestep(physicsEngine.getStepSize(), MAX_STEPS_PER_FRAME);
+        if (heightFieldSpacing > 0) {
+            physicsEngine.useHeightField(HeightField.forTerrain(CompiledHeightFunction.compile(functionTerrain),
+                    width, depth, scale, heightFieldSpacing));
+        }
         // create balls
         ball = new GolfBall(new Vector3(X0, 20, Y0), Color.valueOf("2e3d49"));
         AIball = new GolfBall(new Vector3(X0, 20, Y0), Color.valueOf("007d8d"));
@@ -144,10 +176,27 @@ public class GameControl implements Screen {
 
         // movement of balls
         ballMovement = new GolfBallMovement(ball, physicsEngine, gameRules, walls);
-        golfAI = new GolfAI(AIball, targetPosition, physicsEngine, gameRulesAI, walls);
-        ruleBasedBot = new RuleBasedBot(RBball, targetPosition, targetRadius, physicsEngine, gameRulesRB, walls);
-        aStarBot = new GolfAI(Astar, targetPosition, physicsEngine, gameRulesAI, walls); // Initialize AStarBot
-
+        // every bot gets its own target, which the A* bot moves along its path on the simulation thread
+        golfAI = new GolfAI(AIball, new Vector3(targetPosition), physicsEngine, gameRulesAI, walls);
+        ruleBasedBot = new RuleBasedBot(RBball, new Vector3(targetPosition), targetRadius, physicsEngine, gameRulesRB,
+                walls);
+        aStarBot = new GolfAI(Astar, new Vector3(targetPosition), physicsEngine, gameRulesAI, walls); // Initialize AStarBot
+        golfAI.setTimeBudget(aiTimeBudgetMillis);
+        aStarBot.setTimeBudget(aiTimeBudgetMillis);
+        ShotTable shotTable = ShotTable.load(ShotTable.DEFAULT_DIRECTORY,
+                ShotTable.key(physicsEngine, targetPosition));
+        golfAI.setShotTable(shotTable);
+        aStarBot.setShotTable(shotTable);
+        balls = new GolfBall[] {ball, AIball, RBball, Astar};
+        Runnable[] updates = {
+                () -> ballMovement.update(), // make ball move
+                () -> golfAI.update(AIball), // make AI ball move
+                () -> ruleBasedBot.update(), // make rule based bot play
+                () -> aStarBot.update(Astar)}; // Update A* ball's state and target if necessary
+        ballUpdates = new BallUpdatePool(BallUpdatePool.defaultWorkers(updates.length), updates);
+        simulation = new SimulationThread(timestep, this::step, this::status, balls);
+
+        System.out.printf("Startup: game screen ready in %.1f ms%n", (System.nanoTime() - startupStart) / 1e6);
     }
 
     /**
@@ -165,6 +214,10 @@ public class GameControl implements Screen {
                     isCharging = true;
                     return true;
                 }
+                if (keycode == Keys.F) {
+                    simulation.setSpeed(simulation.getSpeed() == 1 ? FAST_FORWARD_SPEED : 1);
+                    return true;
+                }
                 return false;
             }
 
@@ -172,7 +225,9 @@ public class GameControl implements Screen {
             public boolean keyUp(int keycode) {
                 if (keycode == Keys.SPACE) {
                     isCharging = false;
-                    applyForceBasedOnCharge();
+                    if (terrain.isReady()) {
+                        applyForceBasedOnCharge();
+                    }
                     chargePower = 0;
                     return true;
                 }
@@ -184,12 +239,11 @@ public class GameControl implements Screen {
     }
 
     /**
-     * Triggers a shot by the AI bot
+     * Triggers a shot by the AI bot. The shot is planned in the background and
+     * played by the AI's update once it is ready
      */
     public void triggerAIShot() {
-        Vector3 aiShot = golfAI.findBestShot();
-        AIball.setVelocity(aiShot);
-        golfAI.update(AIball);
+        simulation.post(() -> golfAI.planShot());
     }
 
     /**
@@ -197,9 +251,11 @@ public class GameControl implements Screen {
      * updating its state
      */
     public void triggerRuleBasedBotPlay() {
-        Vector3 newShotVelocity = ruleBasedBot.calculateNewVelocity();
-        RBball.setVelocity(newShotVelocity);
-        ruleBasedBot.update(); // Bot makes one shot
+        simulation.post(() -> {
+            Vector3 newShotVelocity = ruleBasedBot.calculateNewVelocity();
+            RBball.setVelocity(newShotVelocity);
+            ruleBasedBot.update(); // Bot makes one shot
+        });
     }
 
     /**
@@ -213,7 +269,8 @@ public class GameControl implements Screen {
         for (Node node : segmenter.segmentPath()) {
             segmentedPath.add(new Vector3(node.x, 0, node.y));
         }
-        aStarBot.setPathSegments(segmentedPath);
+        List<Vector3> segments = new ArrayList<>(segmentedPath);
+        simulation.post(() -> aStarBot.setPathSegments(segments));
         System.out.println(path);
         System.out.println(segmentedPath);
     }
@@ -224,7 +281,7 @@ public class GameControl implements Screen {
     private void applyForceBasedOnCharge() {
         Vector3 direction = new Vector3(CameraSetup.camera.direction).nor();
         Vector3 hitForce = direction.scl(chargePower);
-        ballMovement.applyForce(hitForce);
+        simulation.post(() -> ballMovement.applyForce(hitForce));
     }
 
     /**
@@ -253,19 +310,28 @@ public class GameControl implements Screen {
 
         CameraSetup.camController.update();
 
-        if (isCharging) {
+        // the course is playable once the terrain has finished loading, then the physics starts on its own thread
+        boolean courseReady = terrain.isReady();
+        if (isCharging && courseReady) {
             chargePower += deltaTime;
             chargePower = Math.min(chargePower, MAX_CHARGE);
         }
+        if (courseReady && !simulationStarted) {
+            simulation.start();
+            simulationStarted = true;
+        }
 
-        update();
+        // the balls are drawn from the newest snapshot of the simulation, which never waits for a step
+        SimulationThread.Snapshot snapshot = simulation.read();
+        int status = snapshot.getCommandsRun() >= restartCommand ? snapshot.getStatus() : 0;
+        updateStatus(status);
+        long now = System.nanoTime();
 
         modelBatch.begin(CameraSetup.camera);
         terrain.render(modelBatch, environment);
-        AIball.render(modelBatch, environment);
-        ball.render(modelBatch, environment);
-        RBball.render(modelBatch, environment);
-        Astar.render(modelBatch, environment); // Ensure Astar is being rendered
+        for (int i = 0; i < balls.length; i++) {
+            balls[i].render(modelBatch, environment, snapshot.getPosition(i, now, renderPosition));
+        }
         target.render(modelBatch, environment);
         if (maze != null) { // Check if maze is initialized
             maze.render(modelBatch, environment);
@@ -274,47 +340,80 @@ public class GameControl implements Screen {
 
         // ui
         ui.setChargePower(chargePower);
+        ui.setLoadingProgress(terrain.getLoadingProgress());
+        ui.setThinking((status & THINKING) != 0);
         ui.render();
+
+        frameTimeReport.physics(snapshot.getSteps(), snapshot.getDroppedTime(), timestep.getStep());
+        frameTimeReport.frame(deltaTime);
     }
 
     /**
-     * Updates the game state, including the ball movements and game rules checks
+     * Updates the game state by one physics step, including the ball movements
+     * and game rules checks. Runs on the simulation thread, the balls are
+     * updated in parallel and all of them have moved before the rules are checked
      */
-    private void update() {
-        ballMovement.update(); // make ball move
-        golfAI.update(AIball); // make AI ball move
-        ruleBasedBot.update(); // make rule based bot play
-
-        // Update A* ball's state and target if necessary
-        aStarBot.update(Astar);
+    private void step() {
+        ballUpdates.update();
 
         // game rules
         gameRules.checkGameStatus();
         gameRulesAstar.checkGameStatus();
+    }
 
-        // Check if game is over for A star
+    /**
+     * Sums up the game state for the renderer. Runs on the simulation thread
+     *
+     * @return The status flags
+     */
+    private int status() {
+        int status = 0;
         if (gameRulesAstar.isGameOver()) {
+            status |= ASTAR_GAME_OVER;
+        }
+        if (gameRules.isGameOver() || gameRulesRB.isGameOver() || gameRulesAI.isGameOver()) {
+            status |= GAME_OVER;
+        }
+        if (gameRules.fellInWater() || gameRulesRB.fellInWater() || gameRulesAI.fellInWater()) {
+            status |= FELL_IN_WATER;
+        }
+        if (gameRules.outOfBorder() || gameRulesRB.outOfBorder() || gameRulesAI.outOfBorder()) {
+            status |= OUT_OF_BORDER;
+        }
+        if (golfAI.isThinking() || aStarBot.isThinking()) {
+            status |= THINKING;
+        }
+        return status;
+    }
+
+    /**
+     * Shows the labels and plays the sounds of the game state published by the
+     * simulation
+     *
+     * @param status The status flags
+     */
+    private void updateStatus(int status) {
+        // Check if game is over for A star
+        if ((status & ASTAR_GAME_OVER) != 0) {
             ui.setGameOverLabelVisible(true);
         }
 
         // Check if game is over
-        if ((gameRules.isGameOver() || gameRulesRB.isGameOver() || gameRulesAI.isGameOver()) && !gameOverSoundPlayed) {
+        if ((status & GAME_OVER) != 0 && !gameOverSoundPlayed) {
             ui.setGameOverLabelVisible(true);
             soundManager.playWinningSound(); // Play winning sound
             gameOverSoundPlayed = true;
         }
 
         // Check if game is over
-        if ((gameRules.fellInWater() || gameRulesRB.fellInWater() || gameRulesAI.fellInWater())
-                && !fellInWaterSoundPlayed) {
+        if ((status & FELL_IN_WATER) != 0 && !fellInWaterSoundPlayed) {
             ui.setFellInWaterLabelVisible(true);
             soundManager.playFellInWaterSound(); // Play fell in water sound
             fellInWaterSoundPlayed = true;
         }
 
         // check if ball fell out of bounds
-        if ((gameRules.outOfBorder() || gameRulesRB.outOfBorder() || gameRulesAI.outOfBorder())
-                && !fellInWaterSoundPlayed) {
+        if ((status & OUT_OF_BORDER) != 0 && !fellInWaterSoundPlayed) {
             ui.setFellOutOfBoundsLabelVisible(true);
             soundManager.playFellInWaterSound(); // Play fell in water sound
             fellInWaterSoundPlayed = true;
@@ -350,6 +449,10 @@ public class GameControl implements Screen {
      */
     @Override
     public void hide() {
+        if (simulation != null) {
+            simulation.stop();
+            ballUpdates.close();
+        }
     }
 
     /**
@@ -359,11 +462,15 @@ public class GameControl implements Screen {
         // Reset all relevant variables to their initial values
         chargePower = 0;
         isCharging = false;
-        // Reset ball positions
-        ball.setPosition(new Vector3(X0, 20, Y0));
-        AIball.setPosition(new Vector3(X0, 20, Y0));
-        RBball.setPosition(new Vector3(X0, 20, Y0));
-        Astar.setPosition(new Vector3(X0, 20, Y0)); // Reset A* ball position
+        restartCommand = simulation.post(() -> {
+            golfAI.cancelPlanning();
+            aStarBot.cancelPlanning();
+            // Reset ball positions
+            ball.setPosition(new Vector3(X0, 20, Y0));
+            AIball.setPosition(new Vector3(X0, 20, Y0));
+            RBball.setPosition(new Vector3(X0, 20, Y0));
+            Astar.setPosition(new Vector3(X0, 20, Y0)); // Reset A* ball position
+        });
 
         gameOverSoundPlayed = false;
         ui.setGameOverLabelVisible(false);
@@ -386,6 +493,14 @@ public class GameControl implements Screen {
     @Override
     public void dispose() {
         modelBatch.dispose();
+        if (simulation != null) {
+            simulation.stop();
+            ballUpdates.close();
+        }
+        if (golfAI != null) {
+            golfAI.cancelPlanning();
+            aStarBot.cancelPlanning();
+        }
         if (terrain != null)
             terrain.dispose();
         if (ball != null)
@@ -398,6 +513,9 @@ public class GameControl implements Screen {
         if (spriteBatch != null) {
             spriteBatch.dispose();
         }
+        if (frameTimeReport != null) {
+            frameTimeReport.dispose();
+        }
         soundManager.dispose(); // Dispose sounds
     }
 }
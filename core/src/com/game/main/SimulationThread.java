@@ -0,0 +1,263 @@
+package com.game.main;
+
+import com.badlogic.gdx.math.Vector3;
+import com.game.golfball.GolfBall;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * Runs the physics of the game on its own thread, in the fixed steps of a
+ * {@link FixedTimestep}, and publishes the ball positions to the renderer
+ * through a {@link TripleBuffer}, so rendering never waits for the physics.
+ * The balls belong to the simulation thread once it is started: everything
+ * that changes them, shots and restarts, is posted to the thread and run
+ * between two steps.
+ *
+ * The simulated time runs at a speed relative to real time, so the physics
+ * can run faster than real time to fast-forward
+ */
+public class SimulationThread implements Runnable {
+    private final FixedTimestep timestep;
+    private final Runnable step;
+    private final GolfBall[] balls;
+    private final IntSupplier status;
+    private final TripleBuffer<Snapshot> snapshots;
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicLong commandsPosted = new AtomicLong();
+    private long commandsRun; // only touched by the simulation thread
+    private final Thread thread;
+    private volatile double speed = 1;
+    private volatile boolean running;
+
+    /**
+     * Constructs a SimulationThread, which is started by {@link #start()}
+     *
+     * @param timestep The timestep dividing the time into physics steps
+     * @param step     Advances the game by one physics step
+     * @param status   Sums up the game state published with the positions, such as whether the game is over
+     * @param balls    The balls whose positions are published
+     */
+    public SimulationThread(FixedTimestep timestep, Runnable step, IntSupplier status, GolfBall... balls) {
+        this.timestep = timestep;
+        this.step = step;
+        this.status = status;
+        this.balls = balls;
+        this.snapshots = new TripleBuffer<>(new Snapshot(balls.length), new Snapshot(balls.length),
+                new Snapshot(balls.length));
+        publish(); // the first read gets the positions the balls start at
+        this.thread = new Thread(this, "simulation");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the simulation thread
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread and waits for the step it is in to finish
+     */
+    public void stop() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks if the simulation thread has been started and not stopped
+     *
+     * @return True if the simulation is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Runs a change of the game on the simulation thread before its next step.
+     * The snapshots published after the change have
+     * {@link Snapshot#getCommandsRun()} at least the number returned
+     *
+     * @param command The change to make
+     * @return The number of the command, counting from 1
+     */
+    public long post(Runnable command) {
+        synchronized (commands) {
+            commands.add(command);
+            return commandsPosted.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sets how fast the simulated time runs compared to real time
+     *
+     * @param speed The speed, 1 for real time and above 1 to fast-forward
+     */
+    public void setSpeed(double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive");
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * Gets how fast the simulated time runs compared to real time
+     *
+     * @return The speed
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Gets the newest positions published by the simulation, only to be called
+     * from the rendering thread
+     *
+     * @return The newest snapshot, which stays valid until the next call
+     */
+    public Snapshot read() {
+        return snapshots.read();
+    }
+
+    @Override
+    public void run() {
+        long last = System.nanoTime();
+        try {
+            while (running) {
+                boolean changed = false;
+                Runnable command;
+                while ((command = commands.poll()) != null) {
+                    command.run();
+                    commandsRun++;
+                    changed = true;
+                }
+
+                long now = System.nanoTime();
+                int steps = timestep.advance((float) ((now - last) / 1e9 * speed));
+                last = now;
+                for (int i = 0; i < steps; i++) {
+                    for (GolfBall ball : balls) {
+                        ball.savePreviousPosition();
+                    }
+                    step.run();
+                }
+                if (steps > 0 || changed) {
+                    publish();
+                }
+
+                // sleep until the next step is due
+                double untilNextStep = (1 - timestep.getAlpha()) * timestep.getStep() / speed;
+                LockSupport.parkNanos(Math.max(1, (long) (untilNextStep * 1e9)));
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Simulation stopped: " + e);
+            running = false;
+        }
+    }
+
+    // copies the state of the balls into the snapshot the renderer gets next
+    private void publish() {
+        Snapshot snapshot = snapshots.getWriteBuffer();
+        for (int i = 0; i < balls.length; i++) {
+            Vector3 previous = balls[i].getPreviousPosition();
+            Vector3 position = balls[i].getPosition();
+            snapshot.previous[3 * i] = previous.x;
+            snapshot.previous[3 * i + 1] = previous.y;
+            snapshot.previous[3 * i + 2] = previous.z;
+            snapshot.current[3 * i] = position.x;
+            snapshot.current[3 * i + 1] = position.y;
+            snapshot.current[3 * i + 2] = position.z;
+        }
+        snapshot.status = status.getAsInt();
+        snapshot.alpha = timestep.getAlpha();
+        snapshot.stepNanos = (long) (timestep.getStep() / speed * 1e9);
+        snapshot.publishedNanos = System.nanoTime();
+        snapshot.steps = timestep.getSteps();
+        snapshot.droppedTime = timestep.getDroppedTime();
+        snapshot.commandsRun = commandsRun;
+        snapshots.publish();
+    }
+
+    /**
+     * The state of the balls after a physics step, as published to the
+     * renderer
+     */
+    public static class Snapshot {
+        private final float[] previous;
+        private final float[] current;
+        private int status;
+        private float alpha;
+        private long stepNanos;
+        private long publishedNanos;
+        private long steps;
+        private double droppedTime;
+        private long commandsRun;
+
+        Snapshot(int balls) {
+            previous = new float[3 * balls];
+            current = new float[3 * balls];
+        }
+
+        /**
+         * Gets the position of a ball interpolated between the last two steps,
+         * moving on with the time that passed since the snapshot was published
+         *
+         * @param ball     The index of the ball, in the order the balls were given
+         * @param nanoTime The current System.nanoTime()
+         * @param out      Receives the position
+         * @return The position, the same object as out
+         */
+        public Vector3 getPosition(int ball, long nanoTime, Vector3 out) {
+            float t = Math.min(1, alpha + (float) (nanoTime - publishedNanos) / Math.max(1, stepNanos));
+            int i = 3 * ball;
+            return out.set(previous[i] + (current[i] - previous[i]) * t,
+                    previous[i + 1] + (current[i + 1] - previous[i + 1]) * t,
+                    previous[i + 2] + (current[i + 2] - previous[i + 2]) * t);
+        }
+
+        /**
+         * Gets the game state summed up when the snapshot was taken
+         *
+         * @return The status given by the status supplier
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Gets the number of physics steps run when the snapshot was taken
+         *
+         * @return The steps run
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * Gets the number of posted commands run before the snapshot was taken
+         *
+         * @return The commands run
+         */
+        public long getCommandsRun() {
+            return commandsRun;
+        }
+
+        /**
+         * Gets the time dropped by the timestep when the snapshot was taken
+         *
+         * @return The dropped time in seconds
+         */
+        public double getDroppedTime() {
+            return droppedTime;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.game.main;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the latest state from one writing thread to one reading thread
+ * without locks. Of the three buffers the writer owns one, the reader owns
+ * one, and the third is swapped between them with an atomic exchange: the
+ * writer fills its buffer and trades it for the shared one, the reader trades
+ * its buffer for the shared one when that holds something newer. Neither side
+ * ever waits, the reader always sees a completely written state, and states
+ * the reader was too slow to see are skipped
+ *
+ * @param <T> The type of the state, reused and never copied
+ */
+public class TripleBuffer<T> {
+    private static final int FRESH = 4; // set on the shared index when the writer published into it
+    private static final int INDEX = 3;
+
+    private final Object[] buffers;
+    private final AtomicInteger shared = new AtomicInteger(1);
+    private int writeIndex = 0; // only touched by the writer
+    private int readIndex = 2; // only touched by the reader
+
+    /**
+     * Constructs a TripleBuffer over three states of the same shape
+     *
+     * @param first  The first state, the writer starts on it
+     * @param second The second state
+     * @param third  The third state, read until the writer has published
+     */
+    public TripleBuffer(T first, T second, T third) {
+        if (first == null || second == null || third == null || first == second || second == third
+                || first == third) {
+            throw new IllegalArgumentException("Three distinct states are needed");
+        }
+        buffers = new Object[] {first, second, third};
+    }
+
+    /**
+     * Gets the state the writer fills, only to be called by the writer
+     *
+     * @return The state to write into
+     */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer() {
+        return (T) buffers[writeIndex];
+    }
+
+    /**
+     * Publishes the state the writer filled and gives the writer another one
+     */
+    public void publish() {
+        writeIndex = shared.getAndSet(writeIndex | FRESH) & INDEX;
+    }
+
+    /**
+     * Gets the newest published state, only to be called by the reader. The
+     * state stays the reader's until the next call
+     *
+     * @return The newest state, or the one read before if nothing was published since
+     */
+    @SuppressWarnings("unchecked")
+    public T read() {
+        if ((shared.get() & FRESH) != 0) {
+            readIndex = shared.getAndSet(readIndex) & INDEX;
+        }
+        return (T) buffers[readIndex];
+    }
+}
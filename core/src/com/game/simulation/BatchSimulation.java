@@ -0,0 +1,137 @@
+package com.game.simulation;
+
+import com.game.terrain.Maze.Wall;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * Command line entry point that plays a list of shots on a course without a
+ * window or OpenGL context, for evaluating bots on machines without a display.
+ *
+ * Usage: BatchSimulation course shots [output]
+ *
+ * The course is a course file or a built-in course, see {@link Course#load}.
+ * Every line of the shot list holds "velocityX,velocityZ" to play from the
+ * start of the course, or "startX,startZ,velocityX,velocityZ"; empty lines and
+ * lines starting with # are skipped. The results are written as JSON if the
+ * output file ends with .json and as CSV otherwise, to standard output if no
+ * file is given. Shots are independent and are simulated in parallel
+ */
+public class BatchSimulation {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: BatchSimulation <course file|default|maze> <shot list> [output.csv|output.json]");
+            System.exit(1);
+        }
+        Course course = Course.load(args[0]);
+        List<double[]> shots = readShots(args[1], course);
+
+        long start = System.nanoTime();
+        ShotResult[] results = simulate(course, shots);
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        boolean json = args.length == 3 && args[2].toLowerCase(Locale.ROOT).endsWith(".json");
+        Writer writer = args.length == 3
+                ? Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)
+                : new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        try (PrintWriter out = new PrintWriter(writer)) {
+            if (json) {
+                writeJson(out, results);
+            } else {
+                writeCsv(out, results);
+            }
+        }
+
+        long steps = 0;
+        for (ShotResult result : results) {
+            steps += result.steps;
+        }
+        System.err.printf(Locale.ROOT, "Simulated %d shots (%d steps) in %.1f ms, %.0f shots per second%n",
+                results.length, steps, millis, results.length / (millis / 1000));
+    }
+
+    /**
+     * Simulates the shots in parallel, with one {@link ShotSimulator} per thread
+     *
+     * @param course The course to play on
+     * @param shots  The shots as start x, start z, velocity x and velocity z
+     * @return The results in the order of the shots
+     */
+    public static ShotResult[] simulate(Course course, List<double[]> shots) {
+        List<Wall> walls = course.createWalls();
+        ThreadLocal<ShotSimulator> simulators = ThreadLocal.withInitial(() -> new ShotSimulator(course, walls));
+        ShotResult[] results = new ShotResult[shots.size()];
+        IntStream.range(0, results.length).parallel().forEach(i -> {
+            double[] shot = shots.get(i);
+            results[i] = simulators.get().simulate(shot[0], shot[1], shot[2], shot[3]);
+        });
+        return results;
+    }
+
+    /**
+     * Reads a shot list file
+     *
+     * @param file   The path of the shot list
+     * @param course The course, whose start is used for shots without one
+     * @return The shots as start x, start z, velocity x and velocity z
+     * @throws IOException if the file cannot be read
+     */
+    static List<double[]> readShots(String file, Course course) throws IOException {
+        List<double[]> shots = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] values = line.split("[,;\\s]+");
+            try {
+                if (values.length == 2) {
+                    shots.add(new double[] {course.getStartX(), course.getStartZ(),
+                            Double.parseDouble(values[0]), Double.parseDouble(values[1])});
+                } else if (values.length == 4) {
+                    shots.add(new double[] {Double.parseDouble(values[0]), Double.parseDouble(values[1]),
+                            Double.parseDouble(values[2]), Double.parseDouble(values[3])});
+                } else {
+                    throw new IllegalArgumentException("Shot list line " + lineNumber + " must have 2 or 4 values");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Shot list line " + lineNumber + " is not a number: " + line);
+            }
+        }
+        return shots;
+    }
+
+    private static void writeCsv(PrintWriter out, ShotResult[] results) {
+        out.println("shot,startX,startZ,velocityX,velocityZ,finalX,finalZ,outcome,steps");
+        for (int i = 0; i < results.length; i++) {
+            ShotResult r = results[i];
+            out.printf(Locale.ROOT, "%d,%s,%s,%s,%s,%s,%s,%s,%d%n", i, r.startX, r.startZ, r.velocityX, r.velocityZ,
+                    r.finalX, r.finalZ, r.outcome, r.steps);
+        }
+    }
+
+    private static void writeJson(PrintWriter out, ShotResult[] results) {
+        out.println("[");
+        for (int i = 0; i < results.length; i++) {
+            ShotResult r = results[i];
+            out.printf(Locale.ROOT, "  {\"shot\": %d, \"startX\": %s, \"startZ\": %s, \"velocityX\": %s, "
+                            + "\"velocityZ\": %s, \"finalX\": %s, \"finalZ\": %s, \"outcome\": \"%s\", \"steps\": %d}%s%n",
+                    i, r.startX, r.startZ, r.velocityX, r.velocityZ, r.finalX, r.finalZ, r.outcome, r.steps,
+                    i < results.length - 1 ? "," : "");
+        }
+        out.println("]");
+    }
+}
@@ -0,0 +1,274 @@
+package com.game.simulation;
+
+import com.game.terrain.Maze.Maze;
+import com.game.terrain.Maze.Wall;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The parameters of a hole that the game reads from the settings screen, for
+ * simulations that run without it. A course file is a properties file with the
+ * keys function, startX, startZ, targetX, targetZ, targetRadius, grassKinetic,
+ * grassStatic, sandKinetic, sandStatic, maze, width, depth and scale; missing
+ * keys take the values of the settings screen's "Default" button
+ */
+public class Course {
+    static final String HILLY_FUNCTION =
+            " sqrt ( ( sin ( 0.1 * x ) + cos ( 0.1 * y ) ) ^ 2 ) + 0.5 * sin ( 0.3 * x ) * cos ( 0.3 * y ) ";
+
+    private final String heightFunction;
+    private final float startX;
+    private final float startZ;
+    private final float targetX;
+    private final float targetZ;
+    private final float targetRadius;
+    private final double grassKinetic;
+    private final double grassStatic;
+    private final double sandKinetic;
+    private final double sandStatic;
+    private final boolean maze;
+    private final int width;
+    private final int depth;
+    private final float scale;
+
+    /**
+     * Constructs a Course from its parameters
+     *
+     * @param properties The course parameters, see the class description
+     */
+    public Course(Properties properties) {
+        this.heightFunction = properties.getProperty("function", " 1 ");
+        this.startX = floatValue(properties, "startX", 8);
+        this.startZ = floatValue(properties, "startZ", 8);
+        this.targetX = floatValue(properties, "targetX", 1);
+        this.targetZ = floatValue(properties, "targetZ", 1);
+        this.targetRadius = floatValue(properties, "targetRadius", 0.5f);
+        this.grassKinetic = floatValue(properties, "grassKinetic", 1.0f);
+        this.grassStatic = floatValue(properties, "grassStatic", 0.5f);
+        this.sandKinetic = floatValue(properties, "sandKinetic", 0.3f);
+        this.sandStatic = floatValue(properties, "sandStatic", 0.4f);
+        this.maze = Boolean.parseBoolean(properties.getProperty("maze", "false").trim());
+        this.width = (int) floatValue(properties, "width", 100);
+        this.depth = (int) floatValue(properties, "depth", 100);
+        this.scale = floatValue(properties, "scale", 0.9f);
+        if (width < 2 || depth < 2 || scale <= 0 || targetRadius <= 0) {
+            throw new IllegalArgumentException("Course size, scale and target radius must be positive");
+        }
+    }
+
+    /**
+     * Constructs a copy of a course with another start and target
+     *
+     * @param course  The course to copy
+     * @param startX  The x-coordinate the ball starts from
+     * @param startZ  The z-coordinate the ball starts from
+     * @param targetX The x-coordinate of the target
+     * @param targetZ The z-coordinate of the target
+     */
+    private Course(Course course, float startX, float startZ, float targetX, float targetZ) {
+        this.heightFunction = course.heightFunction;
+        this.startX = startX;
+        this.startZ = startZ;
+        this.targetX = targetX;
+        this.targetZ = targetZ;
+        this.targetRadius = course.targetRadius;
+        this.grassKinetic = course.grassKinetic;
+        this.grassStatic = course.grassStatic;
+        this.sandKinetic = course.sandKinetic;
+        this.sandStatic = course.sandStatic;
+        this.maze = course.maze;
+        this.width = course.width;
+        this.depth = course.depth;
+        this.scale = course.scale;
+    }
+
+    /**
+     * Creates a hole on this course: the same terrain, friction and maze played
+     * from another start to another target
+     *
+     * @param startX  The x-coordinate the ball starts from
+     * @param startZ  The z-coordinate the ball starts from
+     * @param targetX The x-coordinate of the target
+     * @param targetZ The z-coordinate of the target
+     * @return The course with the new start and target
+     */
+    public Course withHole(float startX, float startZ, float targetX, float targetZ) {
+        return new Course(this, startX, startZ, targetX, targetZ);
+    }
+
+    /**
+     * Loads a course file, or one of the built-in courses "default" (the settings
+     * screen's defaults), "hilly" (the defaults on rolling hills with ponds) and
+     * "maze" (the defaults with the maze)
+     *
+     * @param name The path of the course file or the name of a built-in course
+     * @return The course
+     * @throws IOException if the file cannot be read
+     */
+    public static Course load(String name) throws IOException {
+        Properties properties = new Properties();
+        if (name.equals("maze")) {
+            properties.setProperty("maze", "true");
+        } else if (name.equals("hilly")) {
+            properties.setProperty("function", HILLY_FUNCTION);
+        } else if (!name.equals("default")) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(name), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return new Course(properties);
+    }
+
+    private static float floatValue(Properties properties, String key, float defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Float.parseFloat(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Course value " + key + " is not a number: " + value);
+        }
+    }
+
+    /**
+     * Creates the walls of the course
+     *
+     * @return The maze walls, or null if the course has no maze
+     */
+    public List<Wall> createWalls() {
+        return maze ? new Maze().getWalls() : null;
+    }
+
+    /**
+     * Gets the height function of the terrain
+     *
+     * @return the height function
+     */
+    public String getHeightFunction() {
+        return heightFunction;
+    }
+
+    /**
+     * Gets the x-coordinate the ball starts from
+     *
+     * @return the start x-coordinate
+     */
+    public float getStartX() {
+        return startX;
+    }
+
+    /**
+     * Gets the z-coordinate the ball starts from
+     *
+     * @return the start z-coordinate
+     */
+    public float getStartZ() {
+        return startZ;
+    }
+
+    /**
+     * Gets the x-coordinate of the target
+     *
+     * @return the target x-coordinate
+     */
+    public float getTargetX() {
+        return targetX;
+    }
+
+    /**
+     * Gets the z-coordinate of the target
+     *
+     * @return the target z-coordinate
+     */
+    public float getTargetZ() {
+        return targetZ;
+    }
+
+    /**
+     * Gets the radius of the target
+     *
+     * @return the target radius
+     */
+    public float getTargetRadius() {
+        return targetRadius;
+    }
+
+    /**
+     * Gets the kinetic friction coefficient on grass
+     *
+     * @return the kinetic coefficient on grass
+     */
+    public double getGrassKinetic() {
+        return grassKinetic;
+    }
+
+    /**
+     * Gets the static friction coefficient on grass
+     *
+     * @return the static coefficient on grass
+     */
+    public double getGrassStatic() {
+        return grassStatic;
+    }
+
+    /**
+     * Gets the kinetic friction coefficient on sand
+     *
+     * @return the kinetic coefficient on sand
+     */
+    public double getSandKinetic() {
+        return sandKinetic;
+    }
+
+    /**
+     * Gets the static friction coefficient on sand
+     *
+     * @return the static coefficient on sand
+     */
+    public double getSandStatic() {
+        return sandStatic;
+    }
+
+    /**
+     * Checks if the course has the maze
+     *
+     * @return true if the maze walls are placed
+     */
+    public boolean hasMaze() {
+        return maze;
+    }
+
+    /**
+     * Gets the width of the terrain
+     *
+     * @return the width of the terrain
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the depth of the terrain
+     *
+     * @return the depth of the terrain
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the scale of the terrain
+     *
+     * @return the scale of the terrain
+     */
+    public float getScale() {
+        return scale;
+    }
+}
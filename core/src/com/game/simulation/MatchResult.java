@@ -0,0 +1,42 @@
+package com.game.simulation;
+
+/**
+ * The outcome of one bot playing one hole of a {@link Tournament}
+ */
+public class MatchResult {
+    public final String course;
+    public final int hole;
+    public final String bot;
+    public final int shots;
+    public final boolean holed;
+    public final int hazards;
+    public final long simulations;
+    public final long cpuNanos;
+    public final long steps;
+
+    /**
+     * Constructs a MatchResult
+     *
+     * @param course      The name of the course
+     * @param hole        The number of the hole on the course
+     * @param bot         The name of the bot
+     * @param shots       The shots played, counted by the game rules
+     * @param holed       Whether the ball ended in the hole
+     * @param hazards     The number of times the ball fell into water or went out of bounds
+     * @param simulations The number of shots the bot simulated to choose its shots
+     * @param cpuNanos    The CPU time the bot spent choosing its shots, in nanoseconds
+     * @param steps       The number of physics steps of the shots played
+     */
+    public MatchResult(String course, int hole, String bot, int shots, boolean holed, int hazards, long simulations,
+                       long cpuNanos, long steps) {
+        this.course = course;
+        this.hole = hole;
+        this.bot = bot;
+        this.shots = shots;
+        this.holed = holed;
+        this.hazards = hazards;
+        this.simulations = simulations;
+        this.cpuNanos = cpuNanos;
+        this.steps = steps;
+    }
+}
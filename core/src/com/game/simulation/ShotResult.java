@@ -0,0 +1,45 @@
+package com.game.simulation;
+
+/**
+ * The outcome of one simulated shot
+ */
+public class ShotResult {
+    public static final String IN_HOLE = "hole";
+    public static final String STOPPED = "stopped";
+    public static final String WATER = "water";
+    public static final String OUT_OF_BOUNDS = "out";
+    public static final String TIMEOUT = "timeout";
+
+    public final double startX;
+    public final double startZ;
+    public final double velocityX;
+    public final double velocityZ;
+    public final double finalX;
+    public final double finalZ;
+    public final String outcome;
+    public final int steps;
+
+    /**
+     * Constructs a ShotResult
+     *
+     * @param startX    The x-coordinate the shot was played from
+     * @param startZ    The z-coordinate the shot was played from
+     * @param velocityX The initial velocity in the x-direction
+     * @param velocityZ The initial velocity in the z-direction
+     * @param finalX    The x-coordinate where the ball came to rest
+     * @param finalZ    The z-coordinate where the ball came to rest
+     * @param outcome   One of the outcome constants
+     * @param steps     The number of physics steps simulated
+     */
+    public ShotResult(double startX, double startZ, double velocityX, double velocityZ, double finalX, double finalZ,
+                      String outcome, int steps) {
+        this.startX = startX;
+        this.startZ = startZ;
+        this.velocityX = velocityX;
+        this.velocityZ = velocityZ;
+        this.finalX = finalX;
+        this.finalZ = finalZ;
+        this.outcome = outcome;
+        this.steps = steps;
+    }
+}
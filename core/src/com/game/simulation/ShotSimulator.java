@@ -0,0 +1,101 @@
+package com.game.simulation;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Vector3;
+import com.game.golfball.GolfBall;
+import com.game.golfball.GolfBallMovement;
+import com.game.golfball.PhysicsEngine;
+import com.game.terrain.GameRules;
+import com.game.terrain.GetHeight;
+import com.game.terrain.Target;
+import com.game.terrain.Maze.Wall;
+
+import java.util.List;
+
+/**
+ * Plays shots on a course without rendering. Every shot is advanced with the
+ * same {@link GolfBallMovement} steps and {@link GameRules} checks the game
+ * runs once per frame, but as fast as the CPU allows, until the ball stops,
+ * drops into the hole or is put back after a hazard. A simulator keeps its own
+ * ball and physics state, so use one per thread
+ */
+public class ShotSimulator {
+    static final int MAX_STEPS = 250000; // 1000 seconds of simulated time
+
+    private final Course course;
+    private final List<Wall> walls;
+    private final PhysicsEngine physicsEngine;
+    private final Target target;
+    private final GolfBall ball;
+
+    /**
+     * Constructs a ShotSimulator for a course
+     *
+     * @param course The course to play on
+     * @param walls  The walls of the course, or null if it has no maze
+     */
+    public ShotSimulator(Course course, List<Wall> walls) {
+        this.course = course;
+        this.walls = walls;
+        this.physicsEngine = new PhysicsEngine(course.getHeightFunction(), course.getStartX(), course.getStartZ(),
+                course.getTargetX(), course.getTargetZ(), course.getTargetRadius(), course.getGrassKinetic(),
+                course.getGrassStatic(), course.getSandKinetic(), course.getSandStatic(), 0.0, 0.0, walls);
+        this.target = new Target(course.getTargetX(), course.getTargetZ(), course.getTargetRadius(),
+                course.getHeightFunction());
+        this.ball = new GolfBall(new Vector3(course.getStartX(), 0, course.getStartZ()), Color.WHITE);
+    }
+
+    /**
+     * Plays one shot and follows the ball until it comes to rest
+     *
+     * @param startX    The x-coordinate to play from
+     * @param startZ    The z-coordinate to play from
+     * @param velocityX The initial velocity in the x-direction
+     * @param velocityZ The initial velocity in the z-direction
+     * @return The outcome of the shot
+     */
+    public ShotResult simulate(double startX, double startZ, double velocityX, double velocityZ) {
+        float height = (float) GetHeight.getHeight(course.getHeightFunction(), startX, startZ);
+        ball.setPosition(new Vector3((float) startX, height, (float) startZ));
+        ball.setVelocity(new Vector3(0, 0, 0));
+
+        GameRules gameRules = new GameRules(target, ball, course.getHeightFunction(), course.getWidth(),
+                course.getDepth(), course.getScale());
+        gameRules.setAnnounceEvents(false);
+        GolfBallMovement movement = new GolfBallMovement(ball, physicsEngine, gameRules, walls);
+        movement.shoot(new Vector3((float) velocityX, 0, (float) velocityZ));
+
+        int steps = 0;
+        String outcome = ShotResult.TIMEOUT;
+        while (steps < MAX_STEPS) {
+            movement.update();
+            steps++;
+            if (gameRules.isGameOver()) {
+                outcome = ShotResult.IN_HOLE;
+                break;
+            } else if (gameRules.getWaterCounter() > 0) {
+                outcome = ShotResult.WATER;
+                break;
+            } else if (gameRules.getOutOfBorderCounter() > 0) {
+                outcome = ShotResult.OUT_OF_BOUNDS;
+                break;
+            } else if (ball.getVelocity().isZero()) {
+                outcome = ShotResult.STOPPED;
+                break;
+            }
+        }
+        Vector3 position = ball.getPosition();
+        return new ShotResult(startX, startZ, velocityX, velocityZ, position.x, position.z, outcome, steps);
+    }
+
+    /**
+     * Plays one shot from the start of the course
+     *
+     * @param velocityX The initial velocity in the x-direction
+     * @param velocityZ The initial velocity in the z-direction
+     * @return The outcome of the shot
+     */
+    public ShotResult simulate(double velocityX, double velocityZ) {
+        return simulate(course.getStartX(), course.getStartZ(), velocityX, velocityZ);
+    }
+}
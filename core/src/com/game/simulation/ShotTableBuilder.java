@@ -0,0 +1,66 @@
+package com.game.simulation;
+
+import com.badlogic.gdx.math.Vector3;
+import com.game.golfball.AdamShotOptimizer;
+import com.game.golfball.DifferentialEvolutionOptimizer;
+import com.game.golfball.PhysicsEngine;
+import com.game.golfball.ShotOptimizer;
+import com.game.golfball.ShotTable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Command line entry point that precomputes the {@link ShotTable} of a course:
+ * the best shot to the target from every node of a grid over the terrain.
+ *
+ * Usage: ShotTableBuilder course [spacing] [adam|de] [directory]
+ *
+ * The course is a course file or a built-in course, see {@link Course#load}.
+ * The grid covers the whole terrain with the given spacing, 1 by default, and
+ * the shots are searched with the Adam optimizer or differential evolution.
+ * The table is written to cache/shots by default, where the game looks for it
+ * when run from the assets directory
+ */
+public class ShotTableBuilder {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 4) {
+            System.err.println("Usage: ShotTableBuilder <course file|default|maze> [spacing] [adam|de] [directory]");
+            System.exit(1);
+        }
+        Course course = Course.load(args[0]);
+        float spacing = args.length > 1 ? Float.parseFloat(args[1]) : 1;
+        String optimizerName = args.length > 2 ? args[2].toLowerCase(Locale.ROOT) : "adam";
+        Path directory = args.length > 3 ? Paths.get(args[3]) : ShotTable.DEFAULT_DIRECTORY;
+        if (spacing <= 0) {
+            throw new IllegalArgumentException("Spacing must be positive");
+        }
+        Supplier<ShotOptimizer> optimizers;
+        if (optimizerName.equals("adam")) {
+            optimizers = AdamShotOptimizer::new;
+        } else if (optimizerName.equals("de")) {
+            optimizers = DifferentialEvolutionOptimizer::new;
+        } else {
+            throw new IllegalArgumentException("Unknown optimizer: " + args[2]);
+        }
+
+        PhysicsEngine physicsEngine = new PhysicsEngine(course.getHeightFunction(), course.getStartX(),
+                course.getStartZ(), course.getTargetX(), course.getTargetZ(), course.getTargetRadius(),
+                course.getGrassKinetic(), course.getGrassStatic(), course.getSandKinetic(), course.getSandStatic(),
+                0.0, 0.0, course.createWalls());
+        float halfWidth = course.getWidth() * course.getScale() / 2;
+        float halfDepth = course.getDepth() * course.getScale() / 2;
+        int columns = (int) (2 * halfWidth / spacing) + 1;
+        int rows = (int) (2 * halfDepth / spacing) + 1;
+
+        long start = System.nanoTime();
+        ShotTable table = ShotTable.build(physicsEngine, new Vector3(course.getTargetX(), 0, course.getTargetZ()),
+                -halfWidth, -halfDepth, spacing, columns, rows, optimizers, 0);
+        Path file = table.save(directory);
+        System.out.printf(Locale.ROOT, "Shot table: %d of %d nodes usable, built in %.1f s, stored %s%n",
+                table.getUsableNodeCount(), table.getNodeCount(), (System.nanoTime() - start) / 1e9, file);
+    }
+}
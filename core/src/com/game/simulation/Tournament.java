@@ -0,0 +1,333 @@
+package com.game.simulation;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Vector3;
+import com.game.golfball.GolfBall;
+import com.game.golfball.GolfBallMovement;
+import com.game.golfball.PhysicsEngine;
+import com.game.terrain.CompiledHeightFunction;
+import com.game.terrain.GameRules;
+import com.game.terrain.Target;
+import com.game.terrain.Maze.MazeLayout;
+import com.game.terrain.Maze.Wall;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Command line entry point that lets the bots play each other on many holes
+ * without a window or OpenGL context, and ranks them in a leaderboard.
+ *
+ * Usage: Tournament holes leaderboard course...
+ *
+ * Every course is a course file or a built-in course, see {@link Course#load}.
+ * The first hole of a course is its own start and target, the others are
+ * drawn at random from a fixed seed: two dry points on open courses, two free
+ * cells of the maze on maze courses. Every bot of {@link TournamentBot} plays
+ * every hole until the ball is in the hole or {@link #MAX_SHOTS} shots are
+ * played. The shots are moved with the same {@link GolfBallMovement} steps and
+ * {@link GameRules} checks the game uses, so a shot counts as in the game and
+ * a hazard puts the ball back without a penalty shot.
+ *
+ * Matches are independent and are played in parallel on all cores. The
+ * leaderboard ranks the bots by success rate, then by shots per hole, overall
+ * and per course, and is written as CSV
+ */
+public class Tournament {
+    static final int MAX_SHOTS = 20; // a bot that has not holed out by then gives up
+    private static final long SEED = 42;
+    private static final float MIN_HOLE_LENGTH = 3;
+    private static final float MAX_HOLE_LENGTH = 30;
+    private static final float BORDER_MARGIN = 5; // random holes keep this far from the border
+    private static final int MAX_ATTEMPTS = 100000;
+    private static final String ALL_COURSES = "all";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: Tournament <holes per course> <leaderboard.csv> <course file|default|hilly|maze>...");
+            System.exit(1);
+        }
+        int holeCount = Integer.parseInt(args[0]);
+        if (holeCount < 1) {
+            throw new IllegalArgumentException("Holes per course must be positive");
+        }
+        Map<String, Course> courses = new LinkedHashMap<>();
+        for (int i = 2; i < args.length; i++) {
+            courses.put(args[i], Course.load(args[i]));
+        }
+
+        long start = System.nanoTime();
+        List<MatchResult> results = play(courses, holeCount, TournamentBot.values());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Standing> leaderboard = rank(results);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8))) {
+            writeCsv(out, leaderboard);
+        }
+        printLeaderboard(leaderboard);
+
+        long cpuNanos = 0;
+        for (MatchResult result : results) {
+            cpuNanos += result.cpuNanos;
+        }
+        System.out.printf(Locale.ROOT, "Played %d matches on %d holes in %.1f s (%.1f s of bot CPU time)%n",
+                results.size(), courses.size() * holeCount, seconds, cpuNanos / 1e9);
+    }
+
+    /**
+     * Plays every bot on every hole of the courses, in parallel
+     *
+     * @param courses   The courses by name
+     * @param holeCount The number of holes played on every course
+     * @param bots      The bots taking part
+     * @return The results, by course, hole and bot
+     */
+    public static List<MatchResult> play(Map<String, Course> courses, int holeCount, TournamentBot[] bots) {
+        List<String> names = new ArrayList<>();
+        List<Course> holes = new ArrayList<>();
+        List<List<Wall>> holeWalls = new ArrayList<>();
+        Random random = new Random(SEED);
+        for (Map.Entry<String, Course> entry : courses.entrySet()) {
+            List<Wall> walls = entry.getValue().createWalls();
+            for (Course hole : createHoles(entry.getValue(), holeCount, random)) {
+                names.add(entry.getKey());
+                holes.add(hole);
+                holeWalls.add(walls);
+            }
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean cpuTime = threads.isCurrentThreadCpuTimeSupported();
+        if (!cpuTime) {
+            System.out.println("CPU time is not measured by this JVM, the bots are timed by the wall clock");
+        }
+        MatchResult[] results = new MatchResult[holes.size() * bots.length];
+        IntStream.range(0, results.length).parallel().forEach(i -> {
+            int hole = i / bots.length;
+            results[i] = playMatch(names.get(hole), hole % holeCount, holes.get(hole), holeWalls.get(hole),
+                    bots[i % bots.length], threads, cpuTime);
+        });
+        List<MatchResult> list = new ArrayList<>(results.length);
+        for (MatchResult result : results) {
+            list.add(result);
+        }
+        return list;
+    }
+
+    /**
+     * Draws the holes of a course. The first hole is the course's own, the
+     * others join two dry points inside the border, or two free cells of the
+     * maze on a maze course
+     *
+     * @param course    The course
+     * @param holeCount The number of holes
+     * @param random    The source of the random holes
+     * @return The holes
+     */
+    static List<Course> createHoles(Course course, int holeCount, Random random) {
+        List<Course> holes = new ArrayList<>();
+        holes.add(course);
+        CompiledHeightFunction heights = CompiledHeightFunction.compile(course.getHeightFunction());
+        float halfWidth = course.getWidth() * course.getScale() / 2 - BORDER_MARGIN;
+        float halfDepth = course.getDepth() * course.getScale() / 2 - BORDER_MARGIN;
+        int[][] layout = MazeLayout.getMazeLayout();
+        float[] start = new float[2];
+        float[] target = new float[2];
+        for (int attempt = 0; holes.size() < holeCount; attempt++) {
+            if (attempt == MAX_ATTEMPTS) {
+                throw new IllegalArgumentException("Course has no room for " + holeCount + " holes");
+            }
+            if (course.hasMaze()) {
+                randomCell(layout, random, start);
+                randomCell(layout, random, target);
+            } else {
+                start[0] = (random.nextFloat() * 2 - 1) * halfWidth;
+                start[1] = (random.nextFloat() * 2 - 1) * halfDepth;
+                target[0] = (random.nextFloat() * 2 - 1) * halfWidth;
+                target[1] = (random.nextFloat() * 2 - 1) * halfDepth;
+            }
+            float length = Vector3.len(target[0] - start[0], 0, target[1] - start[1]);
+            if (length < (course.hasMaze() ? 1 : MIN_HOLE_LENGTH) || length > MAX_HOLE_LENGTH
+                    || heights.getHeight(start[0], start[1]) < 0 || heights.getHeight(target[0], target[1]) < 0) {
+                continue;
+            }
+            holes.add(course.withHole(start[0], start[1], target[0], target[1]));
+        }
+        return holes;
+    }
+
+    // the centre of a free cell of the maze, whose walls stand on whole coordinates
+    private static void randomCell(int[][] layout, Random random, float[] cell) {
+        int row;
+        int column;
+        do {
+            row = random.nextInt(layout.length);
+            column = random.nextInt(layout[row].length);
+        } while (layout[row][column] != 0);
+        cell[0] = column;
+        cell[1] = row;
+    }
+
+    /**
+     * Lets one bot play one hole
+     *
+     * @param name    The name of the course
+     * @param number  The number of the hole on the course
+     * @param course  The hole
+     * @param walls   The walls of the course, or null if it has no maze
+     * @param bot     The bot playing
+     * @param threads The bean measuring the CPU time of the thread
+     * @param cpuTime Whether the bean measures CPU time, or the wall clock is used
+     * @return The outcome of the match
+     */
+    private static MatchResult playMatch(String name, int number, Course course, List<Wall> walls, TournamentBot bot,
+                                         ThreadMXBean threads, boolean cpuTime) {
+        PhysicsEngine physicsEngine = new PhysicsEngine(course.getHeightFunction(), course.getStartX(),
+                course.getStartZ(), course.getTargetX(), course.getTargetZ(), course.getTargetRadius(),
+                course.getGrassKinetic(), course.getGrassStatic(), course.getSandKinetic(), course.getSandStatic(),
+                0.0, 0.0, walls);
+        Target target = new Target(course.getTargetX(), course.getTargetZ(), course.getTargetRadius(),
+                course.getHeightFunction());
+        float height = (float) physicsEngine.getHeight(course.getStartX(), course.getStartZ());
+        GolfBall ball = new GolfBall(new Vector3(course.getStartX(), height, course.getStartZ()), Color.WHITE);
+        GameRules gameRules = new GameRules(target, ball, course.getHeightFunction(), course.getWidth(),
+                course.getDepth(), course.getScale());
+        gameRules.setAnnounceEvents(false);
+        GolfBallMovement movement = new GolfBallMovement(ball, physicsEngine, gameRules, walls);
+
+        long thinkingStart = cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+        TournamentBot.Player player = bot.createPlayer(physicsEngine, ball, course, gameRules, walls);
+        long thinking = (cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime()) - thinkingStart;
+
+        long steps = 0;
+        while (gameRules.getShotCounter() < MAX_SHOTS && !gameRules.isGameOver()) {
+            thinkingStart = cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+            Vector3 velocity = player.nextShot();
+            thinking += (cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime()) - thinkingStart;
+
+            // follow the ball until it rests, drops into the hole or is put back after a hazard
+            movement.shoot(velocity);
+            for (int step = 0; step < ShotSimulator.MAX_STEPS && !ball.getVelocity().isZero(); step++) {
+                movement.update();
+                steps++;
+            }
+        }
+        return new MatchResult(name, number, bot.getName(), gameRules.getShotCounter(), gameRules.isGameOver(),
+                gameRules.getWaterCounter() + gameRules.getOutOfBorderCounter(), player.getSimulations(), thinking,
+                steps);
+    }
+
+    /**
+     * Ranks the bots overall and on every course, by success rate, then by
+     * shots per hole, then by CPU time
+     *
+     * @param results The results of the matches
+     * @return The standings, overall first and then course by course, best first
+     */
+    static List<Standing> rank(List<MatchResult> results) {
+        Map<String, Map<String, Standing>> courses = new LinkedHashMap<>();
+        courses.put(ALL_COURSES, new LinkedHashMap<>());
+        for (MatchResult result : results) {
+            for (String course : new String[] {ALL_COURSES, result.course}) {
+                courses.computeIfAbsent(course, name -> new LinkedHashMap<>())
+                        .computeIfAbsent(result.bot, bot -> new Standing(course, bot))
+                        .add(result);
+            }
+        }
+        List<Standing> leaderboard = new ArrayList<>();
+        for (Map<String, Standing> standings : courses.values()) {
+            List<Standing> course = new ArrayList<>(standings.values());
+            course.sort(Comparator.comparingDouble(Standing::getSuccessRate).reversed()
+                    .thenComparingDouble(Standing::getShotsPerHole)
+                    .thenComparingLong(standing -> standing.cpuNanos));
+            for (int i = 0; i < course.size(); i++) {
+                course.get(i).rank = i + 1;
+            }
+            leaderboard.addAll(course);
+        }
+        return leaderboard;
+    }
+
+    private static void writeCsv(PrintWriter out, List<Standing> leaderboard) {
+        out.println("course,rank,bot,matches,holed,successRate,shotsPerHole,shotsPerHoled,hazards,simulations,"
+                + "simulationsPerShot,cpuSeconds,cpuMillisPerShot");
+        for (Standing s : leaderboard) {
+            out.printf(Locale.ROOT, "%s,%d,%s,%d,%d,%.4f,%.3f,%s,%d,%d,%.1f,%.3f,%.3f%n", s.course, s.rank, s.bot,
+                    s.matches, s.holed, s.getSuccessRate(), s.getShotsPerHole(),
+                    s.holed == 0 ? "" : String.format(Locale.ROOT, "%.3f", (double) s.holedShots / s.holed),
+                    s.hazards, s.simulations, (double) s.simulations / Math.max(1, s.shots), s.cpuNanos / 1e9,
+                    s.cpuNanos / 1e6 / Math.max(1, s.shots));
+        }
+    }
+
+    private static void printLeaderboard(List<Standing> leaderboard) {
+        String course = null;
+        for (Standing s : leaderboard) {
+            if (!s.course.equals(course)) {
+                course = s.course;
+                System.out.printf("%n%s%n%-4s %-6s %8s %9s %11s %12s %14s%n", course.equals(ALL_COURSES)
+                                ? "Leaderboard" : "Course " + course, "rank", "bot", "matches", "success",
+                        "shots/hole", "simulations", "CPU ms/shot");
+            }
+            System.out.printf(Locale.ROOT, "%-4d %-6s %8d %8.1f%% %11.2f %12d %14.2f%n", s.rank, s.bot, s.matches,
+                    100 * s.getSuccessRate(), s.getShotsPerHole(), s.simulations,
+                    s.cpuNanos / 1e6 / Math.max(1, s.shots));
+        }
+        System.out.println();
+    }
+
+    /**
+     * The results of one bot, overall or on one course
+     */
+    static final class Standing {
+        final String course;
+        final String bot;
+        int rank;
+        int matches;
+        int holed;
+        long shots;
+        long holedShots;
+        long hazards;
+        long simulations;
+        long cpuNanos;
+
+        Standing(String course, String bot) {
+            this.course = course;
+            this.bot = bot;
+        }
+
+        void add(MatchResult result) {
+            matches++;
+            shots += result.shots;
+            if (result.holed) {
+                holed++;
+                holedShots += result.shots;
+            }
+            hazards += result.hazards;
+            simulations += result.simulations;
+            cpuNanos += result.cpuNanos;
+        }
+
+        double getSuccessRate() {
+            return (double) holed / matches;
+        }
+
+        // the shots played per match, a hole given up counting the shots played until then
+        double getShotsPerHole() {
+            return (double) shots / matches;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.game.simulation;
+
+import com.badlogic.gdx.math.Vector3;
+import com.game.golfball.AStar.AStarMazeSolver;
+import com.game.golfball.AStar.Node;
+import com.game.golfball.AStar.PathSegmenter;
+import com.game.golfball.AdamShotOptimizer;
+import com.game.golfball.DifferentialEvolutionOptimizer;
+import com.game.golfball.GolfAI;
+import com.game.golfball.GolfBall;
+import com.game.golfball.PhysicsEngine;
+import com.game.golfball.RuleBasedBot;
+import com.game.golfball.ShotOptimizer;
+import com.game.golfball.ShotSearchResult;
+import com.game.terrain.GameRules;
+import com.game.terrain.Maze.Wall;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+
+/**
+ * The bots that play in a {@link Tournament}. A bot creates a player for every
+ * match, which chooses the velocity of each shot from where the ball lies.
+ * The searches run one after another on the thread of the match, since the
+ * tournament already keeps every core busy with matches
+ */
+public enum TournamentBot {
+    /**
+     * {@link GolfAI} searching its shots with the Adam optimizer, as in the game
+     */
+    AI("ai") {
+        @Override
+        Player createPlayer(PhysicsEngine physicsEngine, GolfBall ball, Course course, GameRules gameRules,
+                            List<Wall> walls) {
+            AdamShotOptimizer optimizer = new AdamShotOptimizer();
+            optimizer.setParallelRollouts(false);
+            return new AIPlayer(createGolfAI(physicsEngine, ball, course, gameRules, walls), optimizer);
+        }
+    },
+    /**
+     * {@link GolfAI} searching its shots with differential evolution
+     */
+    AI_DE("ai-de") {
+        @Override
+        Player createPlayer(PhysicsEngine physicsEngine, GolfBall ball, Course course, GameRules gameRules,
+                            List<Wall> walls) {
+            DifferentialEvolutionOptimizer optimizer = new DifferentialEvolutionOptimizer();
+            optimizer.setParallelEvaluation(false);
+            return new AIPlayer(createGolfAI(physicsEngine, ball, course, gameRules, walls), optimizer);
+        }
+    },
+    /**
+     * {@link RuleBasedBot}, which plays without simulating
+     */
+    RULE_BASED("rule") {
+        @Override
+        Player createPlayer(PhysicsEngine physicsEngine, GolfBall ball, Course course, GameRules gameRules,
+                            List<Wall> walls) {
+            RuleBasedBot bot = new RuleBasedBot(ball, new Vector3(course.getTargetX(), 0, course.getTargetZ()),
+                    course.getTargetRadius(), physicsEngine, gameRules, walls);
+            return new Player() {
+                @Override
+                public Vector3 nextShot() {
+                    return bot.calculateNewVelocity();
+                }
+
+                @Override
+                public int getSimulations() {
+                    return 0;
+                }
+            };
+        }
+    },
+    /**
+     * The A* bot of the game: {@link GolfAI} playing one shot to every waypoint
+     * of the A* path through the maze, then to the hole. On a course without
+     * the maze it plays straight to the hole
+     */
+    ASTAR("astar") {
+        @Override
+        Player createPlayer(PhysicsEngine physicsEngine, GolfBall ball, Course course, GameRules gameRules,
+                            List<Wall> walls) {
+            AdamShotOptimizer optimizer = new AdamShotOptimizer();
+            optimizer.setParallelRollouts(false);
+            return new AStarPlayer(createGolfAI(physicsEngine, ball, course, gameRules, walls), optimizer, ball,
+                    course);
+        }
+    };
+
+    private final String name;
+
+    TournamentBot(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the name of the bot on the command line and in the leaderboard
+     *
+     * @return The name of the bot
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Finds a bot by its name
+     *
+     * @param name The name of the bot, see {@link #getName()}
+     * @return The bot
+     */
+    public static TournamentBot forName(String name) {
+        for (TournamentBot bot : values()) {
+            if (bot.name.equals(name.toLowerCase(Locale.ROOT))) {
+                return bot;
+            }
+        }
+        throw new IllegalArgumentException("Unknown bot: " + name);
+    }
+
+    /**
+     * Creates the player of one match
+     *
+     * @param physicsEngine The engine of the match
+     * @param ball          The ball the bot plays
+     * @param course        The hole being played
+     * @param gameRules     The rules of the match, which count the shots
+     * @param walls         The walls of the course, or null if it has no maze
+     * @return The player
+     */
+    abstract Player createPlayer(PhysicsEngine physicsEngine, GolfBall ball, Course course, GameRules gameRules,
+                                 List<Wall> walls);
+
+    private static GolfAI createGolfAI(PhysicsEngine physicsEngine, GolfBall ball, Course course,
+                                       GameRules gameRules, List<Wall> walls) {
+        return new GolfAI(ball, new Vector3(course.getTargetX(), 0, course.getTargetZ()), physicsEngine, gameRules,
+                walls);
+    }
+
+    /**
+     * Chooses the shots of a bot in one match
+     */
+    interface Player {
+        /**
+         * Chooses the next shot from where the ball lies
+         *
+         * @return The initial velocity of the shot
+         */
+        Vector3 nextShot();
+
+        /**
+         * Gets the number of shots simulated to choose the shots so far
+         *
+         * @return The number of simulations
+         */
+        int getSimulations();
+    }
+
+    private static class AIPlayer implements Player {
+        final GolfAI golfAI;
+        private int simulations;
+
+        AIPlayer(GolfAI golfAI, ShotOptimizer optimizer) {
+            this.golfAI = golfAI;
+            golfAI.setOptimizer(optimizer);
+        }
+
+        @Override
+        public Vector3 nextShot() {
+            ShotSearchResult result = golfAI.findBestShot(0);
+            simulations += result.getSimulations();
+            return result.getVelocity();
+        }
+
+        @Override
+        public int getSimulations() {
+            return simulations;
+        }
+    }
+
+    private static class AStarPlayer extends AIPlayer {
+        private final Queue<Vector3> waypoints = new LinkedList<>();
+        private final GolfBall ball;
+        private final Course course;
+        private boolean aimingAtHole;
+
+        AStarPlayer(GolfAI golfAI, ShotOptimizer optimizer, GolfBall ball, Course course) {
+            super(golfAI, optimizer);
+            this.ball = ball;
+            this.course = course;
+            if (!course.hasMaze()) {
+                return; // without walls there is no path to follow
+            }
+            // the path is segmented as GameControl.triggerAStarShot does, into waypoints in the layout's row and
+            // column order, which is the order GolfAI.updateTarget takes them in
+            List<Node> path = new AStarMazeSolver(new Vector3(ball.getPosition()),
+                    new Vector3(course.getTargetX(), 0, course.getTargetZ())).findBestPath();
+            for (Node node : new PathSegmenter(path, 6).segmentPath()) {
+                waypoints.add(new Vector3(node.x, 0, node.y));
+            }
+        }
+
+        @Override
+        public Vector3 nextShot() {
+            Vector3 position = ball.getPosition();
+            float radius = course.getTargetRadius();
+            while (!waypoints.isEmpty()) {
+                Vector3 waypoint = waypoints.poll();
+                // a waypoint the ball already lies on, such as the first one, costs no shot
+                float offsetX = position.x - waypoint.z;
+                float offsetZ = position.z - waypoint.x;
+                if (offsetX * offsetX + offsetZ * offsetZ > radius * radius) {
+                    golfAI.updateTarget(waypoint);
+                    golfAI.reset(); // as the game does for a new target
+                    return super.nextShot();
+                }
+            }
+            if (!aimingAtHole) {
+                golfAI.updateTarget(new Vector3(course.getTargetZ(), 0, course.getTargetX()));
+                golfAI.reset();
+                aimingAtHole = true;
+            }
+            return super.nextShot();
+        }
+    }
+}
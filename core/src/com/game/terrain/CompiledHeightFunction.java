@@ -0,0 +1,224 @@
+package com.game.terrain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * A height function h(x,y) that is parsed once into an expression tree and then
+ * evaluated directly with x and y bound as variables. When possible the tree is
+ * turned into a generated class by {@link HeightFunctionClassGenerator}; otherwise
+ * the tree itself is interpreted. The partial derivatives are derived
+ * symbolically, so slopes are exact and the height and both slopes can be
+ * computed together in one pass. Compiled functions are immutable, so one
+ * instance can be shared by the physics engine, the game rules and the terrain
+ * builder
+ */
+public final class CompiledHeightFunction implements DoubleBinaryOperator, TerrainSurface {
+    private static final int CACHE_SIZE = 16; // functions kept compiled, the least recently used one is dropped
+    // dropped functions, with their generated classes, are unloaded once nothing else uses them
+    private static final Map<String, CompiledHeightFunction> cache =
+            new LinkedHashMap<String, CompiledHeightFunction>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledHeightFunction> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+    private static final double DIFFERENCE_STEP = 0.0000001; // step of the central difference fallback
+
+    private final String source;
+    private final HeightExpression expression;
+    private final DoubleBinaryOperator evaluator;
+    private final HeightExpression derivativeX;
+    private final HeightExpression derivativeY;
+    private final DoubleBinaryOperator derivativeXEvaluator;
+    private final DoubleBinaryOperator derivativeYEvaluator;
+    private final HeightGradientFunction gradientEvaluator;
+
+    /**
+     * Constructs a CompiledHeightFunction by parsing the given height function
+     *
+     * @param heightFunction The mathematical expression representing the height
+     */
+    private CompiledHeightFunction(String heightFunction) {
+        this.source = heightFunction;
+        this.expression = HeightExpressionParser.parse(heightFunction);
+        this.evaluator = evaluatorFor(expression);
+
+        this.derivativeX = expression.derivative(true);
+        this.derivativeY = expression.derivative(false);
+        this.derivativeXEvaluator = evaluatorFor(derivativeX);
+        this.derivativeYEvaluator = evaluatorFor(derivativeY);
+
+        HeightGradientTape tape = new HeightGradientTape(expression, derivativeX, derivativeY);
+        HeightGradientFunction generatedGradient = HeightFunctionClassGenerator.generateGradient(tape);
+        this.gradientEvaluator = generatedGradient != null ? generatedGradient : tape;
+    }
+
+    /**
+     * Gets the fastest available evaluator of an expression
+     *
+     * @param expression The expression to evaluate
+     * @return A generated class, or the expression tree itself if no class can be
+     *         generated or the expression is constant
+     */
+    private static DoubleBinaryOperator evaluatorFor(HeightExpression expression) {
+        DoubleBinaryOperator generated = expression.isConstant() ? null
+                : HeightFunctionClassGenerator.generate(expression);
+        return generated != null ? generated : expression;
+    }
+
+    /**
+     * Returns the compiled form of a height function, parsing it only the first
+     * time it is requested. The most recently used functions are kept compiled
+     *
+     * @param heightFunction The mathematical expression representing the height
+     * @return The compiled height function
+     * @throws IllegalArgumentException If the expression is not valid
+     */
+    public static CompiledHeightFunction compile(String heightFunction) {
+        if (heightFunction == null) {
+            throw new IllegalArgumentException("Height function cannot be null");
+        }
+        // compiled under the lock, so two threads asking for the same function compile it once
+        synchronized (cache) {
+            return cache.computeIfAbsent(heightFunction, CompiledHeightFunction::new);
+        }
+    }
+
+    /**
+     * Calculates the height at the given coordinates
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return The height at (x, y)
+     */
+    @Override
+    public double getHeight(double x, double y) {
+        return evaluator.applyAsDouble(x, y);
+    }
+
+    @Override
+    public double applyAsDouble(double x, double y) {
+        return evaluator.applyAsDouble(x, y);
+    }
+
+    /**
+     * Calculates the slope of the terrain in the x direction
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return The partial derivative dh/dx at (x, y)
+     */
+    @Override
+    public double getSlopeX(double x, double y) {
+        double slope = exactSlope(derivativeXEvaluator, x, y);
+        if (!Double.isFinite(slope)) {
+            slope = (getHeight(x + DIFFERENCE_STEP, y) - getHeight(x - DIFFERENCE_STEP, y)) / (2 * DIFFERENCE_STEP);
+        }
+        return slope;
+    }
+
+    /**
+     * Evaluates a symbolic derivative. The derivative of u^v takes the
+     * logarithm of u, which is rejected for a negative base even where the
+     * power itself is defined, as for x ^ y at x = -1.5 and y = 2; the exact
+     * slope is then undefined and NaN is returned
+     *
+     * @param derivative The evaluator of the derivative
+     * @param x          The x coordinate
+     * @param y          The y coordinate
+     * @return The slope, or NaN if the derivative is undefined
+     */
+    private static double exactSlope(DoubleBinaryOperator derivative, double x, double y) {
+        try {
+            return derivative.applyAsDouble(x, y);
+        } catch (IllegalArgumentException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Calculates the slope of the terrain in the y direction
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return The partial derivative dh/dy at (x, y)
+     */
+    @Override
+    public double getSlopeY(double x, double y) {
+        double slope = exactSlope(derivativeYEvaluator, x, y);
+        if (!Double.isFinite(slope)) {
+            slope = (getHeight(x, y + DIFFERENCE_STEP) - getHeight(x, y - DIFFERENCE_STEP)) / (2 * DIFFERENCE_STEP);
+        }
+        return slope;
+    }
+
+    /**
+     * Calculates the height and both slopes in one pass, sharing the work between
+     * them. Where the exact slope is undefined (for example sqrt or abs at zero,
+     * or a power with a negative base) it is approximated by central differences
+     * instead
+     *
+     * @param x      The x coordinate
+     * @param y      The y coordinate
+     * @param result Array of at least three elements receiving h, dh/dx and dh/dy
+     */
+    @Override
+    public void heightAndGradient(double x, double y, double[] result) {
+        try {
+            gradientEvaluator.heightAndGradient(x, y, result);
+        } catch (IllegalArgumentException e) {
+            // a logarithm in the derivatives only, see exactSlope, the height itself may still be defined
+            result[0] = getHeight(x, y);
+            result[1] = Double.NaN;
+        }
+        if (!Double.isFinite(result[1]) || !Double.isFinite(result[2])) {
+            result[1] = getSlopeX(x, y);
+            result[2] = getSlopeY(x, y);
+        }
+    }
+
+    /**
+     * Gets the symbolic partial derivative of the height function
+     *
+     * @param withRespectToX True for dh/dx, false for dh/dy
+     * @return The derivative expression
+     */
+    public HeightExpression getDerivative(boolean withRespectToX) {
+        return withRespectToX ? derivativeX : derivativeY;
+    }
+
+    /**
+     * Gets the height function this was compiled from
+     *
+     * @return The source expression
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Checks if the height is evaluated by a generated class rather than by
+     * interpreting the expression tree
+     *
+     * @return True if a generated class is used, false otherwise
+     */
+    public boolean isGenerated() {
+        return evaluator != expression;
+    }
+
+    /**
+     * Gets the parsed expression tree, which can always be evaluated directly
+     *
+     * @return The root of the expression tree
+     */
+    public HeightExpression getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+}
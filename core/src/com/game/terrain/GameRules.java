@@ -10,12 +10,15 @@ import com.game.golfball.GolfBall;
 public class GameRules {
     private Target target;
     private GolfBall ball;
-    private String functionTerrain;
+    private CompiledHeightFunction functionTerrain;
     private float borderXMin;
     private float borderXMax;
     private float borderZMin;
     private float borderZMax;
     private boolean gameOver;
+    private boolean announceEvents = true;
+    private int waterCounter;
+    private int outOfBorderCounter;
     public int shotCounter;
 
     /**
@@ -27,14 +30,29 @@ public class GameRules {
      * @param terrain         the terrain object
      */
     public GameRules(Target target, GolfBall ball, String functionTerrain, TerrainV2 terrain) {
+        this(target, ball, functionTerrain, terrain.getWidth(), terrain.getDepth(), terrain.getScale());
+    }
+
+    /**
+     * Constructor for GameRules on a terrain of the given size, without the
+     * terrain object, so the rules can be checked in a headless simulation
+     * 
+     * @param target          the target object
+     * @param ball            the golf ball object
+     * @param functionTerrain the function describing the terrain
+     * @param width           the width of the terrain
+     * @param depth           the depth of the terrain
+     * @param scale           the scale of the terrain
+     */
+    public GameRules(Target target, GolfBall ball, String functionTerrain, int width, int depth, float scale) {
         this.target = target;
         this.ball = ball;
-        this.functionTerrain = functionTerrain;
+        this.functionTerrain = CompiledHeightFunction.compile(functionTerrain);
 
-        this.borderXMin = -terrain.getWidth() * terrain.getScale() / 2;
-        this.borderXMax = terrain.getWidth() * terrain.getScale() / 2;
-        this.borderZMin = -terrain.getDepth() * terrain.getScale() / 2;
-        this.borderZMax = terrain.getDepth() * terrain.getScale() / 2;
+        this.borderXMin = -width * scale / 2;
+        this.borderXMax = width * scale / 2;
+        this.borderZMin = -depth * scale / 2;
+        this.borderZMax = depth * scale / 2;
         this.shotCounter = 0;
         this.gameOver = false;
     }
@@ -58,7 +76,7 @@ public class GameRules {
     public boolean fellInWater() {
         double positionx = ball.getPosition().x;
         double positiony = ball.getPosition().z;
-        double height = GetHeight.getHeight(functionTerrain, positionx, positiony);
+        double height = functionTerrain.getHeight(positionx, positiony);
         return height < 0;
     }
 
@@ -77,7 +95,7 @@ public class GameRules {
      * Stops the movement of the ball by setting its velocity to zero.
      */
     private void stopBallMovement() {
-        ball.setVelocity(new Vector3(0, 0, 0));
+        ball.setVelocity(Vector3.Zero);
     }
 
     /**
@@ -104,6 +122,33 @@ public class GameRules {
         return shotCounter;
     }
 
+    /**
+     * Gets the number of times the ball fell into water and was put back
+     * 
+     * @return the number of water hazards
+     */
+    public int getWaterCounter() {
+        return waterCounter;
+    }
+
+    /**
+     * Gets the number of times the ball went out of bounds and was put back
+     * 
+     * @return the number of times out of bounds
+     */
+    public int getOutOfBorderCounter() {
+        return outOfBorderCounter;
+    }
+
+    /**
+     * Sets whether the game events are printed, which batch simulations turn off
+     * 
+     * @param announceEvents true to print the events, false to stay silent
+     */
+    public void setAnnounceEvents(boolean announceEvents) {
+        this.announceEvents = announceEvents;
+    }
+
     /**
      * Checks the game status and determines if the game is over
      * if the ball fell into water, or if it went out of bounds
@@ -112,14 +157,22 @@ public class GameRules {
         if (!gameOver) {
             if (isGameOver()) {
                 gameOver = true;
-                System.out.println("Game Over! Ball has reached the target.");
-                System.out.println("Number of shots taken: " + shotCounter);
+                if (announceEvents) {
+                    System.out.println("Game Over! Ball has reached the target.");
+                    System.out.println("Number of shots taken: " + shotCounter);
+                }
                 stopBallMovement();
             } else if (fellInWater()) {
-                System.out.println("Game Over! Ball fell into water.");
+                waterCounter++;
+                if (announceEvents) {
+                    System.out.println("Game Over! Ball fell into water.");
+                }
                 revertBallPosition();
             } else if (outOfBorder()) {
-                System.out.println("Game Over! Ball went out of bounds.");
+                outOfBorderCounter++;
+                if (announceEvents) {
+                    System.out.println("Game Over! Ball went out of bounds.");
+                }
                 revertBallPosition();
             }
         }
@@ -8,7 +8,8 @@ public class GetHeight {
 
     /**
      * Calculates the height for a given mathematical expression, x, and y
-     * coordinates.
+     * coordinates. The expression is parsed only once and then evaluated through
+     * its {@link CompiledHeightFunction}.
      *
      * @param heightFunction The mathematical expression representing the height.
      * @param x              The x coordinate.
@@ -16,6 +17,19 @@ public class GetHeight {
      * @return The height calculated for the given coordinates and expression.
      */
     public static double getHeight(String heightFunction, double x, double y) {
+        return CompiledHeightFunction.compile(heightFunction).getHeight(x, y);
+    }
+
+    /**
+     * Calculates the height by substituting the coordinates into the expression
+     * and evaluating it as a string, without any caching.
+     *
+     * @param heightFunction The mathematical expression representing the height.
+     * @param x              The x coordinate.
+     * @param y              The y coordinate.
+     * @return The height calculated for the given coordinates and expression.
+     */
+    public static double getHeightFromString(String heightFunction, double x, double y) {
         String replacedHeightFunction = replaceVariables(heightFunction, x, y);
         List<String> rpn = strToRPN(replacedHeightFunction);
         return rpnToDouble(rpn);
@@ -0,0 +1,365 @@
+package com.game.terrain;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * A node of a parsed height function h(x,y). Trees are built once by
+ * {@link HeightExpressionParser} and can then be evaluated any number of times
+ * without parsing strings or allocating objects. Trees can also be
+ * differentiated symbolically to get the exact slopes of the terrain
+ */
+public abstract class HeightExpression implements DoubleBinaryOperator {
+    static final HeightExpression ZERO = new Constant(0);
+    static final HeightExpression ONE = new Constant(1);
+
+    /**
+     * Evaluates the expression at the given coordinates
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return The value of the expression at (x, y)
+     */
+    public abstract double evaluate(double x, double y);
+
+    /**
+     * Calculates the partial derivative of the expression
+     *
+     * @param withRespectToX True to differentiate with respect to x, false for y
+     * @return The simplified derivative expression
+     */
+    public abstract HeightExpression derivative(boolean withRespectToX);
+
+    @Override
+    public final double applyAsDouble(double x, double y) {
+        return evaluate(x, y);
+    }
+
+    /**
+     * Checks if the expression does not depend on x or y
+     *
+     * @return True if the expression is a constant, false otherwise
+     */
+    public boolean isConstant() {
+        return false;
+    }
+
+    /**
+     * Calculates the natural logarithm, rejecting non-positive values the same
+     * way the string evaluator in {@link GetHeight} does
+     *
+     * @param value The value to take the logarithm of
+     * @return The natural logarithm of the value
+     */
+    public static double ln(double value) {
+        if (value <= 0)
+            throw new IllegalArgumentException("Logarithm of non-positive number");
+        return Math.log(value);
+    }
+
+    /**
+     * Calculates the base 10 logarithm, rejecting non-positive values
+     *
+     * @param value The value to take the logarithm of
+     * @return The base 10 logarithm of the value
+     */
+    public static double log(double value) {
+        if (value <= 0)
+            throw new IllegalArgumentException("Logarithm of non-positive number");
+        return Math.log10(value);
+    }
+
+    /**
+     * Replaces a node whose operands are all constant by its value
+     *
+     * @param node The node to fold
+     * @return The folded constant, or the node itself if it depends on x or y
+     */
+    static HeightExpression fold(HeightExpression node) {
+        boolean constant;
+        if (node instanceof Unary) {
+            constant = ((Unary) node).operand.isConstant();
+        } else if (node instanceof Binary) {
+            constant = ((Binary) node).left.isConstant() && ((Binary) node).right.isConstant();
+        } else {
+            return node;
+        }
+        if (!constant) {
+            return node;
+        }
+        try {
+            return new Constant(node.evaluate(0, 0));
+        } catch (IllegalArgumentException e) {
+            // keep the node so the error is reported when the height is evaluated
+            return node;
+        }
+    }
+
+    private static boolean isValue(HeightExpression node, double value) {
+        return node instanceof Constant && ((Constant) node).value == value;
+    }
+
+    static HeightExpression negate(HeightExpression operand) {
+        if (operand instanceof Unary && ((Unary) operand).function == Unary.NEG) {
+            return ((Unary) operand).operand;
+        }
+        return fold(new Unary(Unary.NEG, operand));
+    }
+
+    static HeightExpression function(int function, HeightExpression operand) {
+        return fold(new Unary(function, operand));
+    }
+
+    static HeightExpression add(HeightExpression left, HeightExpression right) {
+        if (isValue(left, 0)) return right;
+        if (isValue(right, 0)) return left;
+        return fold(new Binary('+', left, right));
+    }
+
+    static HeightExpression subtract(HeightExpression left, HeightExpression right) {
+        if (isValue(right, 0)) return left;
+        if (isValue(left, 0)) return negate(right);
+        return fold(new Binary('-', left, right));
+    }
+
+    static HeightExpression multiply(HeightExpression left, HeightExpression right) {
+        if (isValue(left, 0) || isValue(right, 0)) return ZERO;
+        if (isValue(left, 1)) return right;
+        if (isValue(right, 1)) return left;
+        if (isValue(left, -1)) return negate(right);
+        if (isValue(right, -1)) return negate(left);
+        return fold(new Binary('*', left, right));
+    }
+
+    static HeightExpression divide(HeightExpression left, HeightExpression right) {
+        if (isValue(left, 0)) return ZERO;
+        if (isValue(right, 1)) return left;
+        return fold(new Binary('/', left, right));
+    }
+
+    static HeightExpression power(HeightExpression base, HeightExpression exponent) {
+        if (isValue(exponent, 0)) return ONE;
+        if (isValue(exponent, 1)) return base;
+        return fold(new Binary('^', base, exponent));
+    }
+
+    /**
+     * A constant number
+     */
+    static final class Constant extends HeightExpression {
+        final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double evaluate(double x, double y) {
+            return value;
+        }
+
+        @Override
+        public HeightExpression derivative(boolean withRespectToX) {
+            return ZERO;
+        }
+
+        @Override
+        public boolean isConstant() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return Double.toString(value);
+        }
+    }
+
+    /**
+     * The x or the y coordinate
+     */
+    static final class Variable extends HeightExpression {
+        final boolean isX;
+
+        Variable(boolean isX) {
+            this.isX = isX;
+        }
+
+        @Override
+        public double evaluate(double x, double y) {
+            return isX ? x : y;
+        }
+
+        @Override
+        public HeightExpression derivative(boolean withRespectToX) {
+            return isX == withRespectToX ? ONE : ZERO;
+        }
+
+        @Override
+        public String toString() {
+            return isX ? "x" : "y";
+        }
+    }
+
+    /**
+     * A function or a sign change applied to a single operand. The sign function
+     * only appears in derivatives of abs
+     */
+    static final class Unary extends HeightExpression {
+        static final int NEG = 0, SIN = 1, COS = 2, SQRT = 3, ABS = 4, LN = 5, LOG = 6, SIGNUM = 7;
+        static final String[] NAMES = {"neg", "sin", "cos", "sqrt", "abs", "ln", "log", "signum"};
+
+        final int function;
+        final HeightExpression operand;
+
+        Unary(int function, HeightExpression operand) {
+            this.function = function;
+            this.operand = operand;
+        }
+
+        @Override
+        public double evaluate(double x, double y) {
+            return apply(function, operand.evaluate(x, y));
+        }
+
+        /**
+         * Applies a unary function to a value
+         *
+         * @param function The function code
+         * @param value    The operand
+         * @return The result of the function
+         */
+        static double apply(int function, double value) {
+            switch (function) {
+                case NEG:
+                    return -value;
+                case SIN:
+                    return Math.sin(value);
+                case COS:
+                    return Math.cos(value);
+                case SQRT:
+                    return Math.sqrt(value);
+                case ABS:
+                    return Math.abs(value);
+                case LN:
+                    return ln(value);
+                case LOG:
+                    return log(value);
+                case SIGNUM:
+                    return Math.signum(value);
+                default:
+                    throw new IllegalStateException("Unknown function " + function);
+            }
+        }
+
+        @Override
+        public HeightExpression derivative(boolean withRespectToX) {
+            HeightExpression inner = operand.derivative(withRespectToX);
+            if (isValue(inner, 0)) {
+                return ZERO;
+            }
+            switch (function) {
+                case NEG:
+                    return negate(inner);
+                case SIN:
+                    return multiply(function(COS, operand), inner);
+                case COS:
+                    return negate(multiply(function(SIN, operand), inner));
+                case SQRT:
+                    return divide(inner, multiply(new Constant(2), this));
+                case ABS:
+                    return multiply(function(SIGNUM, operand), inner);
+                case LN:
+                    return divide(inner, operand);
+                case LOG:
+                    return divide(inner, multiply(operand, new Constant(Math.log(10))));
+                default:
+                    return ZERO;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return NAMES[function] + "(" + operand + ")";
+        }
+    }
+
+    /**
+     * One of the binary operators + - * / ^
+     */
+    static final class Binary extends HeightExpression {
+        final char operator;
+        final HeightExpression left;
+        final HeightExpression right;
+
+        Binary(char operator, HeightExpression left, HeightExpression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double evaluate(double x, double y) {
+            return apply(operator, left.evaluate(x, y), right.evaluate(x, y));
+        }
+
+        /**
+         * Applies a binary operator to two values
+         *
+         * @param operator The operator
+         * @param a        The left operand
+         * @param b        The right operand
+         * @return The result of the operation
+         */
+        static double apply(char operator, double a, double b) {
+            switch (operator) {
+                case '+':
+                    return a + b;
+                case '-':
+                    return a - b;
+                case '*':
+                    return a * b;
+                case '/':
+                    return a / b;
+                case '^':
+                    return Math.pow(a, b);
+                default:
+                    throw new IllegalStateException("Unknown operator " + operator);
+            }
+        }
+
+        @Override
+        public HeightExpression derivative(boolean withRespectToX) {
+            HeightExpression dLeft = left.derivative(withRespectToX);
+            HeightExpression dRight = right.derivative(withRespectToX);
+            switch (operator) {
+                case '+':
+                    return add(dLeft, dRight);
+                case '-':
+                    return subtract(dLeft, dRight);
+                case '*':
+                    return add(multiply(dLeft, right), multiply(left, dRight));
+                case '/':
+                    if (isValue(dRight, 0)) {
+                        return divide(dLeft, right);
+                    }
+                    return divide(subtract(multiply(dLeft, right), multiply(left, dRight)), multiply(right, right));
+                default:
+                    if (isValue(dRight, 0)) {
+                        // power rule: (u^c)' = c * u^(c-1) * u'
+                        return multiply(multiply(right, power(left, subtract(right, ONE))), dLeft);
+                    }
+                    if (isValue(dLeft, 0)) {
+                        // exponential rule: (c^v)' = c^v * ln(c) * v'
+                        return multiply(multiply(this, function(Unary.LN, left)), dRight);
+                    }
+                    // (u^v)' = u^v * (v' * ln(u) + v * u' / u)
+                    return multiply(this, add(multiply(dRight, function(Unary.LN, left)),
+                            divide(multiply(right, dLeft), left)));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " " + operator + " " + right + ")";
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.game.terrain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * Parses height functions written in the settings screen syntax (tokens
+ * separated by spaces) into a {@link HeightExpression} tree. Operator priorities
+ * are the same as in {@link GetHeight#strToRPN(String)}, so a parsed function
+ * gives the same heights as the string evaluator
+ */
+public class HeightExpressionParser {
+
+    /**
+     * Parses a height function into an expression tree
+     *
+     * @param heightFunction The mathematical expression representing the height
+     * @return The root of the expression tree
+     * @throws IllegalArgumentException If the expression is not valid
+     */
+    public static HeightExpression parse(String heightFunction) {
+        if (heightFunction == null || heightFunction.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty height function");
+        }
+        return rpnToTree(toRPN(heightFunction));
+    }
+
+    /**
+     * Converts the expression to Reverse Polish Notation, keeping variables and
+     * constants as operands instead of substituting their values first
+     *
+     * @param heightFunction The mathematical expression
+     * @return The expression in RPN
+     */
+    private static List<String> toRPN(String heightFunction) {
+        String[] tokens = heightFunction.trim().split("\\s+");
+        List<String> rpn = new ArrayList<>();
+        Stack<String> operators = new Stack<>();
+
+        for (String token : tokens) {
+            if (isOperand(token)) {
+                rpn.add(token);
+            } else if (token.equals("(")) {
+                operators.push(token);
+            } else if (token.equals(")")) {
+                while (!operators.isEmpty() && !operators.peek().equals("(")) {
+                    rpn.add(operators.pop());
+                }
+                if (!operators.isEmpty()) {
+                    operators.pop();
+                }
+            } else if (priority(token) > 0) {
+                while (!operators.isEmpty() && priority(operators.peek()) >= priority(token)) {
+                    rpn.add(operators.pop());
+                }
+                operators.push(token);
+            } else {
+                throw new IllegalArgumentException("Unknown token in height function: " + token);
+            }
+        }
+        while (!operators.isEmpty()) {
+            rpn.add(operators.pop());
+        }
+        return rpn;
+    }
+
+    /**
+     * Builds the expression tree from an expression in RPN, folding operations on
+     * constants into a single constant
+     *
+     * @param rpn The expression in RPN
+     * @return The root of the expression tree
+     */
+    private static HeightExpression rpnToTree(List<String> rpn) {
+        Stack<HeightExpression> stack = new Stack<>();
+
+        for (String token : rpn) {
+            int function = functionIndex(token);
+            if (function >= 0) {
+                if (stack.isEmpty())
+                    throw new IllegalArgumentException("Insufficient operands for " + token);
+                stack.push(HeightExpression.function(function, stack.pop()));
+            } else if (token.length() == 1 && "+-*/^".indexOf(token.charAt(0)) >= 0) {
+                if (stack.size() < 2)
+                    throw new IllegalArgumentException("Insufficient operands for " + token);
+                HeightExpression right = stack.pop();
+                HeightExpression left = stack.pop();
+                stack.push(HeightExpression.fold(new HeightExpression.Binary(token.charAt(0), left, right)));
+            } else if (token.equals("(")) {
+                throw new IllegalArgumentException("Unbalanced parentheses in height function");
+            } else {
+                stack.push(operand(token));
+            }
+        }
+        if (stack.size() != 1) {
+            throw new IllegalArgumentException("Invalid RPN expression");
+        }
+        return stack.pop();
+    }
+
+    /**
+     * Creates the tree node for a number, a variable or a named constant. A
+     * leading minus sign negates the operand, as in "-x"
+     *
+     * @param token The operand token
+     * @return The node representing the operand
+     */
+    private static HeightExpression operand(String token) {
+        if (isDouble(token)) {
+            return new HeightExpression.Constant(Double.parseDouble(token));
+        }
+        if (token.startsWith("-")) {
+            return HeightExpression.function(HeightExpression.Unary.NEG, operand(token.substring(1)));
+        }
+        switch (token) {
+            case "x":
+                return new HeightExpression.Variable(true);
+            case "y":
+                return new HeightExpression.Variable(false);
+            case "pi":
+                return new HeightExpression.Constant(Math.PI);
+            case "e":
+            case "E":
+                return new HeightExpression.Constant(Math.E);
+            case "g":
+                return new HeightExpression.Constant(9.81);
+            default:
+                throw new IllegalArgumentException("Unknown token in height function: " + token);
+        }
+    }
+
+    /**
+     * Checks if a token is an operand (a number, a variable or a named constant)
+     *
+     * @param token The token to check
+     * @return True if the token is an operand, false otherwise
+     */
+    private static boolean isOperand(String token) {
+        if (isDouble(token)) {
+            return true;
+        }
+        String name = token.startsWith("-") ? token.substring(1) : token;
+        switch (name) {
+            case "x":
+            case "y":
+            case "pi":
+            case "e":
+            case "E":
+            case "g":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Determines the priority of an operator, as in {@link GetHeight}
+     *
+     * @param operator The operator
+     * @return The priority value
+     */
+    private static int priority(String operator) {
+        if (functionIndex(operator) >= 0) {
+            return 4;
+        }
+        switch (operator) {
+            case "^":
+                return 3;
+            case "*":
+            case "/":
+                return 2;
+            case "+":
+            case "-":
+                return 1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Finds the function code of a function token
+     *
+     * @param token The token
+     * @return The function code, or -1 if the token is not a function
+     */
+    private static int functionIndex(String token) {
+        // the sign change and the sign function are never written as tokens
+        for (int i = HeightExpression.Unary.SIN; i <= HeightExpression.Unary.LOG; i++) {
+            if (HeightExpression.Unary.NAMES[i].equals(token)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a string represents a double value
+     *
+     * @param text The string to check
+     * @return True if the string represents a double value, false otherwise
+     */
+    private static boolean isDouble(String text) {
+        try {
+            Double.parseDouble(text);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
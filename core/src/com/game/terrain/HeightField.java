@@ -0,0 +1,276 @@
+package com.game.terrain;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * The terrain sampled on a regular grid, for physics queries that should not
+ * evaluate the height function every time. The height, both slopes and the
+ * cross derivative d2h/dxdy are stored for every grid node, and queries are
+ * answered with bicubic Hermite interpolation, which matches the stored values
+ * and slopes exactly at the nodes and is smooth in between.
+ *
+ * Error bound: for a grid spacing d, the interpolated height differs from the
+ * height function by at most about d^4 / 384 * (Mx + My) and the slopes by at
+ * most about 0.008 * d^3 * (Mx + My), where Mx and My are the largest values of
+ * the fourth derivatives d4h/dx4 and d4h/dy4 over the grid, plus the rounding
+ * of the stored floats (a relative error of about 6e-8, which divided by the
+ * spacing also limits the slope accuracy). Halving the spacing divides the
+ * height error by 16 and the slope error by 8, at four times the memory (16
+ * bytes per node). The bound only holds where the terrain is smooth: in cells
+ * crossed by a kink, such as the zero of abs(w) or sqrt(w ^ 2), the slope error
+ * is as large as the jump of the slope and the height error shrinks only
+ * linearly with the spacing. {@link #measureMaxError(int, long)} measures the
+ * actual error of a field. Points outside the grid are passed on to the height
+ * function
+ */
+public class HeightField implements TerrainSurface {
+    private static final double CROSS_DERIVATIVE_STEP = 0.0001;
+    // scratch array of the single slope queries, one per thread as the field is shared between threads
+    private static final ThreadLocal<double[]> SLOPE_SURFACE = ThreadLocal.withInitial(() -> new double[3]);
+
+    private final TerrainSurface source;
+    private final double minX;
+    private final double minY;
+    private final double spacing;
+    private final int columns; // number of cells along x
+    private final int rows; // number of cells along y
+    private final int stride; // number of nodes in a row
+
+    private final float[] heights;
+    private final float[] slopesX;
+    private final float[] slopesY;
+    private final float[] crossDerivatives;
+
+    /**
+     * Constructs a HeightField by sampling the source terrain on a grid covering
+     * the given rectangle. Rows of the grid are sampled in parallel
+     *
+     * @param source  The terrain to sample, which must be safe to use from
+     *                several threads
+     * @param minX    The smallest x coordinate of the grid
+     * @param minY    The smallest y coordinate of the grid
+     * @param sizeX   The extent of the grid along x
+     * @param sizeY   The extent of the grid along y
+     * @param spacing The distance between neighbouring grid nodes
+     */
+    public HeightField(TerrainSurface source, double minX, double minY, double sizeX, double sizeY, double spacing) {
+        if (spacing <= 0 || sizeX <= 0 || sizeY <= 0) {
+            throw new IllegalArgumentException("Height field size and spacing must be positive");
+        }
+        this.source = source;
+        this.minX = minX;
+        this.minY = minY;
+        this.spacing = spacing;
+        this.columns = Math.max(1, (int) Math.ceil(sizeX / spacing));
+        this.rows = Math.max(1, (int) Math.ceil(sizeY / spacing));
+        this.stride = columns + 1;
+
+        int nodes = stride * (rows + 1);
+        heights = new float[nodes];
+        slopesX = new float[nodes];
+        slopesY = new float[nodes];
+        crossDerivatives = new float[nodes];
+
+        IntStream.rangeClosed(0, rows).parallel().forEach(this::sampleRow);
+    }
+
+    /**
+     * Constructs a HeightField covering a terrain of the given size, centered on
+     * the origin like {@link TerrainV2}
+     *
+     * @param source  The terrain to sample
+     * @param width   The width of the terrain
+     * @param depth   The depth of the terrain
+     * @param scale   The scale of the terrain
+     * @param spacing The distance between neighbouring grid nodes
+     * @return The sampled height field
+     */
+    public static HeightField forTerrain(TerrainSurface source, int width, int depth, float scale, double spacing) {
+        double sizeX = width * scale;
+        double sizeY = depth * scale;
+        return new HeightField(source, -sizeX / 2, -sizeY / 2, sizeX, sizeY, spacing);
+    }
+
+    /**
+     * Samples the height, slopes and cross derivative of one row of grid nodes
+     *
+     * @param row The index of the row
+     */
+    private void sampleRow(int row) {
+        double[] sample = new double[3];
+        double[] above = new double[3];
+        double[] below = new double[3];
+        double y = minY + row * spacing;
+        for (int column = 0; column <= columns; column++) {
+            double x = minX + column * spacing;
+            int index = row * stride + column;
+            source.heightAndGradient(x, y, sample);
+            source.heightAndGradient(x, y + CROSS_DERIVATIVE_STEP, above);
+            source.heightAndGradient(x, y - CROSS_DERIVATIVE_STEP, below);
+            heights[index] = (float) sample[0];
+            slopesX[index] = (float) sample[1];
+            slopesY[index] = (float) sample[2];
+            crossDerivatives[index] = (float) ((above[1] - below[1]) / (2 * CROSS_DERIVATIVE_STEP));
+        }
+    }
+
+    @Override
+    public double getHeight(double x, double y) {
+        double gridX = (x - minX) / spacing;
+        double gridY = (y - minY) / spacing;
+        if (!isInside(gridX, gridY)) {
+            return source.getHeight(x, y);
+        }
+        int column = cell(gridX, columns);
+        int row = cell(gridY, rows);
+        double u = gridX - column;
+        double v = gridY - row;
+
+        double a0 = valueBasis(u), a1 = valueBasis(1 - u);
+        double b0 = slopeBasis(u) * spacing, b1 = -slopeBasis(1 - u) * spacing;
+        double c0 = valueBasis(v), c1 = valueBasis(1 - v);
+        double d0 = slopeBasis(v) * spacing, d1 = -slopeBasis(1 - v) * spacing;
+
+        int i00 = row * stride + column;
+        int i10 = i00 + 1;
+        int i01 = i00 + stride;
+        int i11 = i01 + 1;
+        return corner(i00, a0, b0, c0, d0) + corner(i10, a1, b1, c0, d0)
+                + corner(i01, a0, b0, c1, d1) + corner(i11, a1, b1, c1, d1);
+    }
+
+    @Override
+    public void heightAndGradient(double x, double y, double[] result) {
+        double gridX = (x - minX) / spacing;
+        double gridY = (y - minY) / spacing;
+        if (!isInside(gridX, gridY)) {
+            source.heightAndGradient(x, y, result);
+            return;
+        }
+        int column = cell(gridX, columns);
+        int row = cell(gridY, rows);
+        double u = gridX - column;
+        double v = gridY - row;
+
+        // Hermite basis functions in u and v (a, c) scaled slope bases (b, d) and their derivatives
+        double a0 = valueBasis(u), a1 = valueBasis(1 - u);
+        double b0 = slopeBasis(u) * spacing, b1 = -slopeBasis(1 - u) * spacing;
+        double da0 = valueBasisDerivative(u) / spacing, da1 = -valueBasisDerivative(1 - u) / spacing;
+        double db0 = slopeBasisDerivative(u), db1 = slopeBasisDerivative(1 - u);
+        double c0 = valueBasis(v), c1 = valueBasis(1 - v);
+        double d0 = slopeBasis(v) * spacing, d1 = -slopeBasis(1 - v) * spacing;
+        double dc0 = valueBasisDerivative(v) / spacing, dc1 = -valueBasisDerivative(1 - v) / spacing;
+        double dd0 = slopeBasisDerivative(v), dd1 = slopeBasisDerivative(1 - v);
+
+        int i00 = row * stride + column;
+        int i10 = i00 + 1;
+        int i01 = i00 + stride;
+        int i11 = i01 + 1;
+        result[0] = corner(i00, a0, b0, c0, d0) + corner(i10, a1, b1, c0, d0)
+                + corner(i01, a0, b0, c1, d1) + corner(i11, a1, b1, c1, d1);
+        result[1] = corner(i00, da0, db0, c0, d0) + corner(i10, da1, db1, c0, d0)
+                + corner(i01, da0, db0, c1, d1) + corner(i11, da1, db1, c1, d1);
+        result[2] = corner(i00, a0, b0, dc0, dd0) + corner(i10, a1, b1, dc0, dd0)
+                + corner(i01, a0, b0, dc1, dd1) + corner(i11, a1, b1, dc1, dd1);
+    }
+
+    @Override
+    public double getSlopeX(double x, double y) {
+        double[] result = SLOPE_SURFACE.get();
+        heightAndGradient(x, y, result);
+        return result[1];
+    }
+
+    @Override
+    public double getSlopeY(double x, double y) {
+        double[] result = SLOPE_SURFACE.get();
+        heightAndGradient(x, y, result);
+        return result[2];
+    }
+
+    /**
+     * Adds up the contribution of one grid node to the interpolated value
+     *
+     * @param index The index of the node
+     * @param a     Weight of the node along x
+     * @param b     Weight of the x slope along x
+     * @param c     Weight of the node along y
+     * @param d     Weight of the y slope along y
+     * @return The weighted sum of the node's height, slopes and cross derivative
+     */
+    private double corner(int index, double a, double b, double c, double d) {
+        return heights[index] * a * c + slopesX[index] * b * c + slopesY[index] * a * d
+                + crossDerivatives[index] * b * d;
+    }
+
+    // cubic Hermite basis for the value at t = 0 (use 1 - t for the value at t = 1)
+    private static double valueBasis(double t) {
+        return (2 * t - 3) * t * t + 1;
+    }
+
+    private static double valueBasisDerivative(double t) {
+        return (6 * t - 6) * t;
+    }
+
+    // cubic Hermite basis for the slope at t = 0 (mirrored and negated for t = 1)
+    private static double slopeBasis(double t) {
+        return ((t - 2) * t + 1) * t;
+    }
+
+    private static double slopeBasisDerivative(double t) {
+        return (3 * t - 4) * t + 1;
+    }
+
+    private boolean isInside(double gridX, double gridY) {
+        return gridX >= 0 && gridY >= 0 && gridX <= columns && gridY <= rows;
+    }
+
+    private static int cell(double gridCoordinate, int cells) {
+        return Math.min((int) gridCoordinate, cells - 1);
+    }
+
+    /**
+     * Measures the largest difference between the interpolated terrain and the
+     * source terrain at random points of the grid
+     *
+     * @param samples The number of random points
+     * @param seed    The seed of the random points
+     * @return The largest height error and the largest slope error
+     */
+    public double[] measureMaxError(int samples, long seed) {
+        Random random = new Random(seed);
+        double[] exact = new double[3];
+        double[] interpolated = new double[3];
+        double maxHeightError = 0;
+        double maxSlopeError = 0;
+        for (int i = 0; i < samples; i++) {
+            double x = minX + random.nextDouble() * columns * spacing;
+            double y = minY + random.nextDouble() * rows * spacing;
+            source.heightAndGradient(x, y, exact);
+            heightAndGradient(x, y, interpolated);
+            maxHeightError = Math.max(maxHeightError, Math.abs(exact[0] - interpolated[0]));
+            maxSlopeError = Math.max(maxSlopeError, Math.max(Math.abs(exact[1] - interpolated[1]),
+                    Math.abs(exact[2] - interpolated[2])));
+        }
+        return new double[] {maxHeightError, maxSlopeError};
+    }
+
+    /**
+     * Gets the distance between neighbouring grid nodes
+     *
+     * @return The grid spacing
+     */
+    public double getSpacing() {
+        return spacing;
+    }
+
+    /**
+     * Gets the number of grid nodes
+     *
+     * @return The number of nodes
+     */
+    public int getNodeCount() {
+        return heights.length;
+    }
+}
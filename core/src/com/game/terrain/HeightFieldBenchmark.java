@@ -0,0 +1,69 @@
+package com.game.terrain;
+
+/**
+ * Trades accuracy against throughput for the physics terrain: builds height
+ * fields of several grid spacings over the default 100x100 terrain (scale 0.9),
+ * and prints their build time, memory, measured maximum errors and the rate of
+ * height and slope queries next to the analytic function
+ */
+public class HeightFieldBenchmark {
+    private static final String DEFAULT_FUNCTION =
+            " sqrt ( ( sin ( 0.1 * x ) + cos ( 0.1 * y ) ) ^ 2 ) + 0.5 * sin ( 0.3 * x ) * cos ( 0.3 * y ) ";
+    private static final double[] SPACINGS = {1, 0.5, 0.25, 0.1};
+
+    /**
+     * Runs the benchmark on the default terrain function, or on the function given
+     * as the first argument
+     *
+     * @param args Optional height function
+     */
+    public static void main(String[] args) {
+        String heightFunction = args.length > 0 ? args[0] : DEFAULT_FUNCTION;
+        CompiledHeightFunction compiled = CompiledHeightFunction.compile(heightFunction);
+
+        System.out.println("Function: " + compiled);
+        System.out.println("Mode\tSpacing\tNodes\tBuild ms\tMemory KB\tMax height error\tMax slope error\tQueries per second");
+        System.out.printf("analytic\t-\t-\t-\t-\t0\t0\t%.0f%n", measure(compiled, 10_000_000));
+
+        for (double spacing : SPACINGS) {
+            long start = System.nanoTime();
+            HeightField field = HeightField.forTerrain(compiled, 100, 100, 0.9f, spacing);
+            double buildMillis = (System.nanoTime() - start) / 1e6;
+            double[] errors = field.measureMaxError(200_000, 42);
+            System.out.printf("grid\t%.2f\t%d\t%.1f\t%d\t%.3e\t%.3e\t%.0f%n", spacing, field.getNodeCount(),
+                    buildMillis, field.getNodeCount() * 16L / 1024, errors[0], errors[1],
+                    measure(field, 10_000_000));
+        }
+    }
+
+    /**
+     * Measures the rate of fused height and slope queries at points that do not
+     * fall on grid nodes, after a warm-up run of the same size
+     *
+     * @param surface The terrain to query
+     * @param queries The number of timed queries
+     * @return The number of queries per second
+     */
+    private static double measure(TerrainSurface surface, int queries) {
+        run(surface, queries);
+        long start = System.nanoTime();
+        double sum = run(surface, queries);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (Double.isNaN(sum)) {
+            System.out.println("NaN in query results");
+        }
+        return queries / seconds;
+    }
+
+    private static double run(TerrainSurface surface, int queries) {
+        double[] result = new double[3];
+        double sum = 0;
+        for (int i = 0; i < queries; i++) {
+            double x = (i % 1000) * 0.0897 - 44.9;
+            double y = ((i / 1000) % 1000) * 0.0893 - 44.9;
+            surface.heightAndGradient(x, y, result);
+            sum += result[0] + result[1] + result[2];
+        }
+        return sum;
+    }
+}
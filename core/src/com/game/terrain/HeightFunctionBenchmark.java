@@ -0,0 +1,101 @@
+package com.game.terrain;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Compares how many height evaluations per second the different evaluation
+ * paths manage: substituting into the string and parsing it on every call (the
+ * original GetHeight path), interpreting the parsed expression tree, and the
+ * generated class. Also compares computing the height and slopes with central
+ * differences (five height evaluations) against the fused symbolic gradient
+ */
+public class HeightFunctionBenchmark {
+    private static final String DEFAULT_FUNCTION =
+            " sqrt ( ( sin ( 0.1 * x ) + cos ( 0.1 * y ) ) ^ 2 ) + 0.5 * sin ( 0.3 * x ) * cos ( 0.3 * y ) ";
+
+    /**
+     * Runs the benchmark on the default terrain function, or on the function given
+     * as the first argument
+     *
+     * @param args Optional height function
+     */
+    public static void main(String[] args) {
+        String heightFunction = args.length > 0 ? args[0] : DEFAULT_FUNCTION;
+        CompiledHeightFunction compiled = CompiledHeightFunction.compile(heightFunction);
+
+        DoubleBinaryOperator stringPath = (x, y) -> GetHeight.getHeightFromString(heightFunction, x, y);
+        DoubleBinaryOperator interpreted = compiled.getExpression();
+
+        System.out.println("Function: " + compiled);
+        System.out.println("Generated class available: " + compiled.isGenerated());
+        System.out.println("Backend\tEvaluations per second\tMean height");
+
+        measure("string (GetHeight)", stringPath, 20_000);
+        measure("interpreted tree", interpreted, 5_000_000);
+        measure("generated class", compiled, 20_000_000);
+
+        System.out.println();
+        System.out.println("Gradient backend\tEvaluations per second\tMean |dh/dx| + |dh/dy|");
+        measureGradient("central differences", (x, y, result) -> {
+            double step = 0.0000001;
+            result[0] = compiled.getHeight(x, y);
+            result[1] = (compiled.getHeight(x + step, y) - compiled.getHeight(x - step, y)) / (2 * step);
+            result[2] = (compiled.getHeight(x, y + step) - compiled.getHeight(x, y - step)) / (2 * step);
+        }, 5_000_000);
+        measureGradient("fused symbolic", compiled, 20_000_000);
+    }
+
+    /**
+     * Measures the rate at which one backend computes the height and both slopes
+     *
+     * @param name        The name of the backend
+     * @param function    The backend to measure
+     * @param evaluations The number of timed evaluations
+     */
+    private static void measureGradient(String name, HeightGradientFunction function, int evaluations) {
+        runGradient(function, evaluations);
+        long start = System.nanoTime();
+        double sum = runGradient(function, evaluations);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s\t%.0f\t%.6f%n", name, evaluations / seconds, sum / evaluations);
+    }
+
+    private static double runGradient(HeightGradientFunction function, int evaluations) {
+        double[] result = new double[3];
+        double sum = 0;
+        for (int i = 0; i < evaluations; i++) {
+            double x = (i % 100) * 0.9 - 45;
+            double y = ((i / 100) % 100) * 0.9 - 45;
+            function.heightAndGradient(x, y, result);
+            sum += Math.abs(result[1]) + Math.abs(result[2]);
+        }
+        return sum;
+    }
+
+    /**
+     * Measures the evaluation rate of one backend over a 100x100 grid of points,
+     * after a warm-up run of the same size. The number of evaluations should be a
+     * multiple of the grid size so the mean heights of all backends agree
+     *
+     * @param name        The name of the backend
+     * @param function    The backend to measure
+     * @param evaluations The number of timed evaluations
+     */
+    private static void measure(String name, DoubleBinaryOperator function, int evaluations) {
+        run(function, evaluations);
+        long start = System.nanoTime();
+        double sum = run(function, evaluations);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s\t%.0f\t%.6f%n", name, evaluations / seconds, sum / evaluations);
+    }
+
+    private static double run(DoubleBinaryOperator function, int evaluations) {
+        double sum = 0;
+        for (int i = 0; i < evaluations; i++) {
+            double x = (i % 100) * 0.9 - 45;
+            double y = ((i / 100) % 100) * 0.9 - 45;
+            sum += function.applyAsDouble(x, y);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,426 @@
+package com.game.terrain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Turns a {@link HeightExpression} tree into a JVM class implementing
+ * {@link DoubleBinaryOperator}, so the JIT compiler sees a single straight-line
+ * method and can inline the Math calls instead of walking the tree node by node.
+ * A {@link HeightGradientTape} is turned into a {@link HeightGradientFunction} the
+ * same way, keeping every shared subexpression in a local variable. The class
+ * file is written directly, so no compiler or bytecode library is needed at
+ * runtime
+ */
+final class HeightFunctionClassGenerator {
+    private static final String PACKAGE = "com/game/terrain/generated/";
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    // opcodes used by the generated methods
+    private static final int ICONST_0 = 0x03, DCONST_0 = 0x0e, DCONST_1 = 0x0f, LDC2_W = 0x14;
+    private static final int DLOAD = 0x18, ALOAD = 0x19, DLOAD_1 = 0x27, DLOAD_3 = 0x29, ALOAD_0 = 0x2a;
+    private static final int DSTORE = 0x39, DASTORE = 0x52, WIDE = 0xc4;
+    private static final int DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77;
+    private static final int RETURN = 0xb1, DRETURN = 0xaf, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+    // local variable slots of heightAndGradient: this, x, y, the result array, then the tape values
+    private static final int RESULT_LOCAL = 5, FIRST_VALUE_LOCAL = 6;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+    private HeightFunctionClassGenerator() {
+    }
+
+    /**
+     * Generates and loads a class evaluating the given expression
+     *
+     * @param expression The expression to compile
+     * @return An instance of the generated class, or null if classes cannot be
+     *         generated on this platform
+     */
+    static DoubleBinaryOperator generate(HeightExpression expression) {
+        HeightFunctionClassGenerator generator = new HeightFunctionClassGenerator();
+        // locals are this (0), x (1-2) and y (3-4)
+        generator.emitExpression(expression);
+        generator.code.write(DRETURN);
+        return (DoubleBinaryOperator) generator.load("java/util/function/DoubleBinaryOperator", "applyAsDouble",
+                "(DD)D", stackSize(expression), 5);
+    }
+
+    /**
+     * Generates and loads a class evaluating a height function and its
+     * derivatives from their tape
+     *
+     * @param tape The tape of the height function and its derivatives
+     * @return An instance of the generated class, or null if classes cannot be
+     *         generated on this platform
+     */
+    static HeightGradientFunction generateGradient(HeightGradientTape tape) {
+        HeightFunctionClassGenerator generator = new HeightFunctionClassGenerator();
+        for (int i = 0; i < tape.size(); i++) {
+            if (tape.kind[i] == HeightGradientTape.UNARY) {
+                generator.emitTapeValue(tape, tape.left[i]);
+                generator.emitFunction(tape.code[i]);
+                generator.emitLocal(DSTORE, FIRST_VALUE_LOCAL + 2 * i);
+            } else if (tape.kind[i] == HeightGradientTape.BINARY) {
+                generator.emitTapeValue(tape, tape.left[i]);
+                generator.emitTapeValue(tape, tape.right[i]);
+                generator.emitOperator((char) tape.code[i]);
+                generator.emitLocal(DSTORE, FIRST_VALUE_LOCAL + 2 * i);
+            }
+        }
+        for (int output = 0; output < tape.outputs.length; output++) {
+            generator.code.write(ALOAD);
+            generator.code.write(RESULT_LOCAL);
+            generator.code.write(ICONST_0 + output);
+            generator.emitTapeValue(tape, tape.outputs[output]);
+            generator.code.write(DASTORE);
+        }
+        generator.code.write(RETURN);
+        // at most two doubles, or an array reference, an index and a double, are on the stack
+        return (HeightGradientFunction) generator.load("com/game/terrain/HeightGradientFunction",
+                "heightAndGradient", "(DD[D)V", 4, FIRST_VALUE_LOCAL + 2 * tape.size());
+    }
+
+    /**
+     * Defines the class whose single method has the code emitted so far and
+     * creates an instance of it
+     *
+     * @param interfaceName The internal name of the interface the class implements
+     * @param methodName    The name of the interface method
+     * @param descriptor    The descriptor of the interface method
+     * @param maxStack      The maximum operand stack size of the method
+     * @param maxLocals     The number of local variable slots of the method
+     * @return An instance of the generated class, or null if it cannot be loaded
+     */
+    private Object load(String interfaceName, String methodName, String descriptor, int maxStack, int maxLocals) {
+        try {
+            String name = PACKAGE + "HeightFunction" + classCounter.getAndIncrement();
+            byte[] classFile = writeClass(name, interfaceName, methodName, descriptor, maxStack, maxLocals);
+            Loader loader = new Loader(HeightFunctionClassGenerator.class.getClassLoader());
+            Class<?> generated = loader.define(name.replace('/', '.'), classFile);
+            return generated.getDeclaredConstructor().newInstance();
+        } catch (Exception | LinkageError e) {
+            // the interpreter is used instead, e.g. on platforms that cannot define classes
+            return null;
+        }
+    }
+
+    /**
+     * Writes the class file of a final class with a default constructor and one
+     * interface method made of the emitted code
+     *
+     * @param name          The internal name of the class
+     * @param interfaceName The internal name of the interface the class implements
+     * @param methodName    The name of the interface method
+     * @param descriptor    The descriptor of the interface method
+     * @param maxStack      The maximum operand stack size of the method
+     * @param maxLocals     The number of local variable slots of the method
+     * @return The bytes of the class file
+     * @throws IOException If writing to the byte stream fails
+     */
+    private byte[] writeClass(String name, String interfaceName, String methodName, String descriptor,
+                              int maxStack, int maxLocals) throws IOException {
+        int thisClass = pool.classRef(name);
+        int superClass = pool.classRef("java/lang/Object");
+        int implemented = pool.classRef(interfaceName);
+        int objectInit = pool.methodRef("java/lang/Object", "<init>", "()V");
+        int codeName = pool.utf8("Code");
+        int initName = pool.utf8("<init>");
+        int initDescriptor = pool.utf8("()V");
+        int methodNameIndex = pool.utf8(methodName);
+        int descriptorIndex = pool.utf8(descriptor);
+
+        // constructor: super()
+        byte[] constructor = {(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit,
+                (byte) RETURN};
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52); // Java 8 class file, no stack map frames needed without branches
+        pool.write(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(implemented);
+        out.writeShort(0); // no fields
+        out.writeShort(2);
+        writeMethod(out, initName, initDescriptor, codeName, 1, 1, constructor);
+        writeMethod(out, methodNameIndex, descriptorIndex, codeName, maxStack, maxLocals, code.toByteArray());
+        out.writeShort(0); // no class attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a public method with a Code attribute
+     */
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName, int maxStack,
+                                    int maxLocals, byte[] body) throws IOException {
+        out.writeShort(0x0001);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + body.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(0); // no exception table
+        out.writeShort(0); // no code attributes
+    }
+
+    /**
+     * Emits instructions leaving the value of the expression on the operand stack
+     *
+     * @param node The expression to emit
+     */
+    private void emitExpression(HeightExpression node) {
+        if (node instanceof HeightExpression.Constant) {
+            emitConstant(((HeightExpression.Constant) node).value);
+        } else if (node instanceof HeightExpression.Variable) {
+            code.write(((HeightExpression.Variable) node).isX ? DLOAD_1 : DLOAD_3);
+        } else if (node instanceof HeightExpression.Unary) {
+            HeightExpression.Unary unary = (HeightExpression.Unary) node;
+            emitExpression(unary.operand);
+            emitFunction(unary.function);
+        } else {
+            HeightExpression.Binary binary = (HeightExpression.Binary) node;
+            emitExpression(binary.left);
+            emitExpression(binary.right);
+            emitOperator(binary.operator);
+        }
+    }
+
+    /**
+     * Emits a double constant
+     */
+    private void emitConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (bits == Double.doubleToRawLongBits(0.0)) {
+            code.write(DCONST_0);
+        } else if (bits == Double.doubleToRawLongBits(1.0)) {
+            code.write(DCONST_1);
+        } else {
+            emitWithIndex(LDC2_W, pool.doubleConstant(value));
+        }
+    }
+
+    /**
+     * Emits the call or instruction of a unary function, taking its operand from
+     * the stack
+     */
+    private void emitFunction(int function) {
+        switch (function) {
+            case HeightExpression.Unary.NEG:
+                code.write(DNEG);
+                break;
+            case HeightExpression.Unary.LN:
+            case HeightExpression.Unary.LOG:
+                // through the helpers so non-positive values are rejected like in the interpreter
+                emitWithIndex(INVOKESTATIC, pool.methodRef("com/game/terrain/HeightExpression",
+                        HeightExpression.Unary.NAMES[function], "(D)D"));
+                break;
+            default:
+                emitWithIndex(INVOKESTATIC, pool.methodRef("java/lang/Math",
+                        HeightExpression.Unary.NAMES[function], "(D)D"));
+                break;
+        }
+    }
+
+    /**
+     * Emits the instruction of a binary operator, taking both operands from the
+     * stack
+     */
+    private void emitOperator(char operator) {
+        switch (operator) {
+            case '+':
+                code.write(DADD);
+                break;
+            case '-':
+                code.write(DSUB);
+                break;
+            case '*':
+                code.write(DMUL);
+                break;
+            case '/':
+                code.write(DDIV);
+                break;
+            default:
+                emitWithIndex(INVOKESTATIC, pool.methodRef("java/lang/Math", "pow", "(DD)D"));
+                break;
+        }
+    }
+
+    /**
+     * Emits the value of a tape instruction: constants and variables directly,
+     * computed values from their local variable
+     */
+    private void emitTapeValue(HeightGradientTape tape, int index) {
+        switch (tape.kind[index]) {
+            case HeightGradientTape.CONSTANT:
+                emitConstant(tape.value[index]);
+                break;
+            case HeightGradientTape.X:
+                code.write(DLOAD_1);
+                break;
+            case HeightGradientTape.Y:
+                code.write(DLOAD_3);
+                break;
+            default:
+                emitLocal(DLOAD, FIRST_VALUE_LOCAL + 2 * index);
+                break;
+        }
+    }
+
+    /**
+     * Emits a load or store of a local variable, using the wide form for slots
+     * above 255
+     */
+    private void emitLocal(int opcode, int local) {
+        if (local > 255) {
+            code.write(WIDE);
+            emitWithIndex(opcode, local);
+        } else {
+            code.write(opcode);
+            code.write(local);
+        }
+    }
+
+    private void emitWithIndex(int opcode, int index) {
+        code.write(opcode);
+        code.write(index >> 8);
+        code.write(index);
+    }
+
+    /**
+     * Calculates the number of operand stack slots needed to evaluate an
+     * expression (two per double)
+     *
+     * @param node The expression
+     * @return The maximum stack size
+     */
+    private static int stackSize(HeightExpression node) {
+        if (node instanceof HeightExpression.Unary) {
+            return stackSize(((HeightExpression.Unary) node).operand);
+        }
+        if (node instanceof HeightExpression.Binary) {
+            HeightExpression.Binary binary = (HeightExpression.Binary) node;
+            return Math.max(stackSize(binary.left), 2 + stackSize(binary.right));
+        }
+        return 2;
+    }
+
+    /**
+     * The constant pool of the generated class, reusing entries that are
+     * requested more than once
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(entries);
+        private final Map<String, Integer> indices = new HashMap<>();
+        private int nextIndex = 1;
+
+        int utf8(String value) {
+            Integer index = indices.get("U" + value);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(1);
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return register("U" + value, 1);
+        }
+
+        int classRef(String internalName) {
+            Integer index = indices.get("C" + internalName);
+            if (index != null) {
+                return index;
+            }
+            int name = utf8(internalName);
+            writeEntry(7, name);
+            return register("C" + internalName, 1);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = indices.get(key);
+            if (index != null) {
+                return index;
+            }
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            writeEntry(12, nameIndex, descriptorIndex);
+            int nameAndType = register("N" + name + descriptor, 1);
+            writeEntry(10, ownerIndex, nameAndType);
+            return register(key, 1);
+        }
+
+        int doubleConstant(double value) {
+            String key = "D" + Double.doubleToRawLongBits(value);
+            Integer index = indices.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(6);
+                out.writeDouble(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return register(key, 2); // doubles take two pool slots
+        }
+
+        private void writeEntry(int tag, int... references) {
+            try {
+                out.writeByte(tag);
+                for (int reference : references) {
+                    out.writeShort(reference);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private int register(String key, int slots) {
+            int index = nextIndex;
+            indices.put(key, index);
+            nextIndex += slots;
+            return index;
+        }
+
+        void write(DataOutputStream classFile) throws IOException {
+            classFile.writeShort(nextIndex);
+            out.flush();
+            entries.writeTo(classFile);
+        }
+    }
+
+    /**
+     * Class loader for a single generated class, so the class can be unloaded
+     * once its height function is no longer used
+     */
+    private static final class Loader extends ClassLoader {
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
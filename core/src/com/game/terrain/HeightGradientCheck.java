@@ -0,0 +1,57 @@
+package com.game.terrain;
+
+/**
+ * Checks that {@link CompiledHeightFunction#heightAndGradient} agrees with
+ * the separate height and slope calls wherever the height is defined,
+ * including the places where the exact slope is undefined and central
+ * differences are used: sqrt and abs at zero, and powers with a negative base
+ * and a variable exponent, whose derivative takes the logarithm of the base.
+ * Exits with status 1 if any point disagrees or throws
+ */
+public class HeightGradientCheck {
+    private static final double TOLERANCE = 1e-6;
+
+    // function, x, y
+    private static final Object[][] POINTS = {
+            {" sqrt ( ( sin ( 0.1 * x ) + cos ( 0.1 * y ) ) ^ 2 ) + 0.5 * sin ( 0.3 * x ) * cos ( 0.3 * y ) ", 5.0, 2.0},
+            {" x ^ 2 + 0.1 * x ^ y ", -1.5, 2.0},
+            {" x ^ 2 + 0.1 * x ^ y ", 1.5, 2.0},
+            {" 2 ^ x + ( 0 - 3 ) ^ y ", 1.0, 3.0},
+            {" y ^ x ", -2.0, -2.0},
+            {" sqrt ( x ^ 2 ) + abs ( y ) ", 0.0, 0.0},
+    };
+
+    private static boolean failed;
+
+    public static void main(String[] args) {
+        for (Object[] point : POINTS) {
+            check((String) point[0], (Double) point[1], (Double) point[2]);
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static void check(String heightFunction, double x, double y) {
+        CompiledHeightFunction function = CompiledHeightFunction.compile(heightFunction);
+        double[] fused = new double[3];
+        String outcome;
+        try {
+            function.heightAndGradient(x, y, fused);
+            double height = function.getHeight(x, y);
+            double slopeX = function.getSlopeX(x, y);
+            double slopeY = function.getSlopeY(x, y);
+            boolean agrees = same(fused[0], height) && same(fused[1], slopeX) && same(fused[2], slopeY);
+            outcome = String.format("h %.6f, dh/dx %.6f, dh/dy %.6f%s", fused[0], fused[1], fused[2],
+                    agrees ? "" : " FAILED, separate calls give " + height + ", " + slopeX + ", " + slopeY);
+            failed |= !agrees;
+        } catch (RuntimeException e) {
+            outcome = "FAILED, " + e;
+            failed = true;
+        }
+        System.out.printf("%s\tat (%s, %s)\t%s%n", heightFunction.trim(), x, y, outcome);
+    }
+
+    // NaN agrees with NaN, a slope undefined on both paths
+    private static boolean same(double a, double b) {
+        return Double.isNaN(a) ? Double.isNaN(b) : Math.abs(a - b) <= TOLERANCE * Math.max(1, Math.abs(b));
+    }
+}
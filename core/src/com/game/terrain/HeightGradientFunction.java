@@ -0,0 +1,16 @@
+package com.game.terrain;
+
+/**
+ * Evaluates a height function and both of its partial derivatives in one call
+ */
+public interface HeightGradientFunction {
+
+    /**
+     * Calculates the height and the slopes of the terrain at the given coordinates
+     *
+     * @param x      The x coordinate
+     * @param y      The y coordinate
+     * @param result Array of at least three elements receiving h, dh/dx and dh/dy
+     */
+    void heightAndGradient(double x, double y, double[] result);
+}
@@ -0,0 +1,149 @@
+package com.game.terrain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The height function and its two partial derivatives flattened into one list
+ * of instructions. Identical subexpressions, such as the sin(0.1 * x) that shows
+ * up in both the height and its x derivative, get a single instruction, so
+ * evaluating all three values costs little more than evaluating the height
+ */
+final class HeightGradientTape implements HeightGradientFunction {
+    static final int CONSTANT = 0, X = 1, Y = 2, UNARY = 3, BINARY = 4;
+
+    final int[] kind;
+    final int[] code; // function code or operator
+    final int[] left;
+    final int[] right;
+    final double[] value;
+    final int[] outputs = new int[3];
+
+    private final ThreadLocal<double[]> slots;
+
+    /**
+     * Constructs the tape of a height function and its derivatives
+     *
+     * @param height      The height expression
+     * @param derivativeX The derivative of the height with respect to x
+     * @param derivativeY The derivative of the height with respect to y
+     */
+    HeightGradientTape(HeightExpression height, HeightExpression derivativeX, HeightExpression derivativeY) {
+        Builder builder = new Builder();
+        outputs[0] = builder.add(height);
+        outputs[1] = builder.add(derivativeX);
+        outputs[2] = builder.add(derivativeY);
+
+        int size = builder.kinds.size();
+        kind = new int[size];
+        code = new int[size];
+        left = new int[size];
+        right = new int[size];
+        value = new double[size];
+        for (int i = 0; i < size; i++) {
+            kind[i] = builder.kinds.get(i);
+            code[i] = builder.codes.get(i);
+            left[i] = builder.lefts.get(i);
+            right[i] = builder.rights.get(i);
+            value[i] = builder.values.get(i);
+        }
+        slots = ThreadLocal.withInitial(() -> new double[size]);
+    }
+
+    /**
+     * Gets the number of instructions after merging identical subexpressions
+     *
+     * @return The number of instructions
+     */
+    int size() {
+        return kind.length;
+    }
+
+    @Override
+    public void heightAndGradient(double x, double y, double[] result) {
+        double[] values = slots.get();
+        for (int i = 0; i < kind.length; i++) {
+            switch (kind[i]) {
+                case CONSTANT:
+                    values[i] = value[i];
+                    break;
+                case X:
+                    values[i] = x;
+                    break;
+                case Y:
+                    values[i] = y;
+                    break;
+                case UNARY:
+                    values[i] = HeightExpression.Unary.apply(code[i], values[left[i]]);
+                    break;
+                default:
+                    values[i] = HeightExpression.Binary.apply((char) code[i], values[left[i]], values[right[i]]);
+                    break;
+            }
+        }
+        result[0] = values[outputs[0]];
+        result[1] = values[outputs[1]];
+        result[2] = values[outputs[2]];
+    }
+
+    /**
+     * Adds expression nodes to the tape in evaluation order, giving structurally
+     * identical nodes the same instruction
+     */
+    private static final class Builder {
+        final List<Integer> kinds = new ArrayList<>();
+        final List<Integer> codes = new ArrayList<>();
+        final List<Integer> lefts = new ArrayList<>();
+        final List<Integer> rights = new ArrayList<>();
+        final List<Double> values = new ArrayList<>();
+        final Map<String, Integer> instructions = new HashMap<>();
+        final Map<HeightExpression, Integer> visited = new IdentityHashMap<>();
+
+        int add(HeightExpression node) {
+            Integer index = visited.get(node);
+            if (index == null) {
+                index = addNode(node);
+                visited.put(node, index);
+            }
+            return index;
+        }
+
+        private int addNode(HeightExpression node) {
+            if (node instanceof HeightExpression.Constant) {
+                double constant = ((HeightExpression.Constant) node).value;
+                return instruction("c" + Double.doubleToRawLongBits(constant), CONSTANT, 0, -1, -1, constant);
+            }
+            if (node instanceof HeightExpression.Variable) {
+                boolean isX = ((HeightExpression.Variable) node).isX;
+                return instruction(isX ? "x" : "y", isX ? X : Y, 0, -1, -1, 0);
+            }
+            if (node instanceof HeightExpression.Unary) {
+                HeightExpression.Unary unary = (HeightExpression.Unary) node;
+                int operand = add(unary.operand);
+                return instruction("u" + unary.function + ":" + operand, UNARY, unary.function, operand, -1, 0);
+            }
+            HeightExpression.Binary binary = (HeightExpression.Binary) node;
+            int a = add(binary.left);
+            int b = add(binary.right);
+            return instruction("b" + binary.operator + ":" + a + ":" + b, BINARY, binary.operator, a, b, 0);
+        }
+
+        private int instruction(String key, int kind, int code, int left, int right, double value) {
+            Integer existing = instructions.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            int index = kinds.size();
+            kinds.add(kind);
+            codes.add(code);
+            lefts.add(left);
+            rights.add(right);
+            values.add(value);
+            instructions.put(key, index);
+            return index;
+        }
+    }
+}
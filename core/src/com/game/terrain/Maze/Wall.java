@@ -19,7 +19,9 @@ public class Wall {
     private ModelInstance wallModel;
 
     /**
-     * Constructs a Wall with the specified position and dimensions
+     * Constructs a Wall with the specified position and dimensions. The model is
+     * only built when the wall is first rendered, so walls can be used for
+     * collisions without an OpenGL context
      * @param x the x-coordinate of the wall's position
      * @param y the y-coordinate of the wall's position
      * @param z the z-coordinate of the wall's position
@@ -32,7 +34,6 @@ public class Wall {
         this.width = width;
         this.height = height;
         this.depth = depth;
-        createWall();
     }
 
     /**
@@ -53,6 +54,9 @@ public class Wall {
      * @param environment the Environment for the rendering context
      */
     public void render(ModelBatch modelBatch, Environment environment) {
+        if (wallModel == null) {
+            createWall();
+        }
         modelBatch.render(wallModel, environment);
     }
 
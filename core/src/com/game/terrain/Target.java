@@ -35,11 +35,25 @@ public class Target {
      * @param radius the radius of the target area
      */
     public Target(float x, float z, float radius) {
-        float maxHeight = (float) GetHeight.getHeight(GameControl.functionTerrain, x, z);
+        this(x, z, radius, GameControl.functionTerrain);
+    }
+
+    /**
+     * Constructs a  Target on the terrain of the given height function. The
+     * models are only built when the target is first rendered, so targets can be
+     * used without an OpenGL context
+     *
+     * @param x              the x-coordinate of the target
+     * @param z              the z-coordinate of the target
+     * @param radius         the radius of the target area
+     * @param heightFunction the height function of the terrain
+     */
+    public Target(float x, float z, float radius, String heightFunction) {
+        float maxHeight = (float) GetHeight.getHeight(heightFunction, x, z);
         for (float dx = -radius; dx <= radius; dx += 0.1f) {
             for (float dz = -radius; dz <= radius; dz += 0.1f) {
                 if (Math.sqrt(dx * dx + dz * dz) <= radius) {
-                    float height = (float) GetHeight.getHeight(GameControl.functionTerrain, x + dx, z + dz);
+                    float height = (float) GetHeight.getHeight(heightFunction, x + dx, z + dz);
                     if (height > maxHeight) {
                         maxHeight = height;
                     }
@@ -48,8 +62,6 @@ public class Target {
         }
         this.position = new Vector3(x, maxHeight, z);
         this.radius = radius;
-        createSphere();
-        createFlag();
     }
 
     /**
@@ -82,6 +94,10 @@ public class Target {
      * @param environment the  Environment providing lighting and other effects
      */
     public void render(ModelBatch modelBatch, Environment environment) {
+        if (sphereModel == null) {
+            createSphere();
+            createFlag();
+        }
         modelBatch.render(sphereModel, environment);
         modelBatch.render(flagModel, environment);
     }
@@ -0,0 +1,303 @@
+package com.game.terrain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A file holding the evaluated terrain grid, so later starts with the same
+ * height function and grid map the file instead of evaluating the function.
+ * Every grid vertex takes 16 bytes: the height, the x and z components of the
+ * normal (the y component is recomputed) and the packed material color.
+ *
+ * The file name is a hash of the cache key, which is the normalized height
+ * expression together with the grid size and scale, so equivalent functions
+ * written differently share a file. The header repeats the format version and
+ * the full key; a file whose header, key or size does not match is deleted and
+ * rebuilt. Bump {@link #VERSION} whenever the layout or the way vertices or
+ * materials are computed changes. The cache is only an optimization: any I/O
+ * error is reported and the terrain is evaluated as usual.
+ *
+ * Only complete files with a matching header are memory-mapped. A new file
+ * is built in memory and written through its channel, and the header of an
+ * existing file is read through its channel before it is mapped. So no file
+ * is mapped while it is moved or deleted, which fails on Windows as long as
+ * the mapping lives, and mappings are only released by the garbage collector
+ */
+public final class TerrainCache {
+    static final int MAGIC = 0x43525447; // "GTRC" in little endian
+    static final int VERSION = 1;
+    private static final int VERTEX_BYTES = 16;
+    private static final int FIXED_HEADER_BYTES = 20; // magic, version, width, depth and key length
+
+    private static Path directory = Paths.get("cache", "terrain");
+
+    private final ByteBuffer buffer; // mapped when reading, on the heap when writing
+    private final int rowLength;
+    private final int dataOffset;
+    private final Path file;
+    private final Path temporaryFile;
+    private boolean finished;
+
+    private TerrainCache(ByteBuffer buffer, int width, int dataOffset, Path file, Path temporaryFile) {
+        this.buffer = buffer;
+        this.rowLength = width + 1;
+        this.dataOffset = dataOffset;
+        this.file = file;
+        this.temporaryFile = temporaryFile;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Sets the directory the cache files are stored in
+     *
+     * @param cacheDirectory The directory, or null to disable the cache
+     */
+    public static void setDirectory(Path cacheDirectory) {
+        directory = cacheDirectory;
+    }
+
+    /**
+     * Builds the cache key of a terrain
+     *
+     * @param normalizedFunction The height expression in its normalized form, see
+     *                           {@link HeightExpression#toString()}
+     * @param width              The width of the terrain in cells
+     * @param depth              The depth of the terrain in cells
+     * @param scale              The scale of the terrain
+     * @return The key identifying the terrain
+     */
+    public static String key(String normalizedFunction, int width, int depth, float scale) {
+        return normalizedFunction + "|" + width + "x" + depth + "|" + Integer.toHexString(Float.floatToIntBits(scale));
+    }
+
+    /**
+     * Opens the cache file of a terrain for reading, memory-mapping it
+     *
+     * @param key   The cache key of the terrain
+     * @param width The width of the terrain in cells
+     * @param depth The depth of the terrain in cells
+     * @return The cached terrain, or null if there is no valid file for the key
+     */
+    static TerrainCache open(String key, int width, int depth) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = fileFor(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            int dataOffset = dataOffset(keyBytes.length);
+            long expectedSize = dataOffset + (long) (width + 1) * (depth + 1) * VERTEX_BYTES;
+            if (channel.size() == expectedSize) {
+                ByteBuffer header = ByteBuffer.allocate(dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+                while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                    // read until the header is complete
+                }
+                if (hasHeader(header, keyBytes, width, depth)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, expectedSize);
+                    System.out.println("Terrain cache: loaded " + file);
+                    return new TerrainCache(buffer, width, dataOffset, file, null);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Terrain cache: could not read " + file + ": " + e.getMessage());
+        }
+        System.out.println("Terrain cache: discarding outdated " + file);
+        delete(file);
+        return null;
+    }
+
+    /**
+     * Creates a new cache file of a terrain. The vertices are written to memory
+     * and the file only replaces an existing one when {@link #commit()} is called
+     *
+     * @param key   The cache key of the terrain
+     * @param width The width of the terrain in cells
+     * @param depth The depth of the terrain in cells
+     * @return The cache to write the terrain into, or null if it cannot be created
+     */
+    static TerrainCache create(String key, int width, int depth) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = fileFor(key);
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(directory);
+            temporaryFile = Files.createTempFile(directory, "terrain", ".tmp");
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            int dataOffset = dataOffset(keyBytes.length);
+            long size = dataOffset + (long) (width + 1) * (depth + 1) * VERTEX_BYTES;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("terrain too large to cache");
+            }
+            TerrainCache cache = new TerrainCache(ByteBuffer.allocate((int) size), width, dataOffset, file,
+                    temporaryFile);
+            putHeader(cache.buffer, keyBytes, width, depth);
+            return cache;
+        } catch (IOException e) {
+            System.out.println("Terrain cache: could not create " + file + ": " + e.getMessage());
+            delete(temporaryFile);
+            return null;
+        }
+    }
+
+    /**
+     * Checks if the cache was opened from a complete file, rather than created
+     * to be written
+     *
+     * @return True if the vertices can be read from the cache
+     */
+    boolean isComplete() {
+        return temporaryFile == null;
+    }
+
+    /**
+     * Reads one grid vertex into a chunk's vertex array
+     *
+     * @param x        The x index of the vertex in the terrain grid
+     * @param y        The y index of the vertex in the terrain grid
+     * @param worldX   The x coordinate of the vertex
+     * @param worldZ   The z coordinate of the vertex
+     * @param vertices The vertex array of the chunk
+     * @param offset   The index of the vertex's first component
+     */
+    void read(int x, int y, float worldX, float worldZ, float[] vertices, int offset) {
+        int position = dataOffset + (y * rowLength + x) * VERTEX_BYTES;
+        float normalX = buffer.getFloat(position + 4);
+        float normalZ = buffer.getFloat(position + 8);
+        vertices[offset] = worldX;
+        vertices[offset + 1] = buffer.getFloat(position);
+        vertices[offset + 2] = worldZ;
+        vertices[offset + 3] = normalX;
+        vertices[offset + 4] = (float) Math.sqrt(Math.max(0, 1 - normalX * normalX - normalZ * normalZ));
+        vertices[offset + 5] = normalZ;
+        vertices[offset + 6] = Float.intBitsToFloat(buffer.getInt(position + 12));
+    }
+
+    /**
+     * Writes one grid vertex from a chunk's vertex array. Only absolute writes
+     * are used, so chunks can be written from several threads at once
+     *
+     * @param x        The x index of the vertex in the terrain grid
+     * @param y        The y index of the vertex in the terrain grid
+     * @param vertices The vertex array of the chunk
+     * @param offset   The index of the vertex's first component
+     */
+    void write(int x, int y, float[] vertices, int offset) {
+        int position = dataOffset + (y * rowLength + x) * VERTEX_BYTES;
+        buffer.putFloat(position, vertices[offset + 1]);
+        buffer.putFloat(position + 4, vertices[offset + 3]);
+        buffer.putFloat(position + 8, vertices[offset + 5]);
+        buffer.putInt(position + 12, Float.floatToRawIntBits(vertices[offset + 6]));
+    }
+
+    /**
+     * Writes a created cache to disk and moves it in place of the old file. Must
+     * only be called once every vertex has been written
+     */
+    synchronized void commit() {
+        if (isComplete() || finished) {
+            return;
+        }
+        finished = true;
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                ByteBuffer data = buffer.duplicate();
+                data.clear();
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            System.out.println("Terrain cache: stored " + file);
+        } catch (IOException e) {
+            System.out.println("Terrain cache: could not store " + file + ": " + e.getMessage());
+            delete(temporaryFile);
+        }
+    }
+
+    /**
+     * Deletes an unfinished cache file, after a failed or abandoned build
+     */
+    synchronized void discard() {
+        if (isComplete() || finished) {
+            return;
+        }
+        finished = true;
+        delete(temporaryFile);
+    }
+
+    private static void putHeader(ByteBuffer buffer, byte[] keyBytes, int width, int depth) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, width);
+        buffer.putInt(12, depth);
+        buffer.putInt(16, keyBytes.length);
+        for (int i = 0; i < keyBytes.length; i++) {
+            buffer.put(FIXED_HEADER_BYTES + i, keyBytes[i]);
+        }
+    }
+
+    private static boolean hasHeader(ByteBuffer buffer, byte[] keyBytes, int width, int depth) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != width
+                || buffer.getInt(12) != depth || buffer.getInt(16) != keyBytes.length) {
+            return false;
+        }
+        byte[] storedKey = new byte[keyBytes.length];
+        for (int i = 0; i < storedKey.length; i++) {
+            storedKey[i] = buffer.get(FIXED_HEADER_BYTES + i);
+        }
+        return Arrays.equals(storedKey, keyBytes);
+    }
+
+    // the header padded to a multiple of the vertex size
+    private static int dataOffset(int keyLength) {
+        int headerBytes = FIXED_HEADER_BYTES + keyLength;
+        return (headerBytes + VERTEX_BYTES - 1) / VERTEX_BYTES * VERTEX_BYTES;
+    }
+
+    private static Path fileFor(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder("terrain-");
+            for (int i = 0; i < 8; i++) {
+                name.append(String.format("%02x", hash[i]));
+            }
+            return directory.resolve(name.append(".bin").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.out.println("Terrain cache: could not delete " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.game.terrain;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.model.MeshPart;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * A rectangular block of the terrain grid with its own mesh. The mesh holds the
+ * chunk's vertices at full resolution, and draws them at every level of detail
+ * through the index ranges of a {@link TerrainChunkTopology}
+ */
+final class TerrainChunk {
+    static final int MAX_LOD = TerrainChunkTopology.MAX_LOD;
+    static final int VERTEX_SIZE = 7; // position, normal and packed color
+    static final int BOTTOM = 0, RIGHT = 1, TOP = 2, LEFT = 3;
+
+    final int column;
+    final int row;
+    final int maxLod;
+    final BoundingBox bounds = new BoundingBox();
+    int lod;
+    boolean visible;
+
+    private final int startX;
+    private final int startY;
+    private final int cellsX;
+    private final int cellsY;
+
+    private final TerrainChunkTopology topology;
+    private float[] vertices;
+    private Mesh mesh;
+    private MeshPart[][] parts;
+
+    /**
+     * Constructs a chunk covering a block of cells of the terrain grid
+     *
+     * @param column The column of the chunk among the chunks
+     * @param row    The row of the chunk among the chunks
+     * @param startX The x index of the chunk's first grid vertex
+     * @param startY The y index of the chunk's first grid vertex
+     * @param cellsX The number of cells along x, at least 2
+     * @param cellsY The number of cells along y, at least 2
+     */
+    TerrainChunk(int column, int row, int startX, int startY, int cellsX, int cellsY) {
+        this.column = column;
+        this.row = row;
+        this.startX = startX;
+        this.startY = startY;
+        this.cellsX = cellsX;
+        this.cellsY = cellsY;
+        this.topology = TerrainChunkTopology.forSize(cellsX, cellsY);
+        this.maxLod = topology.maxLod;
+    }
+
+    /**
+     * Evaluates the chunk's vertices. Does not touch OpenGL, so chunks can be
+     * built on any thread
+     *
+     * @param heightCalculator The terrain height function
+     * @param materialFactory  The factory choosing the material of each vertex
+     * @param scale            The distance between neighbouring grid vertices
+     * @param halfWidth        Half the width of the terrain
+     * @param halfDepth        Half the depth of the terrain
+     * @param waterLevel       The water level of the terrain
+     * @param grassTiles       A boolean array to determine grass tile placement
+     * @param cache            The cache to read the vertices from if it is complete, or to
+     *                         write them into otherwise, or null to evaluate without a cache
+     */
+    void build(TerrainHeightCalculator heightCalculator, MaterialFactory materialFactory, float scale,
+               float halfWidth, float halfDepth, float waterLevel, boolean[][] grassTiles, TerrainCache cache) {
+        int rowLength = cellsX + 1;
+        vertices = new float[rowLength * (cellsY + 1) * VERTEX_SIZE];
+        double[] surface = new double[3];
+        float minHeight = Float.POSITIVE_INFINITY;
+        float maxHeight = Float.NEGATIVE_INFINITY;
+        int offset = 0;
+        for (int y = startY; y <= startY + cellsY; y++) {
+            for (int x = startX; x <= startX + cellsX; x++) {
+                float adjustedX = (x * scale) - halfWidth;
+                float adjustedY = (y * scale) - halfDepth;
+
+                if (cache != null && cache.isComplete()) {
+                    cache.read(x, y, adjustedX, adjustedY, vertices, offset);
+                } else {
+                    heightCalculator.getHeightAndSlopes(adjustedX, adjustedY, surface);
+                    Material material = materialFactory.determineMaterial((float) surface[0], waterLevel, x, y,
+                            grassTiles);
+                    putVertex(vertices, offset, adjustedX, adjustedY, surface, colorOf(material));
+                    if (cache != null) {
+                        cache.write(x, y, vertices, offset);
+                    }
+                }
+                minHeight = Math.min(minHeight, vertices[offset + 1]);
+                maxHeight = Math.max(maxHeight, vertices[offset + 1]);
+                offset += VERTEX_SIZE;
+            }
+        }
+        bounds.set(new Vector3(startX * scale - halfWidth, minHeight, startY * scale - halfDepth),
+                new Vector3((startX + cellsX) * scale - halfWidth, maxHeight, (startY + cellsY) * scale - halfDepth));
+    }
+
+    private static float colorOf(Material material) {
+        ColorAttribute diffuse = (ColorAttribute) material.get(ColorAttribute.Diffuse);
+        return diffuse.color.toFloatBits();
+    }
+
+    /**
+     * Writes the position, normal and color of one vertex. The normal of the
+     * surface y = h(x, z) is (-dh/dx, 1, -dh/dz), normalized
+     *
+     * @param vertices The vertex array
+     * @param offset   The index of the vertex's first component
+     * @param x        The x coordinate of the vertex
+     * @param z        The z coordinate of the vertex
+     * @param surface  The height and slopes at the vertex
+     * @param color    The packed color of the vertex
+     */
+    static void putVertex(float[] vertices, int offset, float x, float z, double[] surface, float color) {
+        double normalX = -surface[1];
+        double normalZ = -surface[2];
+        double length = Math.sqrt(normalX * normalX + 1 + normalZ * normalZ);
+        vertices[offset] = x;
+        vertices[offset + 1] = (float) surface[0];
+        vertices[offset + 2] = z;
+        vertices[offset + 3] = (float) (normalX / length);
+        vertices[offset + 4] = (float) (1 / length);
+        vertices[offset + 5] = (float) (normalZ / length);
+        vertices[offset + 6] = color;
+    }
+
+    /**
+     * Uploads the built vertices and the indices to OpenGL and releases the
+     * vertex array
+     */
+    void upload() {
+        short[] indices = topology.indices;
+        mesh = new Mesh(true, vertices.length / VERTEX_SIZE, indices.length,
+                VertexAttribute.Position(), VertexAttribute.Normal(), VertexAttribute.ColorPacked());
+        mesh.setVertices(vertices);
+        mesh.setIndices(indices);
+
+        Vector3 center = bounds.getCenter(new Vector3());
+        Vector3 halfExtents = bounds.getDimensions(new Vector3()).scl(0.5f);
+        parts = new MeshPart[maxLod + 1][TerrainChunkTopology.RANGES];
+        for (int lod = 0; lod <= maxLod; lod++) {
+            for (int range = 0; range < TerrainChunkTopology.RANGES; range++) {
+                MeshPart part = new MeshPart("terrain", mesh, topology.offsets[lod][range],
+                        topology.counts[lod][range], GL20.GL_TRIANGLES);
+                part.center.set(center);
+                part.halfExtents.set(halfExtents);
+                part.radius = halfExtents.len();
+                parts[lod][range] = part;
+            }
+        }
+        vertices = null;
+    }
+
+    /**
+     * Adds the renderables drawing the chunk at its current level of detail
+     *
+     * @param renderables The list to add to
+     * @param pool        The pool to take renderables from
+     * @param material    The material of the terrain
+     * @param stitched    For each edge, whether the neighbour there is one level coarser
+     */
+    void getRenderables(Array<Renderable> renderables, Pool<Renderable> pool, Material material, boolean[] stitched) {
+        MeshPart[] level = parts[lod];
+        if (!stitched[BOTTOM] && !stitched[RIGHT] && !stitched[TOP] && !stitched[LEFT]) {
+            add(renderables, pool, material, level[TerrainChunkTopology.FULL]);
+            return;
+        }
+        add(renderables, pool, material, level[TerrainChunkTopology.INTERIOR]);
+        for (int edge = BOTTOM; edge <= LEFT; edge++) {
+            int range = stitched[edge] ? TerrainChunkTopology.STITCHED_EDGE : TerrainChunkTopology.EDGE;
+            add(renderables, pool, material, level[range + edge]);
+        }
+    }
+
+    private static void add(Array<Renderable> renderables, Pool<Renderable> pool, Material material, MeshPart part) {
+        if (part.size == 0) {
+            return;
+        }
+        Renderable renderable = pool.obtain();
+        renderable.worldTransform.idt();
+        renderable.material = material;
+        renderable.meshPart.set(part);
+        renderable.bones = null;
+        renderables.add(renderable);
+    }
+
+    /**
+     * Checks if the chunk has been uploaded and can be drawn
+     *
+     * @return True if the chunk's mesh exists, false otherwise
+     */
+    boolean isUploaded() {
+        return mesh != null;
+    }
+
+    /**
+     * Gets the number of grid vertices of the chunk
+     *
+     * @return The number of vertices
+     */
+    int getVertexCount() {
+        return (cellsX + 1) * (cellsY + 1);
+    }
+
+    /**
+     * Disposes of the chunk's mesh
+     */
+    void dispose() {
+        if (mesh != null) {
+            mesh.dispose();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.game.terrain;
+
+import com.badlogic.gdx.utils.ShortArray;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The triangles of a chunk of a given size at every level of detail. Each level
+ * is a set of index ranges over the chunk's full resolution vertices that skips
+ * vertices: the interior, and one strip per edge. Each edge strip also exists in
+ * a stitched version whose outer vertices match a neighbour one level coarser,
+ * so no cracks open between the two. The indices only depend on the size of the
+ * chunk, so chunks of the same size share one topology
+ */
+final class TerrainChunkTopology {
+    static final int MAX_LOD = 3;
+
+    // index ranges of one level of detail
+    static final int FULL = 0; // interior and all edges unstitched, in one range
+    static final int INTERIOR = 1;
+    static final int EDGE = 2; // four unstitched edges
+    static final int STITCHED_EDGE = 6; // four edges stitched to a coarser neighbour
+    static final int RANGES = 10;
+
+    private static final Map<Long, TerrainChunkTopology> topologies = new ConcurrentHashMap<>();
+
+    final int maxLod;
+    final short[] indices;
+    final int[][] offsets = new int[MAX_LOD + 1][RANGES];
+    final int[][] counts = new int[MAX_LOD + 1][RANGES];
+
+    private final int cellsX;
+    private final int cellsY;
+
+    private TerrainChunkTopology(int cellsX, int cellsY) {
+        this.cellsX = cellsX;
+        this.cellsY = cellsY;
+
+        int lod = 0;
+        while (lod < MAX_LOD && fits(cellsX, lod + 1) && fits(cellsY, lod + 1)) {
+            lod++;
+        }
+        this.maxLod = lod;
+
+        ShortArray indices = new ShortArray();
+        for (int level = 0; level <= maxLod; level++) {
+            addLod(indices, level);
+        }
+        this.indices = indices.toArray();
+    }
+
+    /**
+     * Gets the topology of chunks of the given size, building it on first use
+     *
+     * @param cellsX The number of cells along x, at least 2
+     * @param cellsY The number of cells along y, at least 2
+     * @return The shared topology
+     */
+    static TerrainChunkTopology forSize(int cellsX, int cellsY) {
+        return topologies.computeIfAbsent(((long) cellsX << 32) | cellsY, key -> new TerrainChunkTopology(cellsX, cellsY));
+    }
+
+    // a level fits if its step divides the side and leaves an edge strip on both ends
+    private static boolean fits(int cells, int lod) {
+        int step = 1 << lod;
+        return cells % step == 0 && cells / step >= 2;
+    }
+
+    /**
+     * Adds the index ranges of one level of detail. The unstitched edges directly
+     * follow the interior, so a chunk whose neighbours are not coarser is drawn
+     * with a single range
+     *
+     * @param indices The index list to add to
+     * @param lod     The level of detail
+     */
+    private void addLod(ShortArray indices, int lod) {
+        int step = 1 << lod;
+        int start = indices.size;
+        range(lod, INTERIOR, start);
+        for (int y = step; y < cellsY - step; y += step) {
+            for (int x = step; x < cellsX - step; x += step) {
+                triangle(indices, x, y + step, x + step, y, x, y);
+                triangle(indices, x, y + step, x + step, y + step, x + step, y);
+            }
+        }
+        for (int edge = TerrainChunk.BOTTOM; edge <= TerrainChunk.LEFT; edge++) {
+            range(lod, EDGE + edge, indices.size);
+            addEdge(indices, edge, step, step);
+        }
+        offsets[lod][FULL] = start;
+        counts[lod][FULL] = indices.size - start;
+        for (int edge = TerrainChunk.BOTTOM; edge <= TerrainChunk.LEFT; edge++) {
+            range(lod, STITCHED_EDGE + edge, indices.size);
+            if (lod < MAX_LOD && edgeLength(edge) % (2 * step) == 0) {
+                addEdge(indices, edge, step, 2 * step);
+            }
+        }
+        range(lod, RANGES, indices.size);
+    }
+
+    // closes the previous range of the level and opens the next one
+    private void range(int lod, int index, int offset) {
+        if (index > INTERIOR) {
+            counts[lod][index - 1] = offset - offsets[lod][index - 1];
+        }
+        if (index < RANGES) {
+            offsets[lod][index] = offset;
+        }
+    }
+
+    private int edgeLength(int edge) {
+        return edge == TerrainChunk.BOTTOM || edge == TerrainChunk.TOP ? cellsX : cellsY;
+    }
+
+    /**
+     * Adds the strip between an edge of the chunk and the first inner line of
+     * vertices of the level. The strip is a trapezoid, so the four strips and the
+     * interior tile the chunk exactly. The two lines are joined by walking along
+     * both and always advancing the one that lags behind
+     *
+     * @param indices   The index list to add to
+     * @param edge      The edge of the chunk
+     * @param step      The vertex step of the inner line
+     * @param outerStep The vertex step along the edge, twice the step when stitched
+     */
+    private void addEdge(ShortArray indices, int edge, int step, int outerStep) {
+        int length = edgeLength(edge);
+        int outerCount = length / outerStep;
+        int innerCount = (length - 2 * step) / step;
+        int outer = 0;
+        int inner = 0;
+        while (outer < outerCount || inner < innerCount) {
+            int outerNext = (outer + 1) * outerStep;
+            int innerNext = step + (inner + 1) * step;
+            int innerAlong = step + inner * step;
+            if (inner == innerCount || (outer < outerCount && outerNext <= innerNext)) {
+                edgeTriangle(indices, edge, outer * outerStep, 0, outerNext, 0, innerAlong, step);
+                outer++;
+            } else {
+                edgeTriangle(indices, edge, outer * outerStep, 0, innerNext, step, innerAlong, step);
+                inner++;
+            }
+        }
+    }
+
+    // maps (along the edge, inward from the edge) coordinates to chunk cells
+    private void edgeTriangle(ShortArray indices, int edge, int along1, int in1, int along2, int in2,
+                              int along3, int in3) {
+        switch (edge) {
+            case TerrainChunk.BOTTOM:
+                triangle(indices, along1, in1, along2, in2, along3, in3);
+                break;
+            case TerrainChunk.TOP:
+                triangle(indices, along1, cellsY - in1, along2, cellsY - in2, along3, cellsY - in3);
+                break;
+            case TerrainChunk.LEFT:
+                triangle(indices, in1, along1, in2, along2, in3, along3);
+                break;
+            default:
+                triangle(indices, cellsX - in1, along1, cellsX - in2, along2, cellsX - in3, along3);
+                break;
+        }
+    }
+
+    /**
+     * Adds a triangle, wound counter-clockwise when seen from above
+     */
+    private void triangle(ShortArray indices, int ax, int ay, int bx, int by, int cx, int cy) {
+        int cross = (by - ay) * (cx - ax) - (bx - ax) * (cy - ay);
+        if (cross == 0) {
+            return;
+        }
+        int rowLength = cellsX + 1;
+        short a = (short) (ay * rowLength + ax);
+        short b = (short) (by * rowLength + bx);
+        short c = (short) (cy * rowLength + cx);
+        if (cross > 0) {
+            indices.add(a, b, c);
+        } else {
+            indices.add(a, c, b);
+        }
+    }
+}
@@ -1,24 +1,54 @@
 package com.game.terrain;
 
-import com.badlogic.gdx.graphics.GL20;
-import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g3d.Material;
-import com.badlogic.gdx.graphics.g3d.Model;
 import com.badlogic.gdx.graphics.g3d.ModelBatch;
-import com.badlogic.gdx.graphics.g3d.ModelInstance;
-import com.badlogic.gdx.graphics.g3d.utils.MeshPartBuilder;
-import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
 import com.badlogic.gdx.graphics.g3d.Environment;
 
-public class TerrainGenerator {
-    private Model terrainModel;
-    private ModelInstance terrainInstance;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TerrainGenerator implements RenderableProvider {
+    static final int CHUNK_CELLS = 32; // cells along each side of a chunk
+    // camera distances, in chunk sizes, beyond which the next coarser level of detail is used
+    private static final float[] LOD_DISTANCES = {1.5f, 3, 6};
+    private static final long UPLOAD_BUDGET_NANOS = 4_000_000; // time per frame spent uploading chunks
+    // shared worker threads evaluating chunks, daemons so they never keep the game running
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "terrain-builder");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Material terrainMaterial = new Material(ColorAttribute.createDiffuse(Color.WHITE));
+    private TerrainChunk[][] chunks;
     private int width;
     private int depth;
     private float scale;
     private TerrainHeightCalculator heightCalculator;
     private MaterialFactory materialFactory;
+    private final Queue<TerrainChunk> builtChunks = new ConcurrentLinkedQueue<>();
+    private volatile RuntimeException buildError;
+    private volatile boolean disposed;
+    private TerrainCache cache;
+    private long buildStart;
+    private int uploadedChunks;
+    private int uploadedVertices;
+    private double buildMillis;
+    private int visibleChunks;
+    private final boolean[] stitched = new boolean[4];
+    private final Vector3 closest = new Vector3();
 
     /**
      * Constructs a TerrainGenerator with the specified width, depth, and scale
@@ -27,6 +57,9 @@ public class TerrainGenerator {
      * @param scale the scale of the terrain
      */
     public TerrainGenerator(int width, int depth, float scale) {
+        if (width < 2 || depth < 2) {
+            throw new IllegalArgumentException("Terrain must be at least 2x2 cells");
+        }
         this.width = width;
         this.depth = depth;
         this.scale = scale;
@@ -37,95 +70,253 @@ public class TerrainGenerator {
     }
 
     /**
-     * Creates the terrain model instance
-     * @return the created terrain model instance
-     */
-    public ModelInstance createTerrain() {
-        return terrainInstance;
-    }
-
-    /**
-     * Adds the terrain by generating the terrain model
+     * Adds the terrain, split into chunks of CHUNK_CELLS x CHUNK_CELLS cells. The
+     * chunks are evaluated on the worker threads, and uploaded a few per frame by
+     * {@link #uploadBuiltChunks()} once they are done, so the render thread never
+     * waits for the whole terrain. If the same terrain was built before, the
+     * chunks are read from the {@link TerrainCache} instead of evaluated
      */
     private void addTerrain() {
-        ModelBuilder modelBuilder = new ModelBuilder();
-        modelBuilder.begin();
+        buildStart = System.nanoTime();
 
         float halfWidth = width * scale * 0.5f;
         float halfDepth = depth * scale * 0.5f;
 
         float waterLevel = heightCalculator.getHeight(0, 0);
 
-        boolean[][] grassTiles = new boolean[width][depth];
+        String cacheKey = TerrainCache.key(heightCalculator.getNormalizedFunction(), width, depth, scale);
+        cache = TerrainCache.open(cacheKey, width, depth);
+        if (cache == null) {
+            cache = TerrainCache.create(cacheKey, width, depth);
+        }
+
+        boolean[][] grassTiles = new boolean[width + 1][depth + 1];
+
+        int[] columnStarts = chunkStarts(width);
+        int[] rowStarts = chunkStarts(depth);
+        chunks = new TerrainChunk[rowStarts.length - 1][columnStarts.length - 1];
+        for (int row = 0; row < chunks.length; row++) {
+            for (int column = 0; column < chunks[row].length; column++) {
+                chunks[row][column] = new TerrainChunk(column, row, columnStarts[column], rowStarts[row],
+                        columnStarts[column + 1] - columnStarts[column], rowStarts[row + 1] - rowStarts[row]);
+            }
+        }
+
+        AtomicInteger remainingChunks = new AtomicInteger(getChunkCount());
+        for (TerrainChunk[] chunkRow : chunks) {
+            for (TerrainChunk chunk : chunkRow) {
+                WORKERS.execute(() -> {
+                    if (disposed) {
+                        return;
+                    }
+                    try {
+                        chunk.build(heightCalculator, materialFactory, scale, halfWidth, halfDepth, waterLevel,
+                                grassTiles, cache);
+                        builtChunks.add(chunk);
+                        if (remainingChunks.decrementAndGet() == 0 && cache != null) {
+                            cache.commit();
+                        }
+                    } catch (RuntimeException e) {
+                        buildError = e;
+                        if (cache != null) {
+                            cache.discard();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Uploads chunks that the workers have finished, until the upload time budget
+     * of the frame is used up. Must be called on the render thread
+     * @throws IllegalStateException if a worker failed to build a chunk
+     */
+    public void uploadBuiltChunks() {
+        if (buildError != null) {
+            throw new IllegalStateException("Terrain build failed", buildError);
+        }
+        long start = System.nanoTime();
+        TerrainChunk chunk;
+        while (System.nanoTime() - start < UPLOAD_BUDGET_NANOS && (chunk = builtChunks.poll()) != null) {
+            chunk.upload();
+            uploadedChunks++;
+            uploadedVertices += chunk.getVertexCount();
+            if (isReady()) {
+                buildMillis = (System.nanoTime() - buildStart) / 1e6;
+                System.out.printf("Terrain: %d vertices, %d chunks, ready in %.1f ms%n",
+                        uploadedVertices, getChunkCount(), buildMillis);
+            }
+        }
+    }
+
+    /**
+     * Checks if every chunk of the terrain has been built and uploaded
+     * @return true if the terrain is complete
+     */
+    public boolean isReady() {
+        return uploadedChunks == getChunkCount();
+    }
 
-        generateTerrain(modelBuilder, halfWidth, halfDepth, waterLevel, grassTiles);
+    /**
+     * Gets the fraction of the terrain that has been built and uploaded
+     * @return the progress between 0 and 1
+     */
+    public float getProgress() {
+        return (float) uploadedChunks / getChunkCount();
+    }
 
-        terrainModel = modelBuilder.end();
-        terrainInstance = new ModelInstance(terrainModel);
+    /**
+     * Splits a side of the terrain into chunks. A remainder too small to be a
+     * chunk on its own is added to the last chunk
+     * @param cells the number of cells along the side
+     * @return the first cell of every chunk, followed by the number of cells
+     */
+    private static int[] chunkStarts(int cells) {
+        int count = Math.max(1, cells / CHUNK_CELLS);
+        if (cells - count * CHUNK_CELLS >= 2) {
+            count++;
+        }
+        int[] starts = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            starts[i] = i * CHUNK_CELLS;
+        }
+        starts[count] = cells;
+        return starts;
     }
 
     /**
-     * Generates the terrain by creating vertices and triangles for the terrain mesh
-     * @param modelBuilder the ModelBuilder used for creating the terrain
-     * @param halfWidth half the width of the terrain
-     * @param halfDepth half the depth of the terrain
-     * @param waterLevel the water level of the terrain
-     * @param grassTiles a boolean array to determine grass tile placement
+     * Chooses the level of detail of every chunk from its distance to the camera
+     * and culls the chunks outside the camera frustum. Neighbouring chunks are
+     * kept at most one level apart, so the stitched edges always close the seam
+     * @param camera the camera the terrain is rendered with
      */
-    private void generateTerrain(ModelBuilder modelBuilder, float halfWidth, float halfDepth, float waterLevel,
-                                 boolean[][] grassTiles) {
-        for (int y = 0; y < depth - 1; y++) {
-            for (int x = 0; x < width - 1; x++) {
-                float adjustedX = (x * scale) - halfWidth;
-                float adjustedY = (y * scale) - halfDepth;
+    public void update(Camera camera) {
+        float chunkSize = CHUNK_CELLS * scale;
+        visibleChunks = 0;
+        for (TerrainChunk[] chunkRow : chunks) {
+            for (TerrainChunk chunk : chunkRow) {
+                if (!chunk.isUploaded()) {
+                    chunk.visible = false;
+                    chunk.lod = TerrainChunk.MAX_LOD;
+                    continue;
+                }
+                chunk.visible = camera.frustum.boundsInFrustum(chunk.bounds);
+                if (chunk.visible) {
+                    visibleChunks++;
+                }
+                closest.set(
+                        Math.max(chunk.bounds.min.x, Math.min(camera.position.x, chunk.bounds.max.x)),
+                        Math.max(chunk.bounds.min.y, Math.min(camera.position.y, chunk.bounds.max.y)),
+                        Math.max(chunk.bounds.min.z, Math.min(camera.position.z, chunk.bounds.max.z)));
+                float distance = closest.dst(camera.position) / chunkSize;
+                int lod = 0;
+                while (lod < LOD_DISTANCES.length && distance > LOD_DISTANCES[lod]) {
+                    lod++;
+                }
+                chunk.lod = Math.min(lod, chunk.maxLod);
+            }
+        }
 
-                float height = heightCalculator.getHeight(adjustedX, adjustedY);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (TerrainChunk[] chunkRow : chunks) {
+                for (TerrainChunk chunk : chunkRow) {
+                    if (!chunk.isUploaded()) {
+                        continue;
+                    }
+                    int limit = Math.min(Math.min(lodAt(chunk.column, chunk.row - 1), lodAt(chunk.column + 1, chunk.row)),
+                            Math.min(lodAt(chunk.column, chunk.row + 1), lodAt(chunk.column - 1, chunk.row))) + 1;
+                    if (chunk.lod > limit) {
+                        chunk.lod = limit;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
 
-                Material material = materialFactory.determineMaterial(height, waterLevel, x, y, grassTiles);
+    // the level of detail of a chunk, or the coarsest level outside the terrain or before the
+    // chunk is uploaded, so it never limits a chunk
+    private int lodAt(int column, int row) {
+        if (row < 0 || row >= chunks.length || column < 0 || column >= chunks[row].length
+                || !chunks[row][column].isUploaded()) {
+            return TerrainChunk.MAX_LOD;
+        }
+        return chunks[row][column].lod;
+    }
 
-                createVerticesAndTriangles(modelBuilder, adjustedX, adjustedY, height, material, x, y, grassTiles);
+    // whether a neighbouring chunk is drawn coarser than the given level
+    private boolean isCoarser(int column, int row, int lod) {
+        return row >= 0 && row < chunks.length && column >= 0 && column < chunks[row].length
+                && chunks[row][column].isUploaded() && chunks[row][column].lod > lod;
+    }
+
+    @Override
+    public void getRenderables(Array<Renderable> renderables, Pool<Renderable> pool) {
+        for (TerrainChunk[] chunkRow : chunks) {
+            for (TerrainChunk chunk : chunkRow) {
+                if (!chunk.visible) {
+                    continue;
+                }
+                stitched[TerrainChunk.BOTTOM] = isCoarser(chunk.column, chunk.row - 1, chunk.lod);
+                stitched[TerrainChunk.RIGHT] = isCoarser(chunk.column + 1, chunk.row, chunk.lod);
+                stitched[TerrainChunk.TOP] = isCoarser(chunk.column, chunk.row + 1, chunk.lod);
+                stitched[TerrainChunk.LEFT] = isCoarser(chunk.column - 1, chunk.row, chunk.lod);
+                chunk.getRenderables(renderables, pool, terrainMaterial, stitched);
             }
         }
     }
 
     /**
-     * Creates vertices and triangles for the terrain mesh
-     * @param modelBuilder the ModelBuilder used for creating the terrain
-     * @param adjustedX the adjusted x-coordinate
-     * @param adjustedY the adjusted y-coordinate
-     * @param height the height at the given coordinates
-     * @param material the material used for the terrain
-     * @param x the x-coordinate index in the grid
-     * @param y the y-coordinate index in the grid
-     * @param grassTiles a boolean array to determine grass tile placement
+     * Gets the number of chunks of the terrain
+     * @return the number of chunks
      */
-    private void createVerticesAndTriangles(ModelBuilder modelBuilder, float adjustedX, float adjustedY, float height,
-                                            Material material, int x, int y, boolean[][] grassTiles) {
-        Vector3 bottomLeft = new Vector3(adjustedX, height, adjustedY);
-        Vector3 bottomRight = new Vector3(adjustedX + scale, heightCalculator.getHeight(adjustedX + scale, adjustedY), adjustedY);
-        Vector3 topLeft = new Vector3(adjustedX, heightCalculator.getHeight(adjustedX, adjustedY + scale), adjustedY + scale);
-        Vector3 topRight = new Vector3(adjustedX + scale, heightCalculator.getHeight(adjustedX + scale, adjustedY + scale),
-                adjustedY + scale);
-
-        MeshPartBuilder mpb = modelBuilder.part("terrain", GL20.GL_TRIANGLES,
-                Usage.Position | Usage.Normal, material);
-        mpb.triangle(topLeft, bottomRight, bottomLeft);
-        mpb.triangle(topLeft, topRight, bottomRight);
+    public int getChunkCount() {
+        return chunks.length * chunks[0].length;
     }
 
     /**
-     * Renders the terrain model instance
+     * Gets the number of chunks inside the camera frustum at the last update
+     * @return the number of visible chunks
+     */
+    public int getVisibleChunkCount() {
+        return visibleChunks;
+    }
+
+    /**
+     * Gets the time it took to build and upload the whole terrain
+     * @return the build time in milliseconds, 0 while the terrain is loading
+     */
+    public double getBuildMillis() {
+        return buildMillis;
+    }
+
+    /**
+     * Uploads newly built chunks and renders the chunks of the terrain inside the
+     * camera frustum
      * @param modelBatch the ModelBatch used for rendering
      * @param environment the Environment for the rendering context
      */
     public void render(ModelBatch modelBatch, Environment environment) {
-        modelBatch.render(terrainInstance, environment);
+        uploadBuiltChunks();
+        update(modelBatch.getCamera());
+        modelBatch.render(this, environment);
     }
 
     /**
      * Disposes of the terrain model resources
      */
     public void dispose() {
-        terrainModel.dispose();
+        disposed = true;
+        if (cache != null) {
+            cache.discard(); // does nothing once the cache is stored
+        }
+        for (TerrainChunk[] chunkRow : chunks) {
+            for (TerrainChunk chunk : chunkRow) {
+                chunk.dispose();
+            }
+        }
     }
 }
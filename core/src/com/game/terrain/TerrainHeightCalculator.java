@@ -3,6 +3,7 @@ package com.game.terrain;
 import com.game.main.SettingsScreen;
 
 public class TerrainHeightCalculator {
+    private CompiledHeightFunction heightFunction;
 
     /**
      * Gets the height of the terrain at the specified coordinates
@@ -11,7 +12,39 @@ public class TerrainHeightCalculator {
      * @return the height of the terrain at the specified coordinates
      */
     public float getHeight(float x, float y) {
-        double result = GetHeight.getHeight(SettingsScreen.terrainFunction, x, y);
+        double result = getHeightFunction().getHeight(x, y);
         return (float) result;
     }
+
+    /**
+     * Gets the height and both slopes of the terrain at the specified coordinates
+     * in a single evaluation
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param result array receiving the height, dh/dx and dh/dy
+     */
+    public void getHeightAndSlopes(float x, float y, double[] result) {
+        getHeightFunction().heightAndGradient(x, y, result);
+    }
+
+    /**
+     * Gets the terrain function in its normalized form, which is the same for
+     * functions that differ only in spacing or constant arithmetic
+     * @return the normalized terrain function
+     */
+    public String getNormalizedFunction() {
+        return getHeightFunction().getExpression().toString();
+    }
+
+    /**
+     * Gets the compiled terrain function, compiling it again only if the function
+     * in the settings has changed
+     * @return the compiled terrain function
+     */
+    private CompiledHeightFunction getHeightFunction() {
+        if (heightFunction == null || !heightFunction.getSource().equals(SettingsScreen.terrainFunction)) {
+            heightFunction = CompiledHeightFunction.compile(SettingsScreen.terrainFunction);
+        }
+        return heightFunction;
+    }
 }
@@ -0,0 +1,36 @@
+package com.game.terrain;
+
+/**
+ * A terrain that can report its height and slopes at any point, either by
+ * evaluating the height function ({@link CompiledHeightFunction}) or by
+ * interpolating precomputed samples ({@link HeightField})
+ */
+public interface TerrainSurface extends HeightGradientFunction {
+
+    /**
+     * Calculates the height at the given coordinates
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return The height at (x, y)
+     */
+    double getHeight(double x, double y);
+
+    /**
+     * Calculates the slope of the terrain in the x direction
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return The partial derivative dh/dx at (x, y)
+     */
+    double getSlopeX(double x, double y);
+
+    /**
+     * Calculates the slope of the terrain in the y direction
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return The partial derivative dh/dy at (x, y)
+     */
+    double getSlopeY(double x, double y);
+}
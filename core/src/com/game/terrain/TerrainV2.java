@@ -6,7 +6,6 @@ import com.badlogic.gdx.graphics.g3d.ModelInstance;
 import com.game.main.SettingsScreen;
 
 public class TerrainV2 {
-    private ModelInstance terrainInstance;
     private ModelInstance waterInstance;
     private ModelInstance sandInstance;
     private MapBorder mapBorder;
@@ -30,7 +29,6 @@ public class TerrainV2 {
         this.scale = scale;
 
         terrainGenerator = new TerrainGenerator(width, depth, scale);
-        terrainInstance = terrainGenerator.createTerrain();
 
         waterPlane = new WaterPlane(width, depth, scale);
         waterInstance = waterPlane.createWater(0.8f);
@@ -62,6 +60,22 @@ public class TerrainV2 {
         return scale;
     }
 
+    /**
+     * Checks if the terrain has finished loading
+     * @return true if every chunk of the terrain is built and uploaded
+     */
+    public boolean isReady() {
+        return terrainGenerator.isReady();
+    }
+
+    /**
+     * Gets the loading progress of the terrain
+     * @return the loaded fraction of the terrain, between 0 and 1
+     */
+    public float getLoadingProgress() {
+        return terrainGenerator.getProgress();
+    }
+
     /**
      * Renders the terrain, water plane, and optionally the sand instance
      * @param modelBatch the ModelBatch used for rendering
@@ -27,6 +27,9 @@ public class UI {
     private TextButton backLabel;
     private TextButton outOfBoundsLabel;
     private TextButton starButton;
+    private TextButton loadingLabel;
+    private TextButton thinkingLabel;
+    private int loadingPercent = -1;
 
     /**
      * Constructs a {@code UI} instance and initializes the UI elements.
@@ -45,6 +48,8 @@ public class UI {
         setupFellInWaterLabel();
         setupBallOutOfBoundsLabel();
         setupStarButton();
+        setupLoadingLabel();
+        setupThinkingLabel();
         Gdx.input.setInputProcessor(stage); // Set this after all UI elements are added
         System.out.println("UI: Input processor set for UI stage.");
     }
@@ -112,6 +117,53 @@ public class UI {
         System.out.println("UI: Star button loading completed.");
     }
 
+    /**
+     * Sets up the label showing the loading progress of the course.
+     */
+    private void setupLoadingLabel() {
+        loadingLabel = new TextButton("Loading course...", skin);
+        loadingLabel.setPosition(Gdx.graphics.getWidth() / 2 - 150, Gdx.graphics.getHeight() / 2);
+        loadingLabel.setSize(300, 30);
+        loadingLabel.setDisabled(true);
+        stage.addActor(loadingLabel);
+    }
+
+    /**
+     * Shows the loading progress of the course, hiding the label once the course
+     * is ready.
+     *
+     * @param progress the loaded fraction of the course, between 0 and 1
+     */
+    public void setLoadingProgress(float progress) {
+        loadingLabel.setVisible(progress < 1);
+        int percent = (int) (progress * 100);
+        if (percent != loadingPercent) {
+            loadingPercent = percent;
+            loadingLabel.setText("Loading course... " + percent + "%");
+        }
+    }
+
+    /**
+     * Sets up the label shown while a bot is planning its shot.
+     */
+    private void setupThinkingLabel() {
+        thinkingLabel = new TextButton("AI is thinking...", skin);
+        thinkingLabel.setPosition(Gdx.graphics.getWidth() / 2 - 100, Gdx.graphics.getHeight() - 50);
+        thinkingLabel.setSize(200, 30);
+        thinkingLabel.setDisabled(true);
+        thinkingLabel.setVisible(false);
+        stage.addActor(thinkingLabel);
+    }
+
+    /**
+     * Shows or hides the label telling that a bot is planning its shot.
+     *
+     * @param thinking true while a shot is being planned
+     */
+    public void setThinking(boolean thinking) {
+        thinkingLabel.setVisible(thinking);
+    }
+
     /**
      * Sets up the game over label which is displayed when the game is won.
      */